@@ -0,0 +1,28 @@
+#!/bin/bash
+# Builds the class data sharing archive of the command line, after "mvn package".
+# The samples are extracted once to list the classes a run loads; the archive
+# keeps them parsed and verified, so that each run maps them instead of
+# loading them again. It only fits the jar and the JDK it was built with.
+home=$(cd "$(dirname "$0")" && pwd)
+jar=${TRAPRANGE_JAR:-$home/target/traprange-1.0-SNAPSHOT-jar-with-dependencies.jar}
+archive=${jar%.jar}.jsa
+work=$(mktemp -d)
+trap 'rm -rf "$work"' EXIT
+
+if [ ! -f "$jar" ]; then
+    echo "Missing $jar, run \"mvn package\" first" >&2
+    exit 1
+fi
+
+idx=0
+for pdf in "$home"/_Docs/*.pdf; do
+    idx=$((idx + 1))
+    java -XX:DumpLoadedClassList="$work/classes-$idx.lst" -jar "$jar" \
+        -in "$pdf" -out "$work/result-$idx.html" -log off > /dev/null || exit 1
+done
+# the runs share most classes
+sort -u "$work"/classes-*.lst > "$work/classes.lst"
+
+java -Xshare:dump -XX:SharedClassListFile="$work/classes.lst" -XX:SharedArchiveFile="$archive" \
+    -cp "$jar" > "$work/dump.log" 2>&1 || { cat "$work/dump.log" >&2; exit 1; }
+echo "Archived $(wc -l < "$work/classes.lst") classes in $archive"
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import java.util.Arrays;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Classifies a block of glyphs per instruction when all glyphs of a page are
+ * classified, their coordinates being read in sequence. As the glyphs are
+ * ordered, the first and the last glyph of a block are usually in the same
+ * band: the box coordinates of the block are loaded in vectors and all
+ * checked against that band at once. The other blocks are classified glyph
+ * per glyph.
+ * <p>
+ * Glyphs picked by id are classified by the scalar code: loading them with an
+ * index map isn't faster, and crashes C2 on some JDK 17 builds.
+ * <p>
+ * Vector comparisons don't order -0.0 and 0.0 as Float.compare does, bands
+ * with such an endpoint are classified glyph per glyph too: the result is
+ * always the scalar one.
+ */
+class VectorGlyphClassifier extends GlyphClassifier {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    //--------------------------------------------------------------------------
+    //  Implement N Override
+    @Override
+    int[] classify(float[] mins, float[] maxs, int[] glyphIds, float[] lowers, float[] uppers) {
+        return scalar().classify(mins, maxs, glyphIds, lowers, uppers);
+    }
+
+    @Override
+    int[] classifyAll(float[] mins, float[] maxs, float[] lowers, float[] uppers) {
+        int[] retVal = new int[mins.length];
+        int length = SPECIES.length();
+        // count of lower endpoints not greater than the first min of the block
+        int count = 0;
+        int idx = 0;
+        for (; idx + length <= mins.length; idx += length) {
+            float firstMin = mins[idx];
+            float lastMin = mins[idx + length - 1];
+            int band = -1;
+            if (Float.compare(firstMin, lastMin) <= 0) {
+                count = countNotGreater(lowers, firstMin, count);
+                if (count == countNotGreater(lowers, lastMin, count)) {
+                    band = count - 1;
+                }
+            } else {
+                // not ordered
+                count = 0;
+            }
+            if (band >= 0 && lowers[band] != 0 && uppers[band] != 0) {
+                // false for NaN
+                if (FloatVector.fromArray(SPECIES, mins, idx).compare(VectorOperators.GE, lowers[band])
+                        .and(FloatVector.fromArray(SPECIES, maxs, idx).compare(VectorOperators.LE, uppers[band]))
+                        .allTrue()) {
+                    Arrays.fill(retVal, idx, idx + length, band);
+                    continue;
+                }
+            }
+            for (int glyphId = idx; glyphId < idx + length; glyphId++) {
+                retVal[glyphId] = getEnclosingBand(mins[glyphId], maxs[glyphId], lowers, uppers);
+            }
+        }
+        for (; idx < mins.length; idx++) {
+            retVal[idx] = getEnclosingBand(mins[idx], maxs[idx], lowers, uppers);
+        }
+        return retVal;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    /**
+     * @param lowers ASC
+     * @param value
+     * @param from count already known, at most the result
+     * @return count of lower endpoints not greater than value
+     */
+    private static int countNotGreater(float[] lowers, float value, int from) {
+        int retVal = from;
+        while (retVal < lowers.length && Float.compare(lowers[retVal], value) <= 0) {
+            retVal++;
+        }
+        return retVal;
+    }
+}
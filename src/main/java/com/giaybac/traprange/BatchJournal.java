@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only journal of a {@link BatchRunner}: one line per record, the
+ * last record of an input wins. Each record is synced to the disk before the
+ * batch goes on, a line cut by a crash is ignored when the journal is read
+ * again.
+ */
+class BatchJournal implements Closeable {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private static final String SEPARATOR = "\t";
+    private static final int FIELD_COUNT = 9;
+
+    private final FileOutputStream output;
+    // input path -> last record
+    private final Map<String, Record> records = new HashMap<>();
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    /**
+     * Read the records of the file, if any, and open it for appending
+     *
+     * @param file
+     * @throws IOException
+     */
+    BatchJournal(File file) throws IOException {
+        boolean cutLine = false;
+        if (file.exists()) {
+            read(file);
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+                if (randomAccessFile.length() > 0) {
+                    randomAccessFile.seek(randomAccessFile.length() - 1);
+                    cutLine = randomAccessFile.read() != '\n';
+                }
+            }
+        }
+        this.output = new FileOutputStream(file, true);
+        if (cutLine) {
+            // next records start on their own line
+            output.write('\n');
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * @param input
+     * @return last record of the input, null if none
+     */
+    Record get(File input) {
+        return records.get(input.getAbsolutePath());
+    }
+
+    /**
+     * Write the record and sync it to the disk
+     *
+     * @param record
+     * @throws IOException
+     */
+    void append(Record record) throws IOException {
+        StringBuilder line = new StringBuilder();
+        line.append(record.status.name()).append(SEPARATOR)
+                .append(record.attempts).append(SEPARATOR)
+                .append(record.size).append(SEPARATOR)
+                .append(record.lastModified).append(SEPARATOR)
+                .append(record.contentHash).append(SEPARATOR)
+                .append(record.optionsKey).append(SEPARATOR)
+                .append(record.inputPath).append(SEPARATOR)
+                .append(record.outputPath).append(SEPARATOR)
+                .append(record.message == null ? "" : record.message.replaceAll("[\\t\\r\\n]+", " "))
+                .append('\n');
+        output.write(line.toString().getBytes(StandardCharsets.UTF_8));
+        output.getFD().sync();
+        records.put(record.inputPath, record);
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private void read(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Record record = parse(line);
+                if (record != null) {
+                    records.put(record.inputPath, record);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param line
+     * @return null if the line was cut by a crash
+     */
+    private static Record parse(String line) {
+        String[] fields = line.split(SEPARATOR, -1);
+        if (fields.length != FIELD_COUNT) {
+            return null;
+        }
+        try {
+            return new Record(Status.valueOf(fields[0]), Integer.parseInt(fields[1]), Long.parseLong(fields[2]),
+                    Long.parseLong(fields[3]), fields[4], fields[5], fields[6], fields[7],
+                    fields[8].isEmpty() ? null : fields[8]);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Inner class
+    enum Status {
+        // the extraction of the input began, the run stopped during it if no
+        // record follows
+        STARTED,
+        DONE,
+        FAILED
+    }
+
+    static class Record {
+
+        private final Status status;
+        // extractions of the unchanged input in a row, the run stopping
+        // during all of them but the last one
+        private final int attempts;
+        private final long size;
+        private final long lastModified;
+        private final String contentHash;
+        private final String optionsKey;
+        private final String inputPath;
+        private final String outputPath;
+        // why the input failed, null if it didn't
+        private final String message;
+
+        Record(Status status, int attempts, long size, long lastModified, String contentHash, String optionsKey,
+                String inputPath, String outputPath, String message) {
+            this.status = status;
+            this.attempts = attempts;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+            this.optionsKey = optionsKey;
+            this.inputPath = inputPath;
+            this.outputPath = outputPath;
+            this.message = message;
+        }
+
+        Status getStatus() {
+            return status;
+        }
+
+        int getAttempts() {
+            return attempts;
+        }
+
+        String getContentHash() {
+            return contentHash;
+        }
+
+        String getOptionsKey() {
+            return optionsKey;
+        }
+
+        String getOutputPath() {
+            return outputPath;
+        }
+
+        String getMessage() {
+            return message;
+        }
+
+        /**
+         * @param input
+         * @return true if the input has the size and the modification time
+         * of the record
+         */
+        boolean isUnchanged(File input) {
+            return input.length() == size && input.lastModified() == lastModified;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import com.giaybac.traprange.entity.Table;
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extract many documents into an output directory, one HTML file per input,
+ * and keep a {@link BatchJournal} so that a run which stopped can be started
+ * again where it stopped.
+ * <p>
+ * An input is skipped when the journal has it done with the same options and
+ * its output exists: its size and modification time are checked first, its
+ * SHA-256 only if they changed. Outputs are written to a temp file then
+ * renamed, so an output is either complete or missing. An input which fails
+ * is recorded with its error and the batch goes on, it is tried again by the
+ * next run. An input during which the run stopped, e.g. out of memory, is
+ * tried again up to {@link #setMaxAttempts(int)} times.
+ * <p>
+ * The options key is made of the options written for the worker processes
+ * and of the layout, if any. A row filter is code and can't be recorded:
+ * options with one are rejected.
+ */
+public class BatchRunner {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    public static final int DEFAULT_MAX_ATTEMPTS = 2;
+    private static final String OUTPUT_EXTENSION = ".html";
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    private final Logger logger = LoggerFactory.getLogger(BatchRunner.class);
+    private final TableExtractionEngine engine;
+    private final ExtractionOptions options;
+    private final File outputDir;
+    private final File journalFile;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    // stats of the last run
+    private int extractedCount = 0;
+    private int skippedCount = 0;
+    private final Map<File, String> failures = new LinkedHashMap<>();
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    /**
+     * @param engine
+     * @param options
+     * @param outputDir created if missing
+     * @param journalFile created by the first run
+     * @throws IllegalArgumentException if the options have a row filter
+     */
+    public BatchRunner(TableExtractionEngine engine, ExtractionOptions options, File outputDir, File journalFile) {
+        if (options.getRowFilter() != null) {
+            throw new IllegalArgumentException("A row filter can't be recorded in the batch journal");
+        }
+        this.engine = engine;
+        this.options = options;
+        this.outputDir = outputDir;
+        this.journalFile = journalFile;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    /**
+     * @param maxAttempts extractions of an unchanged input during which the
+     * run stopped before the input is recorded as failed without being tried
+     * again
+     * @return
+     */
+    public BatchRunner setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Invalid max attempts: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * @return inputs extracted by the last run
+     */
+    public int getExtractedCount() {
+        return extractedCount;
+    }
+
+    /**
+     * @return inputs of the last run already done by an earlier one
+     */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * @return inputs of the last run which failed, with their error
+     */
+    public Map<File, String> getFailures() {
+        return failures;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * @param input
+     * @return file the tables of the input are written to
+     */
+    public File getOutputFile(File input) {
+        return getOutputFile(outputDir, input);
+    }
+
+    /**
+     * Extract the inputs which aren't done yet
+     *
+     * @param inputs with distinct output files, see {@link #getOutputFile(File)}
+     * @throws IOException if the journal or the output directory can't be
+     * written, failures of the inputs are recorded instead
+     */
+    public void run(List<File> inputs) throws IOException {
+        extractedCount = 0;
+        skippedCount = 0;
+        failures.clear();
+        checkOutputFiles(inputs);
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Create output directory fail: " + outputDir);
+        }
+        String optionsKey = getOptionsKey();
+        try (BatchJournal journal = new BatchJournal(journalFile)) {
+            for (File input : inputs) {
+                runInput(journal, input, optionsKey);
+            }
+        }
+        logger.debug("Batch: extracted " + extractedCount + " input(s), skipped " + skippedCount
+                + ", failed " + failures.size());
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private void runInput(BatchJournal journal, File input, String optionsKey) throws IOException {
+        String inputPath = input.getAbsolutePath();
+        File outputFile = getOutputFile(input);
+        BatchJournal.Record last = journal.get(input);
+        boolean unchanged = last != null && last.isUnchanged(input);
+        if (unchanged && isDone(last, optionsKey, outputFile)) {
+            skippedCount++;
+            return;
+        }
+        if (unchanged && last.getStatus() == BatchJournal.Status.STARTED && last.getAttempts() >= maxAttempts) {
+            String message = "Run stopped during " + last.getAttempts() + " attempt(s)";
+            journal.append(newRecord(BatchJournal.Status.FAILED, last.getAttempts(), input, last.getContentHash(),
+                    optionsKey, outputFile, message));
+            failures.put(input, message);
+            return;
+        }
+        String contentHash;
+        try {
+            contentHash = com.google.common.io.Files.hash(input, Hashing.sha256()).toString();
+        } catch (IOException ex) {
+            recordFailure(journal, input, 0, "", optionsKey, outputFile, ex);
+            return;
+        }
+        if (last != null && !unchanged && contentHash.equals(last.getContentHash())
+                && isDone(last, optionsKey, outputFile)) {
+            // touched only, the next run won't hash it again
+            journal.append(newRecord(BatchJournal.Status.DONE, last.getAttempts(), input, contentHash, optionsKey,
+                    outputFile, null));
+            skippedCount++;
+            return;
+        }
+        // counts the attempts the run stopped during
+        int attempts = unchanged && last.getStatus() == BatchJournal.Status.STARTED ? last.getAttempts() + 1 : 1;
+        journal.append(newRecord(BatchJournal.Status.STARTED, attempts, input, contentHash, optionsKey, outputFile,
+                null));
+        try {
+            extract(input, outputFile);
+        } catch (IOException | RuntimeException ex) {
+            recordFailure(journal, input, attempts, contentHash, optionsKey, outputFile, ex);
+            return;
+        }
+        journal.append(newRecord(BatchJournal.Status.DONE, attempts, input, contentHash, optionsKey, outputFile,
+                null));
+        extractedCount++;
+        logger.debug("Extracted " + inputPath + " to " + outputFile);
+    }
+
+    private static boolean isDone(BatchJournal.Record record, String optionsKey, File outputFile) {
+        return record.getStatus() == BatchJournal.Status.DONE && record.getOptionsKey().equals(optionsKey)
+                && record.getOutputPath().equals(outputFile.getAbsolutePath()) && outputFile.isFile();
+    }
+
+    private void recordFailure(BatchJournal journal, File input, int attempts, String contentHash,
+            String optionsKey, File outputFile, Exception ex) throws IOException {
+        String message = ex.getMessage() != null ? ex.getMessage() : ex.getClass().getName();
+        if (ex.getCause() != null && ex.getCause().getMessage() != null) {
+            message += ": " + ex.getCause().getMessage();
+        }
+        logger.warn("Extract " + input + " fail", ex);
+        journal.append(newRecord(BatchJournal.Status.FAILED, attempts, input, contentHash, optionsKey, outputFile,
+                message));
+        failures.put(input, message);
+    }
+
+    private static BatchJournal.Record newRecord(BatchJournal.Status status, int attempts, File input,
+            String contentHash, String optionsKey, File outputFile, String message) {
+        return new BatchJournal.Record(status, attempts, input.length(), input.lastModified(), contentHash,
+                optionsKey, input.getAbsolutePath(), outputFile.getAbsolutePath(), message);
+    }
+
+    private void extract(File input, File outputFile) throws IOException {
+        try (ExtractionResult result = engine.extract(input, options)) {
+            writeTables(result.getTables(), outputFile);
+        }
+    }
+
+    /**
+     * Write the tables to a temp file, synced, then rename it to the output
+     * file: the output is either complete or missing
+     *
+     * @param tables
+     * @param outputFile
+     * @throws IOException
+     */
+    static void writeTables(List<Table> tables, File outputFile) throws IOException {
+        File tempFile = new File(outputFile.getPath() + TEMP_EXTENSION);
+        try (FileOutputStream output = new FileOutputStream(tempFile)) {
+            Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            for (Table table : tables) {
+                writer.write("Page: " + (table.getPageIdx() + 1) + "\n");
+                writer.write(table.toHtml());
+            }
+            writer.flush();
+            output.getFD().sync();
+        } catch (IOException | RuntimeException ex) {
+            tempFile.delete();
+            throw ex;
+        }
+        try {
+            Files.move(tempFile.toPath(), outputFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tempFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @param outputDir
+     * @param input
+     * @return file of the output directory named after the input, with the
+     * HTML extension
+     */
+    static File getOutputFile(File outputDir, File input) {
+        String name = input.getName();
+        int extensionStart = name.lastIndexOf('.');
+        return new File(outputDir, (extensionStart > 0 ? name.substring(0, extensionStart) : name) + OUTPUT_EXTENSION);
+    }
+
+    private String getOptionsKey() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            options.write(output);
+            if (options.getLayout() != null) {
+                Writer layoutWriter = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+                options.getLayout().write(layoutWriter);
+                layoutWriter.flush();
+            }
+        }
+        return Hashing.sha256().hashBytes(bytes.toByteArray()).toString();
+    }
+
+    private void checkOutputFiles(List<File> inputs) {
+        Map<File, File> inputsByOutput = new HashMap<>();
+        for (File input : inputs) {
+            File other = inputsByOutput.put(getOutputFile(input), input);
+            if (other != null) {
+                throw new IllegalArgumentException("Inputs " + other + " and " + input + " have the same output");
+            }
+        }
+    }
+}
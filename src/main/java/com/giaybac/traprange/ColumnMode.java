@@ -0,0 +1,28 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+/**
+ * How column trap-ranges are shared between the extracted pages
+ */
+public enum ColumnMode {
+
+    /**
+     * One set of columns joined from the tables of all extracted pages
+     */
+    GLOBAL,
+    /**
+     * Each page gets the columns of its own table
+     */
+    PER_PAGE,
+    /**
+     * One set of columns joined from a sample of the table pages, see
+     * {@link ExtractionOptions.Builder#setColumnSampleSize(int)}. A page with
+     * texts outside of these columns gets the columns of its own table, and
+     * is reported by {@link ExtractionResult#getDriftedPages()}
+     */
+    SAMPLED
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+
+/**
+ * SHA-256 of a COS object graph that doesn't depend on object numbers:
+ * dictionary keys are sorted and indirect objects are hashed by content. A
+ * hasher gives one hash, create another one for the next graph.
+ */
+class ContentHasher {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private final Hasher hasher = Hashing.sha256().newHasher();
+    // ordinal of the first visit of each array and dictionary
+    private final Map<COSBase, Integer> visited = new IdentityHashMap<>();
+    // raw bytes of the streams already read, null if not kept
+    private final Map<COSStream, HashCode> streamHashes;
+    private int byteCount = 0;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    ContentHasher() {
+        this(null);
+    }
+
+    /**
+     * @param streamHashes hashes of the stream data, shared by the hashers of
+     * one document so that a stream used by many graphs is read once
+     */
+    ContentHasher(Map<COSStream, HashCode> streamHashes) {
+        this.streamHashes = streamHashes;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    /**
+     * @return raw stream bytes read so far
+     */
+    int getByteCount() {
+        return byteCount;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    ContentHasher putFloat(float value) {
+        hasher.putByte((byte) 'F').putFloat(value);
+        return this;
+    }
+
+    ContentHasher putInt(int value) {
+        hasher.putByte((byte) 'I').putLong(value);
+        return this;
+    }
+
+    HashCode hash() {
+        return hasher.hash();
+    }
+
+    void hash(COSBase base) throws IOException {
+        if (base instanceof COSObject) {
+            base = ((COSObject) base).getObject();
+        }
+        if (base == null) {
+            hasher.putByte((byte) 'N');
+        } else if (base instanceof COSName) {
+            hasher.putByte((byte) '/').putString(((COSName) base).getName(), StandardCharsets.UTF_8);
+        } else if (base instanceof COSString) {
+            byte[] bytes = ((COSString) base).getBytes();
+            hasher.putByte((byte) 'S').putInt(bytes.length).putBytes(bytes);
+        } else if (base instanceof COSFloat) {
+            putFloat(((COSFloat) base).floatValue());
+        } else if (base instanceof COSNumber) {
+            hasher.putByte((byte) 'I').putLong(((COSNumber) base).longValue());
+        } else if (base instanceof COSBoolean) {
+            hasher.putByte((byte) 'B').putBoolean(((COSBoolean) base).getValue());
+        } else if (visited.containsKey(base)) {
+            // cycle or shared sub object: its content is already in the hash,
+            // which one it is tells graphs sharing other sub objects apart
+            hasher.putByte((byte) 'R').putInt(visited.get(base));
+        } else {
+            visited.put(base, visited.size());
+            hashContent(base);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private void hashContent(COSBase base) throws IOException {
+        if (base instanceof COSArray) {
+            COSArray array = (COSArray) base;
+            hasher.putByte((byte) '[').putInt(array.size());
+            for (int idx = 0; idx < array.size(); idx++) {
+                hash(array.get(idx));
+            }
+        } else if (base instanceof COSDictionary) {
+            COSDictionary dictionary = (COSDictionary) base;
+            List<COSName> keys = new ArrayList<>(dictionary.keySet());
+            Collections.sort(keys);
+            hasher.putByte((byte) '<').putInt(keys.size());
+            for (COSName key : keys) {
+                hash(key);
+                hash(dictionary.getItem(key));
+            }
+            if (base instanceof COSStream) {
+                hashStream((COSStream) base);
+            }
+        } else {
+            hasher.putByte((byte) '?').putString(base.getClass().getName(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private void hashStream(COSStream stream) throws IOException {
+        if (streamHashes == null) {
+            byte[] bytes = readRaw(stream);
+            hasher.putByte((byte) 'D').putInt(bytes.length).putBytes(bytes);
+            return;
+        }
+        HashCode streamHash = streamHashes.get(stream);
+        if (streamHash == null) {
+            streamHash = Hashing.sha256().hashBytes(readRaw(stream));
+            streamHashes.put(stream, streamHash);
+        }
+        hasher.putByte((byte) 'H').putBytes(streamHash.asBytes());
+    }
+
+    private byte[] readRaw(COSStream stream) throws IOException {
+        try (InputStream raw = stream.createRawInputStream()) {
+            byte[] retVal = ByteStreams.toByteArray(raw);
+            byteCount += retVal.length;
+            return retVal;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.pdfbox.text.TextPosition;
+
+/**
+ * Drops the glyphs drawn again over themselves, as fake bold and overprinted
+ * texts do: same unicode and width, and both coordinates closer than a
+ * fraction of the glyph width.
+ * <p>
+ * Glyphs are hashed on their position quantized by a grid, one grid per
+ * unicode and width bucket, whose cells are as large as the distance of the
+ * widest glyph of the bucket. A glyph is compared with the glyphs of the 9
+ * cells around it only, and with the next bucket's when its width is close to
+ * the bucket bound, so a page is filtered in linear time whatever the glyph
+ * sizes.
+ */
+class DuplicateGlyphFilter {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    // width range of a bucket, in points
+    private static final float WIDTH_QUANTUM = 0.5f;
+    // copies of a glyph have the same width, up to rounding
+    private static final float WIDTH_EPSILON = 0.05f;
+    // fraction of the glyph width
+    private final float tolerance;
+    private final Map<Cell, List<TextPosition>> cells = new HashMap<>();
+    private int duplicateCount = 0;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    /**
+     * @param tolerance fraction of the glyph width under which two glyphs
+     * overlap, 0 keeps all glyphs
+     */
+    DuplicateGlyphFilter(float tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * @param text
+     * @return true if an overlapping copy of the glyph was seen already,
+     * otherwise the glyph is remembered
+     */
+    boolean isDuplicate(TextPosition text) {
+        String unicode = text.getUnicode();
+        float width = text.getWidth();
+        float maxDistance = unicode == null || unicode.isEmpty()
+                ? 0
+                : width / unicode.length() * tolerance;
+        // also false for NaN
+        if (!(maxDistance > 0)) {
+            return false;
+        }
+        long widthBucket = Math.round(width / WIDTH_QUANTUM);
+        if (overlaps(unicode, widthBucket, text, maxDistance)
+                || isNearBucketBound(width, widthBucket - 1)
+                && overlaps(unicode, widthBucket - 1, text, maxDistance)
+                || isNearBucketBound(width, widthBucket + 1)
+                && overlaps(unicode, widthBucket + 1, text, maxDistance)) {
+            duplicateCount++;
+            return true;
+        }
+        float cellSize = getCellSize(unicode, widthBucket);
+        Cell cell = new Cell(unicode, widthBucket, (long) Math.floor(text.getX() / cellSize),
+                (long) Math.floor(text.getY() / cellSize));
+        List<TextPosition> cellTexts = cells.get(cell);
+        if (cellTexts == null) {
+            cellTexts = new ArrayList<>(1);
+            cells.put(cell, cellTexts);
+        }
+        cellTexts.add(text);
+        return false;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    /**
+     * @param unicode
+     * @param widthBucket
+     * @param text
+     * @param maxDistance
+     * @return true if a glyph of the bucket overlaps the text
+     */
+    private boolean overlaps(String unicode, long widthBucket, TextPosition text, float maxDistance) {
+        float cellSize = getCellSize(unicode, widthBucket);
+        long column = (long) Math.floor(text.getX() / cellSize);
+        long row = (long) Math.floor(text.getY() / cellSize);
+        // cells to look at on each side, 1 in the bucket of the text
+        long reach = (long) Math.ceil(maxDistance / cellSize);
+        for (long neighbourColumn = column - reach; neighbourColumn <= column + reach; neighbourColumn++) {
+            for (long neighbourRow = row - reach; neighbourRow <= row + reach; neighbourRow++) {
+                List<TextPosition> cellTexts = cells.get(new Cell(unicode, widthBucket, neighbourColumn, neighbourRow));
+                if (cellTexts != null && overlaps(cellTexts, text, maxDistance)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean overlaps(List<TextPosition> cellTexts, TextPosition text, float maxDistance) {
+        for (TextPosition cellText : cellTexts) {
+            if (Math.abs(cellText.getWidth() - text.getWidth()) <= WIDTH_EPSILON
+                    && Math.abs(cellText.getX() - text.getX()) < maxDistance
+                    && Math.abs(cellText.getY() - text.getY()) < maxDistance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param unicode
+     * @param widthBucket
+     * @return max distance of the widest glyph of the bucket, the same for all
+     * glyphs of the bucket
+     */
+    private float getCellSize(String unicode, long widthBucket) {
+        return (widthBucket + 0.5f) * WIDTH_QUANTUM / unicode.length() * tolerance;
+    }
+
+    /**
+     * @param width
+     * @param widthBucket
+     * @return true if a glyph of the bucket can be as wide as this width
+     */
+    private static boolean isNearBucketBound(float width, long widthBucket) {
+        return widthBucket >= 0
+                && width + WIDTH_EPSILON >= (widthBucket - 0.5f) * WIDTH_QUANTUM
+                && width - WIDTH_EPSILON < (widthBucket + 0.5f) * WIDTH_QUANTUM;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Inner class
+    /**
+     * Glyphs of the same unicode and width bucket in a square of their grid
+     */
+    private static class Cell {
+
+        private final String unicode;
+        private final long widthBucket;
+        private final long column;
+        private final long row;
+
+        private Cell(String unicode, long widthBucket, long column, long row) {
+            this.unicode = unicode;
+            this.widthBucket = widthBucket;
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Cell)) {
+                return false;
+            }
+            Cell other = (Cell) obj;
+            return column == other.column && row == other.row && widthBucket == other.widthBucket
+                    && unicode.equals(other.unicode);
+        }
+
+        @Override
+        public int hashCode() {
+            int retVal = unicode.hashCode();
+            retVal = 31 * retVal + (int) (widthBucket ^ (widthBucket >>> 32));
+            retVal = 31 * retVal + (int) (column ^ (column >>> 32));
+            retVal = 31 * retVal + (int) (row ^ (row >>> 32));
+            return retVal;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cooperative time budget of one extraction. Long running loops call
+ * {@link #check()} which throws as soon as the extraction is cancelled or one
+ * of its deadlines has passed. Rows of a dense page call it from the threads of
+ * the fork/join pool, see {@link RowTasks}: each thread counts its own calls.
+ */
+class ExtractionDeadline {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    // System.nanoTime() is only read every CLOCK_CHECK_INTERVAL checks
+    private static final int CLOCK_CHECK_INTERVAL = 64;
+
+    private final long documentTimeoutNanos;
+    private final long documentDeadline;
+    private final long pageTimeoutNanos;
+    private final AtomicBoolean cancelled;
+    private volatile long pageDeadline;
+    private volatile int pageIdx = -1;
+    // one counter per thread: no lost updates and no cache line shared by workers
+    private final ThreadLocal<int[]> checkCounts = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    /**
+     * @param documentTimeoutNanos budget of the whole document, 0 means no limit
+     * @param pageTimeoutNanos budget of each page, 0 means no limit
+     * @param cancelled flag set from another thread to stop the extraction
+     */
+    ExtractionDeadline(long documentTimeoutNanos, long pageTimeoutNanos, AtomicBoolean cancelled) {
+        this.documentTimeoutNanos = documentTimeoutNanos;
+        this.documentDeadline = System.nanoTime() + documentTimeoutNanos;
+        this.pageTimeoutNanos = pageTimeoutNanos;
+        this.cancelled = cancelled;
+    }
+
+    static ExtractionDeadline none() {
+        return new ExtractionDeadline(0, 0, new AtomicBoolean());
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * Start the page budget of this page and check the document budget
+     *
+     * @param pageIdx
+     */
+    void startPage(int pageIdx) {
+        this.pageIdx = pageIdx;
+        this.pageDeadline = System.nanoTime() + pageTimeoutNanos;
+        checkNow();
+    }
+
+    /**
+     * Cheap enough to be called for each glyph: the clock is only read every
+     * few calls of the calling thread
+     */
+    void check() {
+        if (cancelled.get()) {
+            throw new CancellationException("Extraction has been cancelled");
+        }
+        int[] checkCount = checkCounts.get();
+        if (++checkCount[0] % CLOCK_CHECK_INTERVAL == 0) {
+            checkClock();
+        }
+    }
+
+    void checkNow() {
+        if (cancelled.get()) {
+            throw new CancellationException("Extraction has been cancelled");
+        }
+        checkClock();
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private void checkClock() {
+        long now = System.nanoTime();
+        if (documentTimeoutNanos > 0 && now - documentDeadline > 0) {
+            throw new ExtractionTimeoutException(pageIdx, true);
+        }
+        if (pageTimeoutNanos > 0 && pageIdx >= 0 && now - pageDeadline > 0) {
+            throw new ExtractionTimeoutException(pageIdx, false);
+        }
+    }
+}
@@ -0,0 +1,648 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Range;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable settings of one extraction: which pages and lines to read and how
+ * to assemble the tables. Created with {@link #builder()}, an existing value
+ * can be tweaked through {@link #toBuilder()}.
+ */
+public class ExtractionOptions {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    public static final float DEFAULT_DUPLICATE_TOLERANCE = 1 / 3f;
+    public static final int DEFAULT_PARALLEL_GLYPH_THRESHOLD = 20000;
+    public static final int DEFAULT_COLUMN_SAMPLE_SIZE = 10;
+    public static final float DEFAULT_BOILERPLATE_RATIO = 0.5f;
+    // if empty, all pages will be extracted
+    private final ImmutableSet<Integer> pages;
+    private final ImmutableSet<Integer> exceptedPages;
+    // page idx -> avoided line idx-s, page idx -1 means all pages
+    private final ImmutableSetMultimap<Integer, Integer> exceptedLines;
+    // lines on this ratio of the pages are avoided, 0 keeps them
+    private final float boilerplateRatio;
+    // only texts enclosed by this region are read, null means the whole page
+    private final Range<Float> regionXBand;
+    private final Range<Float> regionYBand;
+    private final ColumnMode columnMode;
+    private final long documentTimeoutNanos;
+    private final long pageTimeoutNanos;
+    private final TimeoutPolicy timeoutPolicy;
+    private final boolean prescreen;
+    // fraction of the glyph width
+    private final float duplicateTolerance;
+    private final int parallelGlyphThreshold;
+    // table pages the columns are built from in ColumnMode.SAMPLED
+    private final int columnSampleSize;
+    // column idx-s the tables keep, empty means all columns
+    private final ImmutableSortedSet<Integer> columnProjection;
+    // null keeps all rows
+    private final RowFilter rowFilter;
+    // rows kept on heap while a table is built, 0 if rows aren't spilled
+    private final int rowWindow;
+    private final boolean columnar;
+    private final boolean tagged;
+    // null means lines and columns are detected
+    private final LayoutSpec layout;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    private ExtractionOptions(Builder builder) {
+        this.pages = ImmutableSet.copyOf(builder.pages);
+        this.exceptedPages = ImmutableSet.copyOf(builder.exceptedPages);
+        this.exceptedLines = builder.exceptedLines.build();
+        this.boilerplateRatio = builder.boilerplateRatio;
+        this.regionXBand = builder.regionXBand;
+        this.regionYBand = builder.regionYBand;
+        this.columnMode = builder.columnMode;
+        this.documentTimeoutNanos = builder.documentTimeoutNanos;
+        this.pageTimeoutNanos = builder.pageTimeoutNanos;
+        this.timeoutPolicy = builder.timeoutPolicy;
+        this.prescreen = builder.prescreen;
+        this.duplicateTolerance = builder.duplicateTolerance;
+        this.parallelGlyphThreshold = builder.parallelGlyphThreshold;
+        this.columnSampleSize = builder.columnSampleSize;
+        this.columnProjection = ImmutableSortedSet.copyOf(builder.columnProjection);
+        this.rowFilter = builder.rowFilter;
+        this.rowWindow = builder.rowWindow;
+        this.columnar = builder.columnar;
+        this.tagged = builder.tagged;
+        this.layout = builder.layout;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return a builder initialized with these options
+     */
+    public Builder toBuilder() {
+        Builder retVal = new Builder();
+        retVal.pages.addAll(pages);
+        retVal.exceptedPages.addAll(exceptedPages);
+        retVal.exceptedLines.putAll(exceptedLines);
+        retVal.boilerplateRatio = boilerplateRatio;
+        retVal.regionXBand = regionXBand;
+        retVal.regionYBand = regionYBand;
+        retVal.columnMode = columnMode;
+        retVal.documentTimeoutNanos = documentTimeoutNanos;
+        retVal.pageTimeoutNanos = pageTimeoutNanos;
+        retVal.timeoutPolicy = timeoutPolicy;
+        retVal.prescreen = prescreen;
+        retVal.duplicateTolerance = duplicateTolerance;
+        retVal.parallelGlyphThreshold = parallelGlyphThreshold;
+        retVal.columnSampleSize = columnSampleSize;
+        retVal.columnProjection.addAll(columnProjection);
+        retVal.rowFilter = rowFilter;
+        retVal.rowWindow = rowWindow;
+        retVal.columnar = columnar;
+        retVal.tagged = tagged;
+        retVal.layout = layout;
+        return retVal;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    public Set<Integer> getPages() {
+        return pages;
+    }
+
+    public Set<Integer> getExceptedPages() {
+        return exceptedPages;
+    }
+
+    public ImmutableSetMultimap<Integer, Integer> getExceptedLines() {
+        return exceptedLines;
+    }
+
+    /**
+     * @return 0 if repeated lines are kept
+     */
+    public float getBoilerplateRatio() {
+        return boilerplateRatio;
+    }
+
+    /**
+     * @return horizontal band of the region, null if no region is set
+     */
+    public Range<Float> getRegionXBand() {
+        return regionXBand;
+    }
+
+    /**
+     * @return vertical band of the region, null if no region is set
+     */
+    public Range<Float> getRegionYBand() {
+        return regionYBand;
+    }
+
+    public boolean hasRegion() {
+        return regionXBand != null;
+    }
+
+    public ColumnMode getColumnMode() {
+        return columnMode;
+    }
+
+    public long getDocumentTimeoutNanos() {
+        return documentTimeoutNanos;
+    }
+
+    public long getPageTimeoutNanos() {
+        return pageTimeoutNanos;
+    }
+
+    public TimeoutPolicy getTimeoutPolicy() {
+        return timeoutPolicy;
+    }
+
+    public boolean isPrescreen() {
+        return prescreen;
+    }
+
+    public float getDuplicateTolerance() {
+        return duplicateTolerance;
+    }
+
+    public int getParallelGlyphThreshold() {
+        return parallelGlyphThreshold;
+    }
+
+    public int getColumnSampleSize() {
+        return columnSampleSize;
+    }
+
+    /**
+     * @return column idx-s the tables keep ordered ASC, empty if all columns
+     * are kept
+     */
+    public Set<Integer> getColumnProjection() {
+        return columnProjection;
+    }
+
+    /**
+     * @return null if all rows are kept
+     */
+    public RowFilter getRowFilter() {
+        return rowFilter;
+    }
+
+    /**
+     * @return 0 if rows aren't spilled to a temp file
+     */
+    public int getRowWindow() {
+        return rowWindow;
+    }
+
+    public boolean isColumnar() {
+        return columnar;
+    }
+
+    public boolean isTagged() {
+        return tagged;
+    }
+
+    /**
+     * @return null if lines and columns are detected
+     */
+    public LayoutSpec getLayout() {
+        return layout;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    public boolean isPageSelected(int pageIdx) {
+        return !exceptedPages.contains(pageIdx)
+                && (pages.isEmpty() || pages.contains(pageIdx));
+    }
+
+    /**
+     * Write these options for another process, see {@link #read(DataInput)}.
+     * The row filter and the layout aren't written: tables are assembled by
+     * the calling process only.
+     *
+     * @param output
+     * @throws IOException
+     */
+    void write(DataOutput output) throws IOException {
+        writeInts(output, pages);
+        writeInts(output, exceptedPages);
+        output.writeInt(exceptedLines.size());
+        for (Map.Entry<Integer, Integer> entry : exceptedLines.entries()) {
+            output.writeInt(entry.getKey());
+            output.writeInt(entry.getValue());
+        }
+        output.writeFloat(boilerplateRatio);
+        output.writeBoolean(hasRegion());
+        if (hasRegion()) {
+            TablePageModel.writeRange(output, regionXBand);
+            TablePageModel.writeRange(output, regionYBand);
+        }
+        output.writeUTF(columnMode.name());
+        output.writeLong(documentTimeoutNanos);
+        output.writeLong(pageTimeoutNanos);
+        output.writeUTF(timeoutPolicy.name());
+        output.writeBoolean(prescreen);
+        output.writeFloat(duplicateTolerance);
+        output.writeInt(parallelGlyphThreshold);
+        output.writeInt(columnSampleSize);
+        writeInts(output, columnProjection);
+        output.writeInt(rowWindow);
+        output.writeBoolean(columnar);
+        output.writeBoolean(tagged);
+    }
+
+    /**
+     * Write the options which change what is detected on a page, whatever
+     * the other pages are, see {@link IncrementalExtractor}
+     *
+     * @param output
+     * @throws IOException
+     */
+    void writePageOptions(DataOutput output) throws IOException {
+        output.writeInt(exceptedLines.size());
+        for (Map.Entry<Integer, Integer> entry : exceptedLines.entries()) {
+            output.writeInt(entry.getKey());
+            output.writeInt(entry.getValue());
+        }
+        output.writeBoolean(hasRegion());
+        if (hasRegion()) {
+            TablePageModel.writeRange(output, regionXBand);
+            TablePageModel.writeRange(output, regionYBand);
+        }
+        output.writeBoolean(prescreen);
+        output.writeFloat(duplicateTolerance);
+    }
+
+    static ExtractionOptions read(DataInput input) throws IOException {
+        Builder retVal = new Builder();
+        retVal.pages.addAll(readInts(input));
+        retVal.exceptedPages.addAll(readInts(input));
+        int exceptedLineCount = input.readInt();
+        for (int idx = 0; idx < exceptedLineCount; idx++) {
+            int pageIdx = input.readInt();
+            retVal.exceptedLines.put(pageIdx, input.readInt());
+        }
+        retVal.boilerplateRatio = input.readFloat();
+        if (input.readBoolean()) {
+            Range<Float> xBand = TablePageModel.readRange(input);
+            retVal.setRegion(xBand, TablePageModel.readRange(input));
+        }
+        retVal.columnMode = ColumnMode.valueOf(input.readUTF());
+        retVal.documentTimeoutNanos = input.readLong();
+        retVal.pageTimeoutNanos = input.readLong();
+        retVal.timeoutPolicy = TimeoutPolicy.valueOf(input.readUTF());
+        retVal.prescreen = input.readBoolean();
+        retVal.duplicateTolerance = input.readFloat();
+        retVal.parallelGlyphThreshold = input.readInt();
+        retVal.columnSampleSize = input.readInt();
+        retVal.columnProjection.addAll(readInts(input));
+        retVal.rowWindow = input.readInt();
+        retVal.columnar = input.readBoolean();
+        retVal.tagged = input.readBoolean();
+        return retVal.build();
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private static void writeInts(DataOutput output, Set<Integer> values) throws IOException {
+        output.writeInt(values.size());
+        for (int value : values) {
+            output.writeInt(value);
+        }
+    }
+
+    private static List<Integer> readInts(DataInput input) throws IOException {
+        int size = input.readInt();
+        List<Integer> retVal = new ArrayList<>(size);
+        for (int idx = 0; idx < size; idx++) {
+            retVal.add(input.readInt());
+        }
+        return retVal;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Inner class
+    public static class Builder {
+
+        private final Set<Integer> pages = new LinkedHashSet<>();
+        private final Set<Integer> exceptedPages = new LinkedHashSet<>();
+        private final ImmutableSetMultimap.Builder<Integer, Integer> exceptedLines = ImmutableSetMultimap.builder();
+        private float boilerplateRatio = 0;
+        private Range<Float> regionXBand;
+        private Range<Float> regionYBand;
+        private ColumnMode columnMode = ColumnMode.GLOBAL;
+        private long documentTimeoutNanos = 0;
+        private long pageTimeoutNanos = 0;
+        private TimeoutPolicy timeoutPolicy = TimeoutPolicy.FAIL_DOCUMENT;
+        private boolean prescreen = true;
+        private float duplicateTolerance = DEFAULT_DUPLICATE_TOLERANCE;
+        private int parallelGlyphThreshold = DEFAULT_PARALLEL_GLYPH_THRESHOLD;
+        private int columnSampleSize = DEFAULT_COLUMN_SAMPLE_SIZE;
+        private final Set<Integer> columnProjection = new TreeSet<>();
+        private RowFilter rowFilter;
+        private int rowWindow = 0;
+        private boolean columnar = false;
+        private boolean tagged = false;
+        private LayoutSpec layout;
+
+        private Builder() {
+        }
+
+        /**
+         * This page will be analyze and extract its table content
+         *
+         * @param pageIdx
+         * @return
+         */
+        public Builder addPage(int pageIdx) {
+            pages.add(pageIdx);
+            return this;
+        }
+
+        public Builder exceptPage(int pageIdx) {
+            exceptedPages.add(pageIdx);
+            return this;
+        }
+
+        /**
+         * Avoid a specific line in a specific page. LineIdx can be negative
+         * number, -1 is the last line
+         *
+         * @param pageIdx
+         * @param lineIdxs
+         * @return
+         */
+        public Builder exceptLine(int pageIdx, int[] lineIdxs) {
+            for (int lineIdx : lineIdxs) {
+                exceptedLines.put(pageIdx, lineIdx);
+            }
+            return this;
+        }
+
+        /**
+         * Avoid this line in all extracted pages. LineIdx can be negative
+         * number, -1 is the last line
+         *
+         * @param lineIdxs
+         * @return
+         */
+        public Builder exceptLine(int[] lineIdxs) {
+            return exceptLine(-1, lineIdxs);
+        }
+
+        /**
+         * Avoid the lines repeated on many extracted pages, such as page
+         * headers and footers, without listing them: lines are fingerprinted
+         * by their text, standalone numbers aside, and their Y, and the ones
+         * found on at least this ratio of the pages, and on 2 pages at least,
+         * are removed with the excepted lines. Only applies to
+         * {@link ExtractionSession} extractions. Default: 0, lines are kept.
+         *
+         * @param minPageRatio in ]0, 1], e.g.
+         * {@link #DEFAULT_BOILERPLATE_RATIO}, or 0
+         * @return
+         */
+        public Builder exceptBoilerplate(float minPageRatio) {
+            if (!(minPageRatio >= 0 && minPageRatio <= 1)) {
+                throw new IllegalArgumentException("Invalid boilerplate ratio: " + minPageRatio);
+            }
+            this.boilerplateRatio = minPageRatio;
+            return this;
+        }
+
+        /**
+         * Only read texts enclosed by this rectangle, in the coordinates of
+         * TextPosition (origin at the top left corner)
+         *
+         * @param xBand
+         * @param yBand
+         * @return
+         */
+        public Builder setRegion(Range<Float> xBand, Range<Float> yBand) {
+            if ((xBand == null) != (yBand == null)) {
+                throw new IllegalArgumentException("Region needs both bands or none");
+            }
+            this.regionXBand = xBand;
+            this.regionYBand = yBand;
+            return this;
+        }
+
+        public Builder setColumnMode(ColumnMode columnMode) {
+            this.columnMode = columnMode;
+            return this;
+        }
+
+        /**
+         * Limit the time spent on the whole document. 0 means no limit
+         *
+         * @param timeout
+         * @param unit
+         * @return
+         */
+        public Builder setDocumentTimeout(long timeout, TimeUnit unit) {
+            this.documentTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Limit the time spent on each page. 0 means no limit
+         *
+         * @param timeout
+         * @param unit
+         * @return
+         */
+        public Builder setPageTimeout(long timeout, TimeUnit unit) {
+            this.pageTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        public Builder setTimeoutPolicy(TimeoutPolicy timeoutPolicy) {
+            this.timeoutPolicy = timeoutPolicy;
+            return this;
+        }
+
+        /**
+         * Skip the pages whose content stream shows no text or less than two
+         * lines before their glyphs are extracted, see
+         * {@link SkipReason#NO_TEXT} and {@link SkipReason#TOO_FEW_LINES}.
+         * Enabled by default, it never changes the extracted tables.
+         *
+         * @param prescreen
+         * @return
+         */
+        public Builder setPrescreen(boolean prescreen) {
+            this.prescreen = prescreen;
+            return this;
+        }
+
+        /**
+         * Fake bold and overprinted texts draw each glyph several times with
+         * a small offset. A glyph is dropped when a glyph of the same unicode
+         * and width was drawn closer than this fraction of its width, on both
+         * axes. Default: 1/3, 0 keeps all glyphs.
+         *
+         * @param duplicateTolerance
+         * @return
+         */
+        public Builder setDuplicateTolerance(float duplicateTolerance) {
+            if (duplicateTolerance < 0) {
+                throw new IllegalArgumentException("Invalid duplicate tolerance: " + duplicateTolerance);
+            }
+            this.duplicateTolerance = duplicateTolerance;
+            return this;
+        }
+
+        /**
+         * Pages with at least this many glyphs have their rows split between
+         * the threads of the common fork/join pool, for the row and column
+         * detection and the table assembly. The tables are the same.
+         * Default: 20000, Integer.MAX_VALUE keeps all pages in the calling
+         * thread.
+         *
+         * @param parallelGlyphThreshold
+         * @return
+         */
+        public Builder setParallelGlyphThreshold(int parallelGlyphThreshold) {
+            this.parallelGlyphThreshold = parallelGlyphThreshold;
+            return this;
+        }
+
+        /**
+         * Table pages the columns are built from in {@link ColumnMode#SAMPLED}:
+         * the first and the last ones, and pages evenly spaced between them.
+         * The other pages are only checked against these columns. Default:
+         * 10.
+         *
+         * @param columnSampleSize
+         * @return
+         */
+        public Builder setColumnSampleSize(int columnSampleSize) {
+            if (columnSampleSize < 1) {
+                throw new IllegalArgumentException("Invalid column sample size: " + columnSampleSize);
+            }
+            this.columnSampleSize = columnSampleSize;
+            return this;
+        }
+
+        /**
+         * Only keep these columns in the extracted tables, in their order.
+         * Cells of the other columns are never built. Columns are renumbered:
+         * the first kept column gets idx 0.
+         *
+         * @param columnIdxs
+         * @return
+         */
+        public Builder setColumnProjection(int... columnIdxs) {
+            columnProjection.clear();
+            for (int columnIdx : columnIdxs) {
+                if (columnIdx < 0) {
+                    throw new IllegalArgumentException("Invalid column idx: " + columnIdx);
+                }
+                columnProjection.add(columnIdx);
+            }
+            return this;
+        }
+
+        /**
+         * Only keep the rows this filter accepts. It sees the rows before the
+         * column projection, and the dropped rows are never built.
+         *
+         * @param rowFilter null keeps all rows
+         * @return
+         */
+        public Builder setRowFilter(RowFilter rowFilter) {
+            this.rowFilter = rowFilter;
+            return this;
+        }
+
+        /**
+         * Spill the rows of the extracted tables to a temp file, keeping at
+         * most this many rows on heap while a table is built. The rows are
+         * read back from the file when accessed, and the file is deleted by
+         * {@link ExtractionResult#close()}. Default: 0, all rows stay on heap.
+         *
+         * @param rowWindow
+         * @return
+         */
+        public Builder setRowWindow(int rowWindow) {
+            if (rowWindow < 0) {
+                throw new IllegalArgumentException("Invalid row window: " + rowWindow);
+            }
+            this.rowWindow = rowWindow;
+            return this;
+        }
+
+        /**
+         * Store the extracted tables by column, see
+         * {@link com.giaybac.traprange.entity.ColumnarTable}: numbers as
+         * primitives and repeated texts as dictionary codes. The rows stay
+         * available as views. Tables are then kept on heap whatever the row
+         * window. Default: false.
+         *
+         * @param columnar
+         * @return
+         */
+        public Builder setColumnar(boolean columnar) {
+            this.columnar = columnar;
+            return this;
+        }
+
+        /**
+         * Read the tables of tagged pages from the structure tree of the
+         * document: rows and cells come from its <code>TR</code> and
+         * <code>TD</code> elements instead of the glyph positions, and the
+         * excepted lines and the region don't apply. Untagged pages, and
+         * documents without tables in their structure tree, take the
+         * geometric path. Only applies to {@link ExtractionSession}
+         * extractions. Default: false.
+         *
+         * @param tagged
+         * @return
+         */
+        public Builder setTagged(boolean tagged) {
+            this.tagged = tagged;
+            return this;
+        }
+
+        /**
+         * Read the tables from a known grid instead of detecting lines and
+         * columns: the glyphs of each page are put in the cells of the
+         * layout, see {@link LayoutSpec}. The excepted lines, the region and
+         * the column mode don't apply; tagged pages read with
+         * {@link #setTagged(boolean)} keep their structure tree. Only applies
+         * to {@link ExtractionSession} extractions. Default: null.
+         *
+         * @param layout null to detect lines and columns
+         * @return
+         */
+        public Builder setLayout(LayoutSpec layout) {
+            this.layout = layout;
+            return this;
+        }
+
+        public ExtractionOptions build() {
+            return new ExtractionOptions(this);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import com.giaybac.traprange.entity.RowSpillFile;
+import com.giaybac.traprange.entity.Table;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Extracted tables together with the pages that were selected but skipped,
+ * the glyphs dropped as duplicates and the pages that didn't fit the sampled
+ * columns. When rows are spilled, see
+ * {@link ExtractionOptions.Builder#setRowWindow(int)}, the result should be
+ * closed once its tables are read.
+ */
+public class ExtractionResult implements Closeable {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private final List<Table> tables = new ArrayList<>();
+    // skipped page idx -> reason, ordered by page idx ASC
+    private final Map<Integer, SkipReason> skippedPages = new TreeMap<>();
+    // overlapping copies of glyphs dropped from the extracted pages
+    private int duplicateGlyphCount = 0;
+    // pages assembled with their own columns, ordered by page idx ASC
+    private final Set<Integer> driftedPages = new TreeSet<>();
+    // null if rows stay on heap
+    private RowSpillFile rowSpillFile;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    /**
+     * Delete the file of the spilled rows, if any
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (rowSpillFile != null) {
+            rowSpillFile.close();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    public List<Table> getTables() {
+        return tables;
+    }
+
+    public Map<Integer, SkipReason> getSkippedPages() {
+        return skippedPages;
+    }
+
+    public int getSkippedPageCount(SkipReason reason) {
+        int retVal = 0;
+        for (SkipReason skipReason : skippedPages.values()) {
+            if (skipReason == reason) {
+                retVal++;
+            }
+        }
+        return retVal;
+    }
+
+    public int getDuplicateGlyphCount() {
+        return duplicateGlyphCount;
+    }
+
+    /**
+     * @return pages with texts outside of the columns sampled in
+     * {@link ColumnMode#SAMPLED}, their tables have the columns of their own
+     * texts
+     */
+    public Set<Integer> getDriftedPages() {
+        return driftedPages;
+    }
+
+    /**
+     * @return null if rows stay on heap
+     */
+    public RowSpillFile getRowSpillFile() {
+        return rowSpillFile;
+    }
+
+    /**
+     * Spill the rows of the tables if the options ask for it
+     *
+     * @param options
+     * @throws IOException
+     */
+    void initRowSpill(ExtractionOptions options) throws IOException {
+        if (options.getRowWindow() > 0 && !options.isColumnar()) {
+            rowSpillFile = new RowSpillFile();
+        }
+    }
+
+    void addDuplicateGlyphs(int count) {
+        duplicateGlyphCount += count;
+    }
+}
@@ -0,0 +1,705 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import com.giaybac.traprange.entity.Table;
+import com.google.common.collect.Range;
+import com.google.common.hash.HashCode;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A loaded document that can be extracted many times with different options.
+ * Each page is parsed once, the first time an extraction selects it: its
+ * glyphs and lines are kept in a compact model, and later extractions only
+ * re-run the table detection and assembly.
+ * <p>
+ * Extractions of a session run one at a time. The document stays open until
+ * {@link #close()}.
+ * <p>
+ * A session created for a {@link MemoryGovernor} reports the glyphs it keeps.
+ * In low memory mode it keeps no parsed page, and the table pages only keep
+ * the glyphs of their rows.
+ */
+public class ExtractionSession implements Closeable {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private final Logger logger = LoggerFactory.getLogger(ExtractionSession.class);
+    private final PDDocument document;
+    private final SharedResourceCache.DocumentCache documentCache;
+    // null if memory isn't governed
+    private final MemoryGovernor.Admission admission;
+    // parsed pages
+    private final Map<Integer, PageModel> pageModels = new HashMap<>();
+    // page idx -> why it can't contain a table, null if it may
+    private final Map<Integer, SkipReason> prescreenedPages = new HashMap<>();
+    // tables of the structure tree, read once
+    private TaggedTableReader taggedReader;
+    private boolean taggedReaderLoaded = false;
+    // hashes of the streams read by hashPage
+    private final Map<COSStream, HashCode> streamHashes = new IdentityHashMap<>();
+    // cancel flag of the running extraction
+    private volatile AtomicBoolean runningCancelled;
+    private boolean closed = false;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    public ExtractionSession(File file) throws IOException {
+        this(file, null, null);
+    }
+
+    /**
+     * @param file
+     * @param password null if the document isn't encrypted
+     * @param resourceCache null to parse the fonts of this document again
+     * @throws IOException
+     */
+    public ExtractionSession(File file, String password, SharedResourceCache resourceCache) throws IOException {
+        this(file, password, resourceCache, null);
+    }
+
+    /**
+     * @param file
+     * @param password null if the document isn't encrypted
+     * @param resourceCache null to parse the fonts of this document again
+     * @param admission null if memory isn't governed
+     * @throws IOException
+     */
+    ExtractionSession(File file, String password, SharedResourceCache resourceCache,
+            MemoryGovernor.Admission admission) throws IOException {
+        this(PDDocument.load(file, password != null ? password : "", getMemoryUsageSetting(admission)),
+                resourceCache, admission);
+    }
+
+    public ExtractionSession(InputStream inputStream) throws IOException {
+        this(inputStream, null, null);
+    }
+
+    /**
+     * @param inputStream
+     * @param password null if the document isn't encrypted
+     * @param resourceCache null to parse the fonts of this document again
+     * @throws IOException
+     */
+    public ExtractionSession(InputStream inputStream, String password, SharedResourceCache resourceCache) throws IOException {
+        this(inputStream, password, resourceCache, null);
+    }
+
+    /**
+     * @param inputStream
+     * @param password null if the document isn't encrypted
+     * @param resourceCache null to parse the fonts of this document again
+     * @param admission null if memory isn't governed
+     * @throws IOException
+     */
+    ExtractionSession(InputStream inputStream, String password, SharedResourceCache resourceCache,
+            MemoryGovernor.Admission admission) throws IOException {
+        this(PDDocument.load(inputStream, password != null ? password : "", getMemoryUsageSetting(admission)),
+                resourceCache, admission);
+    }
+
+    /**
+     * @param document closed if the session can't be created
+     * @param resourceCache
+     * @param admission
+     */
+    private ExtractionSession(PDDocument document, SharedResourceCache resourceCache,
+            MemoryGovernor.Admission admission) {
+        this.document = document;
+        this.admission = admission;
+        try {
+            if (admission != null) {
+                admission.track(MemoryGovernor.estimatePages(document.getNumberOfPages()));
+            }
+            if (resourceCache != null) {
+                this.documentCache = resourceCache.newDocumentCache();
+                document.setResourceCache(documentCache);
+            } else {
+                this.documentCache = null;
+            }
+        } catch (RuntimeException ex) {
+            // nobody else can close the loaded document and its scratch file
+            try {
+                document.close();
+            } catch (IOException closeEx) {
+                ex.addSuppressed(closeEx);
+            }
+            throw ex;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pageModels.clear();
+        prescreenedPages.clear();
+        streamHashes.clear();
+        taggedReader = null;
+        try {
+            document.close();
+        } finally {
+            if (documentCache != null) {
+                documentCache.close();
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    public int getNumberOfPages() {
+        return document.getNumberOfPages();
+    }
+
+    /**
+     * @return approximate heap used by the parsed pages, in bytes. The loaded
+     * document itself is not included.
+     */
+    public synchronized long getMemoryFootprint() {
+        long retVal = 0;
+        for (PageModel pageModel : pageModels.values()) {
+            retVal += pageModel.getMemoryFootprint();
+        }
+        return retVal;
+    }
+
+    /**
+     * Glyphs of a page, to query texts by region. The page is parsed if it
+     * hasn't been yet.
+     *
+     * @param pageIdx
+     * @return
+     */
+    public synchronized PageGlyphIndex getPageIndex(int pageIdx) {
+        checkOpen();
+        try {
+            PageProcessor pageProcessor = new PageProcessor(document, null, ExtractionDeadline.none());
+            PageModel pageModel = pageModels.get(pageIdx);
+            if (pageModel == null) {
+                pageModel = getPageModel(pageIdx, pageProcessor, ExtractionOptions.DEFAULT_DUPLICATE_TOLERANCE);
+            }
+            return pageModel.getPageIndex();
+        } catch (IOException ex) {
+            throw new RuntimeException("Parse pdf file fail", ex);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * Stop the running extraction, if any. Can be called from any thread, the
+     * extracting thread then throws
+     * {@link java.util.concurrent.CancellationException}
+     */
+    public void cancel() {
+        AtomicBoolean cancelled = runningCancelled;
+        if (cancelled != null) {
+            cancelled.set(true);
+        }
+    }
+
+    public ExtractionResult extract(ExtractionOptions options) {
+        return extract(options, new AtomicBoolean(false));
+    }
+
+    synchronized ExtractionResult extract(ExtractionOptions options, AtomicBoolean cancelled) {
+        checkOpen();
+        runningCancelled = cancelled;
+        try {
+            return doExtract(options, cancelled);
+        } finally {
+            runningCancelled = null;
+        }
+    }
+
+    /**
+     * Only detect the tables of some pages, for an assembly done elsewhere
+     *
+     * @param options
+     * @param pageIds selected pages, ordered ASC
+     * @param result receives the skipped pages and the duplicate glyph count
+     * @return pages with table content, ordered by page idx ASC
+     */
+    synchronized List<TablePageModel> detectTables(ExtractionOptions options, List<Integer> pageIds,
+            ExtractionResult result) {
+        checkOpen();
+        ExtractionDeadline deadline = new ExtractionDeadline(options.getDocumentTimeoutNanos(),
+                options.getPageTimeoutNanos(), new AtomicBoolean(false));
+        return doDetectTables(options, pageIds, null, deadline, result);
+    }
+
+    /**
+     * Same as above, within the deadline of a longer extraction
+     *
+     * @param options
+     * @param pageIds selected pages, ordered ASC
+     * @param deadline
+     * @param result receives the skipped pages and the duplicate glyph count
+     * @return pages with table content, ordered by page idx ASC
+     */
+    synchronized List<TablePageModel> detectTables(ExtractionOptions options, List<Integer> pageIds,
+            ExtractionDeadline deadline, ExtractionResult result) {
+        checkOpen();
+        return doDetectTables(options, pageIds, null, deadline, result);
+    }
+
+    /**
+     * Hash what the glyphs and lines of a page come from: its content
+     * streams, its resources, its boxes and its rotation. Streams shared by
+     * pages, like embedded fonts, are read once.
+     *
+     * @param pageIdx
+     * @return
+     * @throws IOException
+     */
+    synchronized HashCode hashPage(int pageIdx) throws IOException {
+        checkOpen();
+        PDPage page = document.getPage(pageIdx);
+        ContentHasher hasher = new ContentHasher(streamHashes);
+        for (PDRectangle box : new PDRectangle[]{page.getMediaBox(), page.getCropBox()}) {
+            hasher.putFloat(box.getLowerLeftX()).putFloat(box.getLowerLeftY())
+                    .putFloat(box.getUpperRightX()).putFloat(box.getUpperRightY());
+        }
+        hasher.putInt(page.getRotation());
+        hasher.hash(page.getCOSObject().getDictionaryObject(COSName.CONTENTS));
+        // inherited from the page tree if needed
+        hasher.hash(page.getResources() == null ? null : page.getResources().getCOSObject());
+        return hasher.hash();
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private ExtractionResult doExtract(ExtractionOptions options, AtomicBoolean cancelled) {
+        ExtractionResult retVal = new ExtractionResult();
+        try {
+            retVal.initRowSpill(options);
+            assembleTables(options, cancelled, retVal);
+        } catch (IOException ex) {
+            closeQuietly(retVal);
+            throw new RuntimeException("Spill rows fail", ex);
+        } catch (RuntimeException ex) {
+            closeQuietly(retVal);
+            throw ex;
+        }
+        return retVal;
+    }
+
+    /**
+     * @param options
+     * @param cancelled
+     * @param result receives the tables, the skipped and the drifted pages
+     */
+    private void assembleTables(ExtractionOptions options, AtomicBoolean cancelled, ExtractionResult result) {
+        ExtractionDeadline deadline = new ExtractionDeadline(options.getDocumentTimeoutNanos(),
+                options.getPageTimeoutNanos(), cancelled);
+        TaggedTableReader theTaggedReader = options.isTagged() ? getTaggedReader() : null;
+        List<Integer> selectedPages = new ArrayList<>();
+        List<Integer> taggedPages = new ArrayList<>();
+        for (int pageId = 0; pageId < document.getNumberOfPages(); pageId++) {
+            if (!options.isPageSelected(pageId)) {
+                continue;
+            }
+            if (theTaggedReader != null && theTaggedReader.isTagged(pageId)) {
+                taggedPages.add(pageId);
+            } else {
+                selectedPages.add(pageId);
+            }
+        }
+        TableAssembler assembler = new TableAssembler(deadline, options.getParallelGlyphThreshold())
+                .setColumnProjection(options.getColumnProjection()).setRowFilter(options.getRowFilter())
+                .setRowSpill(result.getRowSpillFile(), options.getRowWindow()).setColumnar(options.isColumnar());
+        if (options.getLayout() != null) {
+            addLayoutTables(options.getLayout(), selectedPages, assembler, deadline, options, result);
+        } else {
+            addDetectedTables(selectedPages, assembler, deadline, options, result);
+        }
+        if (!taggedPages.isEmpty()) {
+            addTaggedTables(theTaggedReader, taggedPages, assembler, deadline, options, result);
+        }
+    }
+
+    /**
+     * Detect the lines and columns of the pages and build their tables
+     *
+     * @param pageIds untagged pages, ordered ASC
+     * @param assembler
+     * @param deadline
+     * @param options
+     * @param result
+     */
+    private void addDetectedTables(List<Integer> pageIds, TableAssembler assembler, ExtractionDeadline deadline,
+            ExtractionOptions options, ExtractionResult result) {
+        Set<Long> boilerplate = options.getBoilerplateRatio() > 0
+                ? findBoilerplate(options, pageIds, deadline)
+                : null;
+        List<TablePageModel> tablePages = doDetectTables(options, pageIds, boilerplate, deadline, result);
+
+        // Calculate columnRanges
+        List<Range<Float>> columnRanges = null;
+        if (options.getColumnMode() == ColumnMode.GLOBAL) {
+            columnRanges = TableAssembler.getColumnRanges(tablePages);
+        } else if (options.getColumnMode() == ColumnMode.SAMPLED) {
+            List<TablePageModel> samplePages = new ArrayList<>();
+            for (int position : TableAssembler.getSamplePositions(tablePages.size(), options.getColumnSampleSize())) {
+                samplePages.add(tablePages.get(position));
+            }
+            columnRanges = TableAssembler.getColumnRanges(samplePages);
+        }
+        for (int idx = 0; idx < tablePages.size(); idx++) {
+            TablePageModel tablePage = tablePages.get(idx);
+            try {
+                deadline.startPage(tablePage.getPageIdx());
+                result.getTables().add(assembler.buildTable(tablePage,
+                        assembler.getPageColumns(tablePage, columnRanges, options.getColumnMode(), result)));
+            } catch (ExtractionTimeoutException ex) {
+                if (!skipOnTimeout(ex, getPageIdxs(tablePages.subList(idx, tablePages.size())), options, result)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Build the tables of the pages from the grid of the layout, lines and
+     * columns aren't detected
+     *
+     * @param layout
+     * @param pageIds untagged pages, ordered ASC
+     * @param assembler
+     * @param deadline
+     * @param options
+     * @param result
+     */
+    private void addLayoutTables(LayoutSpec layout, List<Integer> pageIds, TableAssembler assembler,
+            ExtractionDeadline deadline, ExtractionOptions options, ExtractionResult result) {
+        PageProcessor thePageProcessor = new PageProcessor(document, null, deadline);
+        try {
+            for (int idx = 0; idx < pageIds.size(); idx++) {
+                int pageId = pageIds.get(idx);
+                try {
+                    deadline.startPage(pageId);
+                    SkipReason skipReason = options.isPrescreen() ? prescreen(pageId) : null;
+                    if (skipReason != null) {
+                        result.getSkippedPages().put(pageId, skipReason);
+                        continue;
+                    }
+                    // pages parsed by earlier extractions are reused, new ones aren't kept
+                    PageModel pageModel = pageModels.get(pageId);
+                    if (pageModel == null || pageModel.getDuplicateTolerance() != options.getDuplicateTolerance()) {
+                        pageModel = thePageProcessor.collectGlyphs(pageId, options.getDuplicateTolerance());
+                    }
+                    result.addDuplicateGlyphs(pageModel.getDuplicateCount());
+                    List<String[]> rowTexts = new LayoutGrid(pageModel.getPageIndex(), layout, deadline)
+                            .getRows(pageId);
+                    if (!rowTexts.isEmpty()) {
+                        result.getTables().add(assembler.buildTable(pageId, rowTexts));
+                    }
+                } catch (ExtractionTimeoutException ex) {
+                    if (!skipOnTimeout(ex, pageIds.subList(idx, pageIds.size()), options, result)) {
+                        break;
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Parse pdf file fail", ex);
+        }
+    }
+
+    /**
+     * Build the tables of the tagged pages from the structure tree, the
+     * tables of the result stay ordered by page
+     *
+     * @param taggedReader
+     * @param pageIds tagged pages, ordered ASC
+     * @param assembler
+     * @param deadline
+     * @param options
+     * @param result
+     */
+    private void addTaggedTables(TaggedTableReader taggedReader, List<Integer> pageIds, TableAssembler assembler,
+            ExtractionDeadline deadline, ExtractionOptions options, ExtractionResult result) {
+        try {
+            for (int idx = 0; idx < pageIds.size(); idx++) {
+                int pageId = pageIds.get(idx);
+                try {
+                    deadline.startPage(pageId);
+                    for (List<String[]> rowTexts : taggedReader.getTables(pageId)) {
+                        result.getTables().add(assembler.buildTable(pageId, rowTexts));
+                    }
+                } catch (ExtractionTimeoutException ex) {
+                    if (!skipOnTimeout(ex, pageIds.subList(idx, pageIds.size()), options, result)) {
+                        break;
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Parse pdf file fail", ex);
+        }
+        // stable: tables of a page keep their order
+        Collections.sort(result.getTables(), new Comparator<Table>() {
+            @Override
+            public int compare(Table table1, Table table2) {
+                return Integer.compare(table1.getPageIdx(), table2.getPageIdx());
+            }
+        });
+    }
+
+    /**
+     * @return null if the document has no table in its structure tree
+     */
+    private TaggedTableReader getTaggedReader() {
+        if (!taggedReaderLoaded) {
+            taggedReader = TaggedTableReader.read(document);
+            taggedReaderLoaded = true;
+            logger.debug(taggedReader != null ? "Tables read from the structure tree"
+                    : "No table in the structure tree, tables detected from the glyphs");
+        }
+        return taggedReader;
+    }
+
+    private void closeQuietly(ExtractionResult result) {
+        try {
+            result.close();
+        } catch (IOException ex) {
+            logger.warn("Delete row spill file fail", ex);
+        }
+    }
+
+    private List<TablePageModel> doDetectTables(ExtractionOptions options, List<Integer> pageIds,
+            Set<Long> boilerplate, ExtractionDeadline deadline, ExtractionResult result) {
+        List<TablePageModel> retVal = new ArrayList<>();
+        PageProcessor thePageProcessor = new PageProcessor(document, options.getExceptedLines(), deadline)
+                .setParallelGlyphThreshold(options.getParallelGlyphThreshold())
+                .setBoilerplate(boilerplate);
+        try {
+            for (int idx = 0; idx < pageIds.size(); idx++) {
+                int pageId = pageIds.get(idx);
+                try {
+                    deadline.startPage(pageId);
+                    SkipReason skipReason = options.isPrescreen() ? prescreen(pageId) : null;
+                    if (skipReason != null) {
+                        result.getSkippedPages().put(pageId, skipReason);
+                        continue;
+                    }
+                    PageModel pageModel = getPageModel(pageId, thePageProcessor, options.getDuplicateTolerance());
+                    result.addDuplicateGlyphs(pageModel.getDuplicateCount());
+                    if (options.hasRegion()) {
+                        pageModel = thePageProcessor.cropPage(pageModel, options.getRegionXBand(), options.getRegionYBand());
+                    }
+                    TablePageModel tablePage = thePageProcessor.processPage(pageId, pageModel);
+                    if (tablePage != null) {
+                        retVal.add(tablePage);
+                    }
+                    if (isLowMemory()) {
+                        releaseMemory(retVal);
+                    }
+                } catch (ExtractionTimeoutException ex) {
+                    if (!skipOnTimeout(ex, pageIds.subList(idx, pageIds.size()), options, result)) {
+                        break;
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Parse pdf file fail", ex);
+        }
+        return retVal;
+    }
+
+    /**
+     * First pass over the pages: fingerprint their lines and keep the ones
+     * found on enough pages. Pages skipped here are skipped again, and
+     * recorded, by the detection which follows.
+     *
+     * @param options
+     * @param pageIds
+     * @param deadline
+     * @return fingerprints of the repeated lines
+     */
+    private Set<Long> findBoilerplate(ExtractionOptions options, List<Integer> pageIds,
+            ExtractionDeadline deadline) {
+        // fingerprint -> number of pages it is found on
+        Map<Long, Integer> pageCounts = new HashMap<>();
+        int pageCount = 0;
+        PageProcessor thePageProcessor = new PageProcessor(document, options.getExceptedLines(), deadline)
+                .setParallelGlyphThreshold(options.getParallelGlyphThreshold());
+        try {
+            for (int pageId : pageIds) {
+                try {
+                    deadline.startPage(pageId);
+                    if (options.isPrescreen() && prescreen(pageId) != null) {
+                        continue;
+                    }
+                    PageModel pageModel = getPageModel(pageId, thePageProcessor, options.getDuplicateTolerance());
+                    if (options.hasRegion()) {
+                        pageModel = thePageProcessor.cropPage(pageModel, options.getRegionXBand(), options.getRegionYBand());
+                    }
+                    Set<Long> pageFingerprints = new HashSet<>();
+                    for (long fingerprint : thePageProcessor.getLineFingerprints(pageId, pageModel)) {
+                        pageFingerprints.add(fingerprint);
+                    }
+                    for (Long fingerprint : pageFingerprints) {
+                        Integer count = pageCounts.get(fingerprint);
+                        pageCounts.put(fingerprint, count == null ? 1 : count + 1);
+                    }
+                    pageCount++;
+                } catch (ExtractionTimeoutException ex) {
+                    if (options.getTimeoutPolicy() == TimeoutPolicy.FAIL_DOCUMENT) {
+                        throw ex;
+                    }
+                    if (ex.isDocumentTimeout()) {
+                        break;
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Parse pdf file fail", ex);
+        }
+        // a line of a single page is never boilerplate
+        int minPageCount = Math.max(2, (int) Math.ceil(options.getBoilerplateRatio() * pageCount - 1e-4));
+        Set<Long> retVal = new HashSet<>();
+        for (Map.Entry<Long, Integer> entry : pageCounts.entrySet()) {
+            if (entry.getValue() >= minPageCount) {
+                retVal.add(entry.getKey());
+            }
+        }
+        logger.debug("Found " + retVal.size() + " boilerplate line(s) on " + pageCount + " page(s)");
+        return retVal;
+    }
+
+    /**
+     * @param pageId
+     * @return why the page can't contain a table, null if it may
+     * @throws IOException
+     */
+    private SkipReason prescreen(int pageId) throws IOException {
+        if (!prescreenedPages.containsKey(pageId)) {
+            prescreenedPages.put(pageId, PagePrescreen.prescreen(document.getPage(pageId)));
+        }
+        return prescreenedPages.get(pageId);
+    }
+
+    /**
+     * @param pageId
+     * @param pageProcessor
+     * @param duplicateTolerance the page is parsed again if it was parsed
+     * with another tolerance
+     * @return
+     * @throws IOException
+     */
+    private PageModel getPageModel(int pageId, PageProcessor pageProcessor, float duplicateTolerance)
+            throws IOException {
+        PageModel retVal = pageModels.get(pageId);
+        if (retVal == null || retVal.getDuplicateTolerance() != duplicateTolerance) {
+            retVal = pageProcessor.parsePage(pageId, duplicateTolerance);
+            if (!isLowMemory()) {
+                PageModel oldModel = pageModels.put(pageId, retVal);
+                if (admission != null) {
+                    admission.track(retVal.getMemoryFootprint()
+                            - (oldModel != null ? oldModel.getMemoryFootprint() : 0));
+                }
+            }
+        }
+        return retVal;
+    }
+
+    private boolean isLowMemory() {
+        return admission != null && admission.isLowMemory();
+    }
+
+    /**
+     * Drop the parsed pages, table pages keep the glyphs of their rows only
+     *
+     * @param tablePages detected so far, compacted in place
+     */
+    private void releaseMemory(List<TablePageModel> tablePages) {
+        long releasedBytes = 0;
+        for (PageModel pageModel : pageModels.values()) {
+            releasedBytes += pageModel.getMemoryFootprint();
+        }
+        pageModels.clear();
+        long compactBytes = 0;
+        for (int idx = 0; idx < tablePages.size(); idx++) {
+            TablePageModel tablePage = tablePages.get(idx);
+            if (!tablePage.isCompact()) {
+                tablePage = tablePage.compact();
+                tablePages.set(idx, tablePage);
+                compactBytes += tablePage.getPageIndex().getMemoryFootprint();
+            }
+        }
+        admission.track(compactBytes - releasedBytes);
+    }
+
+    private static MemoryUsageSetting getMemoryUsageSetting(MemoryGovernor.Admission admission) {
+        // streams of a document over the whole budget go to a temp file
+        return admission != null && admission.isLowMemory()
+                ? MemoryUsageSetting.setupTempFileOnly()
+                : MemoryUsageSetting.setupMainMemoryOnly();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Extraction session is closed");
+        }
+    }
+
+    /**
+     * Apply the timeout policy to an expired budget
+     *
+     * @param ex
+     * @param remainingPages the page which timed out followed by the pages not
+     * processed yet
+     * @param options
+     * @param result
+     * @return true if the extraction should continue with the next page
+     */
+    private boolean skipOnTimeout(ExtractionTimeoutException ex, List<Integer> remainingPages,
+            ExtractionOptions options, ExtractionResult result) {
+        if (options.getTimeoutPolicy() == TimeoutPolicy.FAIL_DOCUMENT) {
+            throw ex;
+        }
+        if (ex.isDocumentTimeout()) {
+            for (int pageId : remainingPages) {
+                result.getSkippedPages().put(pageId, SkipReason.DOCUMENT_TIMEOUT);
+            }
+            logger.warn("Document timeout expired, skipped " + remainingPages.size() + " page(s)");
+            return false;
+        }
+        result.getSkippedPages().put(remainingPages.get(0), SkipReason.PAGE_TIMEOUT);
+        logger.warn("Page timeout expired, skipped page " + remainingPages.get(0));
+        return true;
+    }
+
+    private static List<Integer> getPageIdxs(List<TablePageModel> tablePages) {
+        List<Integer> retVal = new ArrayList<>();
+        for (TablePageModel tablePage : tablePages) {
+            retVal.add(tablePage.getPageIdx());
+        }
+        return retVal;
+    }
+}
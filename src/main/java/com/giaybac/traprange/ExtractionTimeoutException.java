@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+/**
+ * Thrown when an extraction exceeds its page or document time budget
+ */
+public class ExtractionTimeoutException extends RuntimeException {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private final int pageIdx;
+    private final boolean documentTimeout;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    public ExtractionTimeoutException(int pageIdx, boolean documentTimeout) {
+        super((documentTimeout ? "Document" : "Page") + " timeout expired"
+                + (pageIdx >= 0 ? " while processing page " + pageIdx : ""));
+        this.pageIdx = pageIdx;
+        this.documentTimeout = documentTimeout;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    /**
+     * @return page being processed when the budget ran out, -1 if none
+     */
+    public int getPageIdx() {
+        return pageIdx;
+    }
+
+    /**
+     * @return true if the document budget ran out, false if only the page budget
+     */
+    public boolean isDocumentTimeout() {
+        return documentTimeout;
+    }
+}
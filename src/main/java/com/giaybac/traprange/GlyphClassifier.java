@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds the band enclosing each glyph on one axis, the bands being sorted and
+ * disjoint as trap-ranges are: rows on the Y axis, columns on the X axis.
+ * <p>
+ * The scalar implementation walks glyphs and bands together. A Vector API
+ * implementation of {@link #classifyAll(float[], float[], float[], float[])},
+ * whose coordinates are read in sequence, is compiled on JDK 16 and later,
+ * see the "vector" profile, and is used when the jdk.incubator.vector module
+ * is added to the JVM (--add-modules jdk.incubator.vector). Both give the
+ * same result, the system property traprange.vector=false forces the scalar
+ * one.
+ */
+abstract class GlyphClassifier {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private static final String VECTOR_CLASSIFIER = "com.giaybac.traprange.VectorGlyphClassifier";
+    private static final GlyphClassifier SCALAR = new Scalar();
+    private static final GlyphClassifier INSTANCE = load();
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    /**
+     * @return the fastest classifier this JVM can run
+     */
+    static GlyphClassifier get() {
+        return INSTANCE;
+    }
+
+    static GlyphClassifier scalar() {
+        return SCALAR;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * @param mins min coordinate of each glyph
+     * @param maxs max coordinate of each glyph
+     * @param glyphIds glyphs to classify, faster when ordered by min
+     * coordinate ASC
+     * @param lowers lower endpoint of each band, ASC
+     * @param uppers upper endpoint of each band, bands don't overlap
+     * @return for each given glyph, idx of the band enclosing it, -1 if none
+     */
+    abstract int[] classify(float[] mins, float[] maxs, int[] glyphIds, float[] lowers, float[] uppers);
+
+    /**
+     * Classify all glyphs, glyph ids being positions in the coordinate arrays
+     *
+     * @param mins min coordinate of each glyph, faster when ASC
+     * @param maxs max coordinate of each glyph
+     * @param lowers lower endpoint of each band, ASC
+     * @param uppers upper endpoint of each band, bands don't overlap
+     * @return for each glyph id, idx of the band enclosing the glyph, -1 if
+     * none
+     */
+    int[] classifyAll(float[] mins, float[] maxs, float[] lowers, float[] uppers) {
+        int[] glyphIds = new int[mins.length];
+        for (int idx = 0; idx < glyphIds.length; idx++) {
+            glyphIds[idx] = idx;
+        }
+        return classify(mins, maxs, glyphIds, lowers, uppers);
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private static GlyphClassifier load() {
+        Logger logger = LoggerFactory.getLogger(GlyphClassifier.class);
+        if ("false".equals(System.getProperty("traprange.vector"))) {
+            return SCALAR;
+        }
+        try {
+            GlyphClassifier retVal = (GlyphClassifier) Class.forName(VECTOR_CLASSIFIER)
+                    .getDeclaredConstructor().newInstance();
+            logger.debug("Glyphs are classified with the Vector API");
+            return retVal;
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            // not compiled, or the module isn't added
+            return SCALAR;
+        }
+    }
+
+    /**
+     * Last band whose lower endpoint is at most min, if it encloses the glyph.
+     * Bands are disjoint: no other band can.
+     *
+     * @param min
+     * @param max
+     * @param lowers
+     * @param uppers
+     * @return band idx, -1 if none
+     */
+    static int getEnclosingBand(float min, float max, float[] lowers, float[] uppers) {
+        int low = 0;
+        int high = lowers.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Float.compare(lowers[middle], min) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int band = low - 1;
+        return band >= 0 && PageGlyphIndex.encloses(lowers[band], uppers[band], min, max) ? band : -1;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Inner class
+    private static class Scalar extends GlyphClassifier {
+
+        @Override
+        int[] classify(float[] mins, float[] maxs, int[] glyphIds, float[] lowers, float[] uppers) {
+            int[] retVal = new int[glyphIds.length];
+            // while mins grow, the bands are walked with the glyphs
+            float previousMin = Float.NEGATIVE_INFINITY;
+            // last band whose lower endpoint is at most the previous min
+            int band = -1;
+            for (int idx = 0; idx < glyphIds.length; idx++) {
+                int glyphId = glyphIds[idx];
+                float min = mins[glyphId];
+                if (Float.compare(min, previousMin) < 0) {
+                    retVal[idx] = getEnclosingBand(min, maxs[glyphId], lowers, uppers);
+                    continue;
+                }
+                previousMin = min;
+                while (band + 1 < lowers.length && Float.compare(lowers[band + 1], min) <= 0) {
+                    band++;
+                }
+                retVal[idx] = band >= 0 && PageGlyphIndex.encloses(lowers[band], uppers[band], min, maxs[glyphId])
+                        ? band
+                        : -1;
+            }
+            return retVal;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDResources;
+
+/**
+ * Find the images of a document page by page without decoding them. An image
+ * object used by several pages is returned as the same {@link ImageHandle}, and
+ * a form XObject is only walked the first time it's reached.
+ */
+public class ImageCollector {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private final PDDocument document;
+    // image stream -> handle, in order of discovery
+    private final Map<COSStream, ImageHandle> images = new IdentityHashMap<>();
+    private final List<ImageHandle> orderedImages = new ArrayList<>();
+    // form stream -> images reachable from it
+    private final Map<COSStream, List<ImageHandle>> formImages = new IdentityHashMap<>();
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    public ImageCollector(PDDocument document) {
+        this.document = document;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    public PDDocument getDocument() {
+        return document;
+    }
+
+    /**
+     * @return all images found so far, in order of discovery
+     */
+    public List<ImageHandle> getImages() {
+        return Collections.unmodifiableList(orderedImages);
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * @param pageIdx
+     * @return distinct images reachable from the page resources
+     */
+    public List<ImageHandle> collect(int pageIdx) {
+        PDResources resources = document.getPage(pageIdx).getResources();
+        List<ImageHandle> retVal = resources == null ? new ArrayList<ImageHandle>()
+                : collect(resources, Collections.newSetFromMap(new IdentityHashMap<COSStream, Boolean>()));
+        for (ImageHandle image : retVal) {
+            image.addPage(pageIdx);
+        }
+        return retVal;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    /**
+     * @param resources
+     * @param walkingForms forms on the current recursion path, to stop cycles
+     * @return
+     */
+    private List<ImageHandle> collect(PDResources resources, Set<COSStream> walkingForms) {
+        List<ImageHandle> retVal = new ArrayList<>();
+        Set<ImageHandle> found = Collections.newSetFromMap(new IdentityHashMap<ImageHandle, Boolean>());
+        COSBase xObjects = resources.getCOSObject().getDictionaryObject(COSName.XOBJECT);
+        if (!(xObjects instanceof COSDictionary)) {
+            return retVal;
+        }
+        COSDictionary xObjectDictionary = (COSDictionary) xObjects;
+        for (COSName xObjectName : xObjectDictionary.keySet()) {
+            // read the subtype from the stream instead of building a PDXObject,
+            // which would start decoding JPX images
+            COSBase xObject = xObjectDictionary.getDictionaryObject(xObjectName);
+            if (!(xObject instanceof COSStream)) {
+                continue;
+            }
+            COSStream stream = (COSStream) xObject;
+            COSName subtype = stream.getCOSName(COSName.SUBTYPE);
+            if (COSName.IMAGE.equals(subtype)) {
+                ImageHandle image = images.get(stream);
+                if (image == null) {
+                    image = new ImageHandle(stream, resources, xObjectName.getName());
+                    images.put(stream, image);
+                    orderedImages.add(image);
+                }
+                if (found.add(image)) {
+                    retVal.add(image);
+                }
+            } else if (COSName.FORM.equals(subtype) && !walkingForms.contains(stream)) {
+                List<ImageHandle> imagesInForm = formImages.get(stream);
+                if (imagesInForm == null) {
+                    COSBase formResources = stream.getDictionaryObject(COSName.RESOURCES);
+                    if (formResources instanceof COSDictionary) {
+                        walkingForms.add(stream);
+                        imagesInForm = collect(new PDResources((COSDictionary) formResources), walkingForms);
+                        walkingForms.remove(stream);
+                    } else {
+                        imagesInForm = Collections.emptyList();
+                    }
+                    formImages.put(stream, imagesInForm);
+                }
+                for (ImageHandle image : imagesInForm) {
+                    if (found.add(image)) {
+                        retVal.add(image);
+                    }
+                }
+            }
+        }
+        return retVal;
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+/**
+ * An image XObject of a document. Its metadata is read from the image
+ * dictionary, the pixels are only decoded by {@link #getImage()}. The document
+ * must stay open as long as the handle is used.
+ */
+public class ImageHandle {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private final COSStream stream;
+    private final PDResources resources;
+    private final String name;
+    // pages the image is drawn from, directly or through form XObjects
+    private final Set<Integer> pageIdxs = new TreeSet<>();
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    ImageHandle(COSStream stream, PDResources resources, String name) {
+        this.stream = stream;
+        this.resources = resources;
+        this.name = name;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    /**
+     * @return resource name the image was first found under
+     */
+    public String getName() {
+        return name;
+    }
+
+    public int getWidth() {
+        return stream.getInt(COSName.WIDTH);
+    }
+
+    public int getHeight() {
+        return stream.getInt(COSName.HEIGHT);
+    }
+
+    /**
+     * @return bits per component, -1 when not set (JPX images, image masks)
+     */
+    public int getBitsPerComponent() {
+        if (stream.getBoolean(COSName.IMAGE_MASK, false)) {
+            return 1;
+        }
+        return stream.getInt(COSName.BITS_PER_COMPONENT);
+    }
+
+    /**
+     * @return filters of the encoded stream in decoding order, ex: DCTDecode
+     */
+    public List<String> getFilters() {
+        List<String> retVal = new ArrayList<>();
+        COSBase filters = stream.getFilters();
+        if (filters instanceof COSName) {
+            retVal.add(((COSName) filters).getName());
+        } else if (filters instanceof COSArray) {
+            for (COSBase filter : (COSArray) filters) {
+                if (filter instanceof COSName) {
+                    retVal.add(((COSName) filter).getName());
+                }
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return length of the encoded stream in bytes
+     */
+    public long getEncodedLength() {
+        return stream.getLength();
+    }
+
+    /**
+     * @return indexes of the pages this image appears on, ASC
+     */
+    public Set<Integer> getPageIdxs() {
+        return Collections.unmodifiableSet(pageIdxs);
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * The encoded image data, ex: a JPEG file for DCTDecode images. Caller must
+     * close the stream.
+     *
+     * @return
+     * @throws IOException
+     */
+    public InputStream openRawStream() throws IOException {
+        return stream.createRawInputStream();
+    }
+
+    /**
+     * Decode the image. The result isn't cached.
+     *
+     * @return
+     * @throws IOException
+     */
+    public BufferedImage getImage() throws IOException {
+        return new PDImageXObject(new PDStream(stream), resources).getImage();
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    void addPage(int pageIdx) {
+        pageIdxs.add(pageIdx);
+    }
+}
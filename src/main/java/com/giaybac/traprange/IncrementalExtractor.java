@@ -0,0 +1,270 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import com.google.common.collect.Range;
+import com.google.common.hash.HashCode;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extract a document which is regenerated with a few pages appended or
+ * changed, reusing the pages of the previous run.
+ * <p>
+ * Each selected page is hashed from its content streams, resources, boxes and
+ * rotation. A page whose hash is in the {@link PageManifest} of the previous
+ * run gets its stored rows and glyphs back; the others are parsed and
+ * detected again. The columns are computed again only if the table pages they
+ * come from changed. The tables are then assembled as by
+ * {@link ExtractionSession}, and the manifest is replaced.
+ * <p>
+ * A manifest written with other excepted lines, region, prescreen or
+ * duplicate tolerance is ignored. Pages skipped on timeout are not stored.
+ */
+public class IncrementalExtractor {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private final Logger logger = LoggerFactory.getLogger(IncrementalExtractor.class);
+    private final File source;
+    private final ExtractionOptions options;
+    private final File manifestFile;
+    // stats of the last extraction
+    private int reusedPageCount = 0;
+    private int processedPageCount = 0;
+    private boolean columnsReused = false;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    /**
+     * @param source
+     * @param options
+     * @param manifestFile created by the first extraction
+     * @throws IllegalArgumentException if the options need the whole
+     * document: tagged pages, a layout, boilerplate lines
+     */
+    public IncrementalExtractor(File source, ExtractionOptions options, File manifestFile) {
+        if (options.isTagged()) {
+            throw new IllegalArgumentException("Tagged pages can't be read by an incremental extraction");
+        }
+        if (options.getLayout() != null) {
+            throw new IllegalArgumentException("A layout can't be used by an incremental extraction");
+        }
+        if (options.getBoilerplateRatio() > 0) {
+            throw new IllegalArgumentException("Boilerplate lines can't be found by an incremental extraction");
+        }
+        this.source = source;
+        this.options = options;
+        this.manifestFile = manifestFile;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    /**
+     * @return pages of the last extraction taken from the manifest
+     */
+    public int getReusedPageCount() {
+        return reusedPageCount;
+    }
+
+    /**
+     * @return pages of the last extraction parsed and detected again
+     */
+    public int getProcessedPageCount() {
+        return processedPageCount;
+    }
+
+    /**
+     * @return true if the last extraction took its columns from the manifest
+     */
+    public boolean isColumnsReused() {
+        return columnsReused;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    public ExtractionResult extract() {
+        reusedPageCount = 0;
+        processedPageCount = 0;
+        columnsReused = false;
+        ExtractionResult retVal = new ExtractionResult();
+        boolean extracted = false;
+        try {
+            retVal.initRowSpill(options);
+            byte[] pageOptions = getPageOptions();
+            PageManifest previous = readManifest(pageOptions);
+            PageManifest current = new PageManifest(pageOptions);
+            Set<Integer> processedPages = new HashSet<>();
+            List<TablePageModel> tablePages;
+            try (ExtractionSession session = new ExtractionSession(source)) {
+                tablePages = detectTables(session, previous, current, processedPages, retVal);
+            }
+            List<Range<Float>> columnRanges = getColumnRanges(tablePages, previous, current, processedPages);
+            TableAssembler assembler = new TableAssembler(ExtractionDeadline.none(), options.getParallelGlyphThreshold())
+                    .setColumnProjection(options.getColumnProjection()).setRowFilter(options.getRowFilter())
+                    .setRowSpill(retVal.getRowSpillFile(), options.getRowWindow()).setColumnar(options.isColumnar());
+            for (TablePageModel tablePage : tablePages) {
+                retVal.getTables().add(assembler.buildTable(tablePage,
+                        assembler.getPageColumns(tablePage, columnRanges, options.getColumnMode(), retVal)));
+            }
+            current.write(manifestFile);
+            logger.debug("Reused " + reusedPageCount + " page(s), processed " + processedPageCount + " page(s)");
+            extracted = true;
+            return retVal;
+        } catch (IOException ex) {
+            throw new RuntimeException("Parse pdf file fail", ex);
+        } finally {
+            if (!extracted) {
+                try {
+                    retVal.close();
+                } catch (IOException ex) {
+                    logger.warn("Delete row spill file fail", ex);
+                }
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private byte[] getPageOptions() throws IOException {
+        ByteArrayOutputStream retVal = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(retVal)) {
+            options.writePageOptions(output);
+        }
+        return retVal.toByteArray();
+    }
+
+    /**
+     * @param pageOptions
+     * @return null if there is no usable manifest
+     * @throws IOException
+     */
+    private PageManifest readManifest(byte[] pageOptions) throws IOException {
+        if (!manifestFile.isFile()) {
+            return null;
+        }
+        PageManifest retVal = PageManifest.read(manifestFile);
+        if (retVal == null) {
+            logger.info("Manifest " + manifestFile + " isn't of version " + PageManifest.VERSION + ", ignored");
+        } else if (!retVal.hasPageOptions(pageOptions)) {
+            logger.info("Manifest " + manifestFile + " was written with other options, ignored");
+            retVal = null;
+        }
+        return retVal;
+    }
+
+    /**
+     * @param session
+     * @param previous null if there is no usable manifest
+     * @param current receives the detection of every selected page
+     * @param processedPages receives the pages detected again
+     * @param result receives the skipped pages and the duplicate glyph count
+     * @return pages with table content, ordered by page idx ASC
+     * @throws IOException
+     */
+    private List<TablePageModel> detectTables(ExtractionSession session, PageManifest previous,
+            PageManifest current, Set<Integer> processedPages, ExtractionResult result) throws IOException {
+        List<TablePageModel> retVal = new ArrayList<>();
+        ExtractionDeadline deadline = new ExtractionDeadline(options.getDocumentTimeoutNanos(),
+                options.getPageTimeoutNanos(), new AtomicBoolean(false));
+        for (int pageId = 0; pageId < session.getNumberOfPages(); pageId++) {
+            if (!options.isPageSelected(pageId)) {
+                continue;
+            }
+            HashCode hash = session.hashPage(pageId);
+            PageManifest.Entry entry = previous != null ? previous.getEntry(pageId) : null;
+            if (entry != null && entry.getHash().equals(hash)) {
+                reusedPageCount++;
+            } else {
+                entry = detectTables(session, pageId, hash, deadline, result);
+                processedPageCount++;
+                processedPages.add(pageId);
+            }
+            if (entry == null) {
+                // skipped on timeout
+                continue;
+            }
+            current.putEntry(pageId, entry);
+            result.addDuplicateGlyphs(entry.getDuplicateCount());
+            if (entry.getSkipReason() != null) {
+                result.getSkippedPages().put(pageId, entry.getSkipReason());
+            }
+            if (entry.getTablePage() != null) {
+                retVal.add(entry.getTablePage());
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @param session
+     * @param pageId
+     * @param hash
+     * @param deadline
+     * @param result receives the page if it's skipped on timeout
+     * @return null if the page was skipped on timeout
+     */
+    private PageManifest.Entry detectTables(ExtractionSession session, int pageId, HashCode hash,
+            ExtractionDeadline deadline, ExtractionResult result) {
+        ExtractionResult pageResult = new ExtractionResult();
+        List<TablePageModel> tablePages = session.detectTables(options, Collections.singletonList(pageId),
+                deadline, pageResult);
+        SkipReason skipReason = pageResult.getSkippedPages().get(pageId);
+        if (skipReason == SkipReason.PAGE_TIMEOUT || skipReason == SkipReason.DOCUMENT_TIMEOUT) {
+            result.getSkippedPages().put(pageId, skipReason);
+            return null;
+        }
+        return new PageManifest.Entry(hash, pageResult.getDuplicateGlyphCount(), skipReason,
+                tablePages.isEmpty() ? null : tablePages.get(0));
+    }
+
+    /**
+     * @param tablePages
+     * @param previous null if there is no usable manifest
+     * @param current receives the columns
+     * @param processedPages
+     * @return null if each page has its own columns
+     */
+    private List<Range<Float>> getColumnRanges(List<TablePageModel> tablePages, PageManifest previous,
+            PageManifest current, Set<Integer> processedPages) {
+        List<TablePageModel> columnPages;
+        if (options.getColumnMode() == ColumnMode.GLOBAL) {
+            columnPages = tablePages;
+        } else if (options.getColumnMode() == ColumnMode.SAMPLED) {
+            columnPages = new ArrayList<>();
+            for (int position : TableAssembler.getSamplePositions(tablePages.size(), options.getColumnSampleSize())) {
+                columnPages.add(tablePages.get(position));
+            }
+        } else {
+            return null;
+        }
+        List<Integer> columnPageIdxs = new ArrayList<>();
+        boolean changed = false;
+        for (TablePageModel tablePage : columnPages) {
+            columnPageIdxs.add(tablePage.getPageIdx());
+            changed |= processedPages.contains(tablePage.getPageIdx());
+        }
+        List<Range<Float>> retVal;
+        if (!changed && previous != null && columnPageIdxs.equals(previous.getColumnPages())) {
+            retVal = previous.getColumnRanges();
+            columnsReused = true;
+        } else {
+            retVal = TableAssembler.getColumnRanges(columnPages);
+        }
+        current.setColumns(columnPageIdxs, retVal);
+        return retVal;
+    }
+}
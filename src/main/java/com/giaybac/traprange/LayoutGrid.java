@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import com.google.common.collect.Range;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Puts the glyphs of a page in the grid of a {@link LayoutSpec}: a glyph goes
+ * to the column holding its center, so that a glyph crossing a boundary still
+ * lands in one cell. Rows are made of whole lines, the lines of a row are
+ * joined cell by cell.
+ */
+class LayoutGrid {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private final PageGlyphIndex pageIndex;
+    private final LayoutSpec layout;
+    private final ExtractionDeadline deadline;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    LayoutGrid(PageGlyphIndex pageIndex, LayoutSpec layout, ExtractionDeadline deadline) {
+        this.pageIndex = pageIndex;
+        this.layout = layout;
+        this.deadline = deadline;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * @param pageIdx
+     * @return text of each column of each non empty row, ordered by Y ASC
+     */
+    List<String[]> getRows(int pageIdx) {
+        float[] boundaries = layout.getColumnBoundaries();
+        Range<Float> band = layout.getBand(pageIdx);
+        // glyphs of the grid
+        PageGlyphIndex.IntBuffer gridGlyphs = new PageGlyphIndex.IntBuffer();
+        PageGlyphIndex.IntBuffer gridColumns = new PageGlyphIndex.IntBuffer();
+        for (int glyphId = 0; glyphId < pageIndex.size(); glyphId++) {
+            deadline.check();
+            float centerY = (pageIndex.getMinY(glyphId) + pageIndex.getMaxY(glyphId)) / 2;
+            if (band != null && !band.contains(centerY)) {
+                continue;
+            }
+            int column = getColumn(boundaries, (pageIndex.getMinX(glyphId) + pageIndex.getMaxX(glyphId)) / 2);
+            if (column >= 0) {
+                gridGlyphs.add(glyphId);
+                gridColumns.add(column);
+            }
+        }
+        int[] glyphIds = gridGlyphs.toArray();
+        int[] columns = gridColumns.toArray();
+        List<Range<Float>> lineRanges = getLineRanges(glyphIds);
+        int[] lines = getLines(glyphIds, lineRanges);
+        // line idx -> glyphs of each column
+        Map<Integer, PageGlyphIndex.IntBuffer[]> lineCells = new TreeMap<>();
+        for (int idx = 0; idx < glyphIds.length; idx++) {
+            PageGlyphIndex.IntBuffer[] cells = lineCells.get(lines[idx]);
+            if (cells == null) {
+                cells = new PageGlyphIndex.IntBuffer[boundaries.length - 1];
+                lineCells.put(lines[idx], cells);
+            }
+            if (cells[columns[idx]] == null) {
+                cells[columns[idx]] = new PageGlyphIndex.IntBuffer();
+            }
+            cells[columns[idx]].add(glyphIds[idx]);
+        }
+        List<String[]> retVal = new ArrayList<>();
+        int lastRow = -1;
+        for (Map.Entry<Integer, PageGlyphIndex.IntBuffer[]> entry : lineCells.entrySet()) {
+            PageGlyphIndex.IntBuffer[] cells = entry.getValue();
+            String[] texts = new String[cells.length];
+            for (int column = 0; column < cells.length; column++) {
+                texts[column] = cells[column] == null ? ""
+                        : pageIndex.getText(pageIndex.sortByX(cells[column].toArray()));
+            }
+            int row = getRow(lineRanges.get(entry.getKey()), texts, band, lastRow);
+            if (row == lastRow) {
+                append(retVal.get(retVal.size() - 1), texts);
+            } else {
+                retVal.add(texts);
+            }
+            lastRow = row;
+        }
+        return retVal;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    /**
+     * @param boundaries
+     * @param x
+     * @return idx of the column holding x, -1 if none
+     */
+    private static int getColumn(float[] boundaries, float x) {
+        if (x < boundaries[0] || x >= boundaries[boundaries.length - 1]) {
+            return -1;
+        }
+        int low = 0;
+        int high = boundaries.length - 2;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (boundaries[middle] <= x) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param glyphIds
+     * @return line trap-ranges of the glyphs
+     */
+    private List<Range<Float>> getLineRanges(int[] glyphIds) {
+        TrapRangeBuilder lineTrapRangeBuilder = new TrapRangeBuilder();
+        for (int glyphId : glyphIds) {
+            lineTrapRangeBuilder.addRange(Range.closed(pageIndex.getMinY(glyphId), pageIndex.getMaxY(glyphId)));
+        }
+        return lineTrapRangeBuilder.build();
+    }
+
+    /**
+     * @param glyphIds
+     * @param lineRanges
+     * @return for each glyph, idx of the line trap-range enclosing it
+     */
+    private int[] getLines(int[] glyphIds, List<Range<Float>> lineRanges) {
+        float[] lowers = new float[lineRanges.size()];
+        float[] uppers = new float[lineRanges.size()];
+        for (int idx = 0; idx < lineRanges.size(); idx++) {
+            lowers[idx] = lineRanges.get(idx).lowerEndpoint();
+            uppers[idx] = lineRanges.get(idx).upperEndpoint();
+        }
+        int[] retVal = new int[glyphIds.length];
+        for (int idx = 0; idx < glyphIds.length; idx++) {
+            retVal[idx] = GlyphClassifier.getEnclosingBand(pageIndex.getMinY(glyphIds[idx]),
+                    pageIndex.getMaxY(glyphIds[idx]), lowers, uppers);
+        }
+        return retVal;
+    }
+
+    /**
+     * @param lineRange
+     * @param texts texts of the line in each column
+     * @param band null for the whole page
+     * @param lastRow row of the line above, -1 for the first line
+     * @return row of the line, lastRow if the line continues the row above
+     */
+    private int getRow(Range<Float> lineRange, String[] texts, Range<Float> band, int lastRow) {
+        switch (layout.getRowSplit()) {
+            case FIXED_HEIGHT:
+                float top = band != null ? band.lowerEndpoint() : 0;
+                float centerY = (lineRange.lowerEndpoint() + lineRange.upperEndpoint()) / 2;
+                return Math.max(0, (int) Math.floor((centerY - top) / layout.getRowHeight()));
+            case ANCHOR_COLUMN:
+                return lastRow >= 0 && texts[layout.getAnchorColumn()].trim().isEmpty() ? lastRow : lastRow + 1;
+            default:
+                return lastRow + 1;
+        }
+    }
+
+    /**
+     * Continue the cells of a row with the texts of a wrapped line
+     *
+     * @param rowTexts
+     * @param lineTexts
+     */
+    private static void append(String[] rowTexts, String[] lineTexts) {
+        for (int column = 0; column < rowTexts.length; column++) {
+            if (lineTexts[column].isEmpty()) {
+                continue;
+            }
+            rowTexts[column] = rowTexts[column].isEmpty() ? lineTexts[column]
+                    : rowTexts[column] + " " + lineTexts[column];
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Known layout of the tables of a document: the X boundaries of the columns,
+ * the Y band the table is read from, for all pages or a range of pages, and
+ * how the band is split into rows. When set in the options, see
+ * {@link ExtractionOptions.Builder#setLayout(LayoutSpec)}, the extractor only
+ * collects the glyphs of a page and puts each one in the cell of the grid
+ * holding its center: lines and columns aren't detected.
+ * <p>
+ * Coordinates are the ones of TextPosition (origin at the top left corner).
+ * A layout can be read from a file, one setting per line, <code>#</code>
+ * starting a comment:
+ * <pre>
+ * columns 40 190 340 500
+ * band 80 700
+ * band 3-5 120 700
+ * rows anchor 0
+ * </pre>
+ * <code>columns</code> gives the boundaries, ASC. <code>band</code> gives the
+ * top and bottom of the band, for all pages or for a range of page idx-s, as
+ * given to {@link ExtractionOptions.Builder#addPage(int)}. <code>rows</code>
+ * is <code>lines</code>, <code>height &lt;row height&gt;</code> or
+ * <code>anchor &lt;column idx&gt;</code>, see {@link RowSplit}.
+ */
+public class LayoutSpec {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private final float[] columnBoundaries;
+    // null means the whole page
+    private final Range<Float> band;
+    // override the band on their pages, first one wins
+    private final ImmutableList<PageBand> pageBands;
+    private final RowSplit rowSplit;
+    private final float rowHeight;
+    private final int anchorColumn;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    private LayoutSpec(Builder builder) {
+        this.columnBoundaries = builder.columnBoundaries;
+        this.band = builder.band;
+        this.pageBands = ImmutableList.copyOf(builder.pageBands);
+        this.rowSplit = builder.rowSplit;
+        this.rowHeight = builder.rowHeight;
+        this.anchorColumn = builder.anchorColumn;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param file
+     * @return
+     * @throws IOException if the file can't be read or a line is invalid
+     */
+    public static LayoutSpec read(File file) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    /**
+     * @param reader
+     * @return
+     * @throws IOException if a line is invalid
+     */
+    public static LayoutSpec read(Reader reader) throws IOException {
+        Builder retVal = builder();
+        BufferedReader lineReader = new BufferedReader(reader);
+        int lineNumber = 0;
+        String line;
+        while ((line = lineReader.readLine()) != null) {
+            lineNumber++;
+            int commentStart = line.indexOf('#');
+            String setting = (commentStart >= 0 ? line.substring(0, commentStart) : line).trim();
+            if (setting.isEmpty()) {
+                continue;
+            }
+            try {
+                readSetting(retVal, setting.split("[\\s,]+"));
+            } catch (IllegalArgumentException ex) {
+                throw new IOException("Invalid layout line " + lineNumber + ": " + line, ex);
+            }
+        }
+        try {
+            return retVal.build();
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Invalid layout: " + ex.getMessage(), ex);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    public float[] getColumnBoundaries() {
+        return columnBoundaries.clone();
+    }
+
+    public int getColumnCount() {
+        return columnBoundaries.length - 1;
+    }
+
+    public RowSplit getRowSplit() {
+        return rowSplit;
+    }
+
+    public float getRowHeight() {
+        return rowHeight;
+    }
+
+    public int getAnchorColumn() {
+        return anchorColumn;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * @param pageIdx
+     * @return band the table of the page is read from, null for the whole
+     * page
+     */
+    public Range<Float> getBand(int pageIdx) {
+        for (PageBand pageBand : pageBands) {
+            if (pageIdx >= pageBand.fromPageIdx && pageIdx <= pageBand.toPageIdx) {
+                return pageBand.band;
+            }
+        }
+        return band;
+    }
+
+    /**
+     * Write the layout in the format read by {@link #read(Reader)}
+     *
+     * @param writer
+     * @throws IOException
+     */
+    public void write(Writer writer) throws IOException {
+        StringBuilder columns = new StringBuilder("columns");
+        for (float columnBoundary : columnBoundaries) {
+            columns.append(' ').append(columnBoundary);
+        }
+        writer.write(columns.append('\n').toString());
+        if (band != null) {
+            writer.write("band " + band.lowerEndpoint() + " " + band.upperEndpoint() + "\n");
+        }
+        for (PageBand pageBand : pageBands) {
+            writer.write("band " + pageBand.fromPageIdx + "-" + pageBand.toPageIdx + " "
+                    + pageBand.band.lowerEndpoint() + " " + pageBand.band.upperEndpoint() + "\n");
+        }
+        if (rowSplit == RowSplit.FIXED_HEIGHT) {
+            writer.write("rows height " + rowHeight + "\n");
+        } else if (rowSplit == RowSplit.ANCHOR_COLUMN) {
+            writer.write("rows anchor " + anchorColumn + "\n");
+        } else {
+            writer.write("rows lines\n");
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private static void readSetting(Builder builder, String[] tokens) {
+        switch (tokens[0]) {
+            case "columns":
+                float[] boundaries = new float[tokens.length - 1];
+                for (int idx = 1; idx < tokens.length; idx++) {
+                    boundaries[idx - 1] = Float.parseFloat(tokens[idx]);
+                }
+                builder.setColumnBoundaries(boundaries);
+                break;
+            case "band":
+                if (tokens.length == 3) {
+                    builder.setBand(Range.closed(Float.parseFloat(tokens[1]), Float.parseFloat(tokens[2])));
+                } else if (tokens.length == 4) {
+                    String[] pageIdxs = tokens[1].split("-");
+                    if (pageIdxs.length > 2) {
+                        throw new IllegalArgumentException("Invalid page range: " + tokens[1]);
+                    }
+                    builder.setBand(Integer.parseInt(pageIdxs[0]), Integer.parseInt(pageIdxs[pageIdxs.length - 1]),
+                            Range.closed(Float.parseFloat(tokens[2]), Float.parseFloat(tokens[3])));
+                } else {
+                    throw new IllegalArgumentException("Band needs a top and a bottom");
+                }
+                break;
+            case "rows":
+                if (tokens.length == 2 && "lines".equals(tokens[1])) {
+                    builder.splitRowsByLines();
+                } else if (tokens.length == 3 && "height".equals(tokens[1])) {
+                    builder.splitRowsByHeight(Float.parseFloat(tokens[2]));
+                } else if (tokens.length == 3 && "anchor".equals(tokens[1])) {
+                    builder.splitRowsByAnchor(Integer.parseInt(tokens[2]));
+                } else {
+                    throw new IllegalArgumentException("Rows are split by lines, height or anchor");
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown setting: " + tokens[0]);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Inner class
+    private static class PageBand {
+
+        private final int fromPageIdx;
+        private final int toPageIdx;
+        private final Range<Float> band;
+
+        private PageBand(int fromPageIdx, int toPageIdx, Range<Float> band) {
+            this.fromPageIdx = fromPageIdx;
+            this.toPageIdx = toPageIdx;
+            this.band = band;
+        }
+    }
+
+    public static class Builder {
+
+        private float[] columnBoundaries;
+        private Range<Float> band;
+        private final List<PageBand> pageBands = new ArrayList<>();
+        private RowSplit rowSplit = RowSplit.LINES;
+        private float rowHeight = 0;
+        private int anchorColumn = -1;
+
+        private Builder() {
+        }
+
+        /**
+         * @param columnBoundaries X of the left side of the first column, of
+         * the sides between columns and of the right side of the last column,
+         * ASC. Glyphs whose center is outside are dropped.
+         * @return
+         */
+        public Builder setColumnBoundaries(float... columnBoundaries) {
+            if (columnBoundaries.length < 2) {
+                throw new IllegalArgumentException("Columns need at least 2 boundaries");
+            }
+            for (int idx = 1; idx < columnBoundaries.length; idx++) {
+                if (!(columnBoundaries[idx - 1] < columnBoundaries[idx])) {
+                    throw new IllegalArgumentException("Column boundaries aren't ASC: "
+                            + Arrays.toString(columnBoundaries));
+                }
+            }
+            this.columnBoundaries = columnBoundaries.clone();
+            return this;
+        }
+
+        /**
+         * @param band band of all pages without their own band, null for the
+         * whole page
+         * @return
+         */
+        public Builder setBand(Range<Float> band) {
+            this.band = band;
+            return this;
+        }
+
+        /**
+         * @param fromPageIdx
+         * @param toPageIdx inclusive
+         * @param band
+         * @return
+         */
+        public Builder setBand(int fromPageIdx, int toPageIdx, Range<Float> band) {
+            if (fromPageIdx > toPageIdx) {
+                throw new IllegalArgumentException("Invalid page range: " + fromPageIdx + "-" + toPageIdx);
+            }
+            pageBands.add(new PageBand(fromPageIdx, toPageIdx, band));
+            return this;
+        }
+
+        /**
+         * One row per line, the default
+         *
+         * @return
+         */
+        public Builder splitRowsByLines() {
+            this.rowSplit = RowSplit.LINES;
+            return this;
+        }
+
+        /**
+         * @param rowHeight rows start at the top of the band, or of the page,
+         * and empty rows are dropped
+         * @return
+         */
+        public Builder splitRowsByHeight(float rowHeight) {
+            if (!(rowHeight > 0)) {
+                throw new IllegalArgumentException("Invalid row height: " + rowHeight);
+            }
+            this.rowSplit = RowSplit.FIXED_HEIGHT;
+            this.rowHeight = rowHeight;
+            return this;
+        }
+
+        /**
+         * Merge the wrapped lines of a row: a line without text in the anchor
+         * column continues the row above, its cells appended after a space
+         *
+         * @param anchorColumn
+         * @return
+         */
+        public Builder splitRowsByAnchor(int anchorColumn) {
+            if (anchorColumn < 0) {
+                throw new IllegalArgumentException("Invalid anchor column: " + anchorColumn);
+            }
+            this.rowSplit = RowSplit.ANCHOR_COLUMN;
+            this.anchorColumn = anchorColumn;
+            return this;
+        }
+
+        public LayoutSpec build() {
+            if (columnBoundaries == null) {
+                throw new IllegalArgumentException("Layout needs column boundaries");
+            }
+            if (rowSplit == RowSplit.ANCHOR_COLUMN && anchorColumn >= columnBoundaries.length - 1) {
+                throw new IllegalArgumentException("Invalid anchor column: " + anchorColumn);
+            }
+            return new LayoutSpec(this);
+        }
+    }
+}
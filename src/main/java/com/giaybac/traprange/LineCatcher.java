@@ -5,7 +5,11 @@ import java.awt.geom.Point2D;
 import java.io.File;
 import java.io.IOException;
 
+import java.util.List;
+
 import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
@@ -15,12 +19,18 @@ public class LineCatcher extends PDFGraphicsStreamEngine
 {
     private final GeneralPath linePath = new GeneralPath();
     private int clipWindingRule = -1;
+    private ExtractionDeadline deadline = ExtractionDeadline.none();
 
     public LineCatcher(PDPage page)
     {
         super(page);
     }
 
+    void setDeadline(ExtractionDeadline deadline)
+    {
+        this.deadline = deadline;
+    }
+
     public static void main(String[] args) throws IOException
     {
         try (PDDocument document = PDDocument.load(new File("E:\\0del\\hzdata1.pdf")))
@@ -31,6 +41,13 @@ public class LineCatcher extends PDFGraphicsStreamEngine
         }
     }
 
+    @Override
+    protected void processOperator(Operator operator, List<COSBase> operands) throws IOException
+    {
+        deadline.check();
+        super.processOperator(operator, operands);
+    }
+
     @Override
     public void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) throws IOException
     {
@@ -9,11 +9,18 @@ import com.giaybac.traprange.entity.Table;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.primitives.Ints;
+import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
 import org.apache.log4j.PropertyConfigurator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,22 +31,47 @@ import org.slf4j.LoggerFactory;
  */
 public class MAIN {
 
-    private static final Logger logger = LoggerFactory.getLogger(MAIN.class);
+    private static final String LOG_CONFIGURATION = "/com/giaybac/traprange/log4j.properties";
+    // token of -el for the lines repeated on most pages
+    private static final String AUTO_EXCEPT_LINES = "auto";
+    // created once logging is configured
+    private static Logger logger;
 
     /**
-     * -in: source <br/>
-     * -out: target  <br/>
-     * -el: except lines. Ex: 1,2,3-1,6@8 #line 6 in page 8  <br/>
+     * -in: source, or a directory of sources extracted in a resumable batch
+     * <br/>
+     * -out: target, a directory for a batch <br/>
+     * -el: except lines. Ex: 1,2,3-1,6@8 #line 6 in page 8, auto #lines
+     * repeated on most pages <br/>
      * -p: page  <br/>
      * -ep: except page <br/>
+     * -workers: number of worker processes <br/>
+     * -shard-size: pages per worker process <br/>
+     * -worker-opts: JVM options of the worker processes <br/>
+     * -manifest: reuse the unchanged pages of the previous run <br/>
+     * -journal: file of the batch progress, default: traprange.journal in
+     * the target directory <br/>
+     * -watch: directory whose new files are extracted until the process is
+     * stopped, to -out <br/>
+     * -done, -failed: directories the watched files are moved to, default:
+     * done and failed in the target directory <br/>
+     * -threads: worker threads of -watch <br/>
+     * -marker: suffix of the marker files of -watch <br/>
+     * -layout: file of the known table layout, see {@link LayoutSpec} <br/>
+     * -log: log level: off, error, warn, info or debug <br/>
      * -h: help
      *
      * @param args
      */
     public static void main(String[] args) {
-        PropertyConfigurator.configure(MAIN.class.getResource("/com/giaybac/traprange/log4j.properties"));
+        configureLogging(getArg(args, "log"));
+        logger = LoggerFactory.getLogger(MAIN.class);
         if (args.length == 1 && "-h".equals(args[0])) {
             printHelp();
+        } else if (getArg(args, "worker") != null) {
+            runWorker(args);
+        } else if (getArg(args, "watch") != null) {
+            watchFolder(args);
         } else {
             extractTables(args);
         }
@@ -47,44 +79,45 @@ public class MAIN {
 
     private static void extractTables(String[] args) {
         try {
-            List<Integer> pages = getPages(args);
-            List<Integer> exceptPages = getExceptPages(args);
-            List<Integer[]> exceptLines = getExceptLines(args);
             String in = getIn(args);
             String out = getOut(args);
-
-            PDFTableExtractor extractor = (new PDFTableExtractor())
-                    .setSource(in);
-            //page
-            for (Integer page : pages) {
-                extractor.addPage(page);
-            }
-            //except page
-            for (Integer exceptPage : exceptPages) {
-                extractor.exceptPage(exceptPage);
+            ExtractionOptions options = getOptions(args);
+            int workers = getInt(args, "workers", 0);
+            String manifest = getArg(args, "manifest");
+            if (workers > 0 && manifest != null) {
+                throw new RuntimeException("Arguments -workers and -manifest can't be used together");
             }
-            //except lines
-            List<Integer> exceptLineIdxs = new ArrayList<>();
-            Multimap<Integer, Integer> exceptLineInPages = LinkedListMultimap.create();
-            for (Integer[] exceptLine : exceptLines) {
-                if (exceptLine.length == 1) {
-                    exceptLineIdxs.add(exceptLine[0]);
-                } else if (exceptLine.length == 2) {
-                    int lineIdx = exceptLine[0];
-                    int pageIdx = exceptLine[1];
-                    exceptLineInPages.put(pageIdx, lineIdx);
-                }
+            if (options.getLayout() != null && (workers > 0 || manifest != null)) {
+                throw new RuntimeException("Argument -layout can't be used with -workers or -manifest");
             }
-            if (!exceptLineIdxs.isEmpty()) {
-                extractor.exceptLine(Ints.toArray(exceptLineIdxs));
+            if (options.getBoilerplateRatio() > 0 && (workers > 0 || manifest != null)) {
+                throw new RuntimeException("Except lines auto can't be used with -workers or -manifest");
             }
-            if (!exceptLineInPages.isEmpty()) {
-                for (int pageIdx : exceptLineInPages.keySet()) {
-                    extractor.exceptLine(pageIdx, Ints.toArray(exceptLineInPages.get(pageIdx)));
+            if (new File(in).isDirectory()) {
+                if (workers > 0 || manifest != null) {
+                    throw new RuntimeException("A directory -in can't be used with -workers or -manifest");
                 }
+                runBatch(new File(in), new File(out), options, getArg(args, "journal"));
+                return;
             }
+
             //begin parsing pdf file
-            List<Table> tables = extractor.extract();
+            List<Table> tables;
+            if (manifest != null) {
+                tables = new IncrementalExtractor(new File(in), options, new File(manifest)).extract().getTables();
+            } else if (workers > 0) {
+                ShardedExtractor extractor = new ShardedExtractor(new File(in), options, workers)
+                        .setShardSize(getInt(args, "shard-size", 0));
+                String workerOptions = getArg(args, "worker-opts");
+                if (workerOptions != null) {
+                    extractor.setWorkerJvmArgs(Arrays.asList(workerOptions.split("\\s+")));
+                }
+                tables = extractor.extract().getTables();
+            } else {
+                try (ExtractionSession session = new ExtractionSession(new File(in))) {
+                    tables = session.extract(options).getTables();
+                }
+            }
 
             Writer writer = new OutputStreamWriter(new FileOutputStream(out), "UTF-8");
             try {
@@ -103,14 +136,159 @@ public class MAIN {
         }
     }
 
+    private static void runBatch(File inDir, File outDir, ExtractionOptions options, String journal)
+            throws IOException {
+        File[] files = inDir.listFiles();
+        if (files == null) {
+            throw new IOException("List input directory fail: " + inDir);
+        }
+        List<File> inputs = new ArrayList<>();
+        for (File file : files) {
+            if (file.isFile() && file.getName().toLowerCase().endsWith(".pdf")) {
+                inputs.add(file);
+            }
+        }
+        Collections.sort(inputs);
+        File journalFile = journal != null ? new File(journal) : new File(outDir, "traprange.journal");
+        BatchRunner runner = new BatchRunner(new TableExtractionEngine(), options, outDir, journalFile);
+        runner.run(inputs);
+        for (Map.Entry<File, String> failure : runner.getFailures().entrySet()) {
+            logger.warn("Failed: " + failure.getKey() + ": " + failure.getValue());
+        }
+        logger.info("Extracted " + runner.getExtractedCount() + " file(s), skipped " + runner.getSkippedCount()
+                + " file(s) done by an earlier run, " + runner.getFailures().size() + " file(s) failed");
+    }
+
+    private static void watchFolder(String[] args) {
+        try {
+            File outDir = new File(getOut(args));
+            String done = getArg(args, "done");
+            String failed = getArg(args, "failed");
+            final WatchFolderDaemon daemon = new WatchFolderDaemon(new TableExtractionEngine(), getOptions(args),
+                    new File(getArg(args, "watch")), outDir,
+                    done != null ? new File(done) : new File(outDir, "done"),
+                    failed != null ? new File(failed) : new File(outDir, "failed"),
+                    getInt(args, "threads", Runtime.getRuntime().availableProcessors()))
+                    .setMarkerSuffix(getArg(args, "marker"));
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        daemon.close();
+                    } catch (IOException e) {
+                        logger.error(null, e);
+                    }
+                }
+            });
+            daemon.start();
+            daemon.await();
+        } catch (Exception e) {
+            logger.error(null, e);
+        }
+    }
+
+    private static void runWorker(String[] args) {
+        try {
+            ShardedExtractor.runWorker(new File(getArg(args, "worker")), new File(getOut(args)));
+        } catch (Exception e) {
+            logger.error(null, e);
+            // the coordinator fails on a non zero exit code
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Short runs spend a noticeable part of their time setting up log4j.
+     * When logging is off, log4j neither looks for a configuration file nor
+     * parses one, and every log call is dropped at once.
+     *
+     * @param level null for the bundled configuration
+     */
+    private static void configureLogging(String level) {
+        Level log4jLevel = level == null ? null : Level.toLevel(level, null);
+        if (level != null && log4jLevel == null) {
+            throw new RuntimeException("Invalid argument (-log): " + level);
+        }
+        if (log4jLevel == Level.OFF) {
+            // read by log4j when it is loaded
+            System.setProperty("log4j.defaultInitOverride", "true");
+            LogManager.getLoggerRepository().setThreshold(Level.OFF);
+            return;
+        }
+        PropertyConfigurator.configure(MAIN.class.getResource(LOG_CONFIGURATION));
+        if (log4jLevel != null) {
+            LogManager.getRootLogger().setLevel(log4jLevel);
+        }
+    }
+
+    private static ExtractionOptions getOptions(String[] args) {
+        List<Integer> pages = getPages(args);
+        List<Integer> exceptPages = getExceptPages(args);
+        List<Integer[]> exceptLines = getExceptLines(args);
+
+        ExtractionOptions.Builder retVal = ExtractionOptions.builder();
+        //page
+        for (Integer page : pages) {
+            retVal.addPage(page);
+        }
+        //except page
+        for (Integer exceptPage : exceptPages) {
+            retVal.exceptPage(exceptPage);
+        }
+        //except lines
+        List<Integer> exceptLineIdxs = new ArrayList<>();
+        Multimap<Integer, Integer> exceptLineInPages = LinkedListMultimap.create();
+        for (Integer[] exceptLine : exceptLines) {
+            if (exceptLine.length == 1) {
+                exceptLineIdxs.add(exceptLine[0]);
+            } else if (exceptLine.length == 2) {
+                int lineIdx = exceptLine[0];
+                int pageIdx = exceptLine[1];
+                exceptLineInPages.put(pageIdx, lineIdx);
+            }
+        }
+        if (!exceptLineIdxs.isEmpty()) {
+            retVal.exceptLine(Ints.toArray(exceptLineIdxs));
+        }
+        if (!exceptLineInPages.isEmpty()) {
+            for (int pageIdx : exceptLineInPages.keySet()) {
+                retVal.exceptLine(pageIdx, Ints.toArray(exceptLineInPages.get(pageIdx)));
+            }
+        }
+        if (isExceptBoilerplate(args)) {
+            retVal.exceptBoilerplate(ExtractionOptions.DEFAULT_BOILERPLATE_RATIO);
+        }
+        //layout
+        String layout = getArg(args, "layout");
+        if (layout != null) {
+            try {
+                retVal.setLayout(LayoutSpec.read(new File(layout)));
+            } catch (IOException e) {
+                throw new RuntimeException("Invalid argument (-layout): " + layout, e);
+            }
+        }
+        return retVal.build();
+    }
+
     private static void printHelp() {
         StringBuilder help = new StringBuilder();
         help.append("Argument list: \n")
-                .append("\t-in: (required) absolute pdf location path. Ex: \"/Users/thoqbk/table.pdf\"\n")
-                .append("\t-out: (required) absolute output file. Ex: \"/Users/thoqbk/table.html\"\n")
-                .append("\t-el: except lines. For example, to exept lines 1,2,3 and -1 (last line) in all pages and line 4 in page 8, the value shoud be: \"1,2,3,-1,4@8\"\n")
+                .append("\t-in: (required) absolute pdf location path, or directory of pdf files extracted in a resumable batch. Ex: \"/Users/thoqbk/table.pdf\"\n")
+                .append("\t-out: (required) absolute output file, or output directory of a batch. Ex: \"/Users/thoqbk/table.html\"\n")
+                .append("\t-journal: progress of a batch, done files are skipped when it runs again. Default: traprange.journal in the output directory\n")
+                .append("\t-el: except lines. For example, to exept lines 1,2,3 and -1 (last line) in all pages and line 4 in page 8, the value shoud be: \"1,2,3,-1,4@8\"; \"auto\" also avoids the lines repeated on most pages, like headers and footers\n")
                 .append("\t-p: only parse these pages. Ex: 1,2,3\n")
                 .append("\t-ep: all pages except these pages. Ex: 1,2\n")
+                .append("\t-workers: split the pages between this number of worker processes. Ex: 4\n")
+                .append("\t-shard-size: pages per worker process, default: pages split evenly between workers. Ex: 500\n")
+                .append("\t-worker-opts: JVM options of the worker processes. Ex: \"-Xmx512m\"\n")
+                .append("\t-manifest: file of the page hashes and results, only new or changed pages are processed again. Ex: \"/Users/thoqbk/table.manifest\"\n")
+                .append("\t-watch: keep running and extract the pdf files dropped into this directory, to the -out directory. Ex: \"/Users/thoqbk/inbox\"\n")
+                .append("\t-done, -failed: directories the watched files are moved to once extracted or failed. Default: done and failed in the -out directory\n")
+                .append("\t-threads: worker threads extracting the watched files. Default: number of processors\n")
+                .append("\t-marker: a watched file is taken once the file of its name followed by this suffix exists, else once its size is stable. Ex: .ready\n")
+                .append("\t-layout: file of the column boundaries, Y bands and row rule of the tables, lines and columns aren't detected. Ex: \"/Users/thoqbk/table.layout\"\n")
+                .append("\t-log: log level: off, error, warn, info or debug. Default: debug\n")
                 .append("\t-h: help\n")
                 .append("---");
         logger.info(help.toString());
@@ -124,6 +302,18 @@ public class MAIN {
         return getInts(args, "ep");
     }
 
+    private static int getInt(String[] args, String name, int defaultValue) {
+        String intInString = getArg(args, name);
+        if (intInString == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(intInString);
+        } catch (Exception e) {
+            throw new RuntimeException("Invalid argument (-" + name + "): " + intInString, e);
+        }
+    }
+
     private static List<Integer> getInts(String[] args, String name) {
         List<Integer> retVal = new ArrayList<>();
         String intsInString = getArg(args, name);
@@ -149,6 +339,9 @@ public class MAIN {
         //ELSE:
         String[] exceptLineStrings = exceptLinesInString.split(",");
         for (String exceptLineString : exceptLineStrings) {
+            if (AUTO_EXCEPT_LINES.equals(exceptLineString.trim())) {
+                continue;
+            }
             if (exceptLineString.contains("@")) {
                 String[] exceptLineItems = exceptLineString.split("@");
                 if (exceptLineItems.length != 2) {
@@ -174,6 +367,19 @@ public class MAIN {
         return retVal;
     }
 
+    private static boolean isExceptBoilerplate(String[] args) {
+        String exceptLinesInString = getArg(args, "el");
+        if (exceptLinesInString == null) {
+            return false;
+        }
+        for (String exceptLineString : exceptLinesInString.split(",")) {
+            if (AUTO_EXCEPT_LINES.equals(exceptLineString.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static String getOut(String[] args) {
         String retVal = getArg(args, "out", null);
         if (retVal == null) {
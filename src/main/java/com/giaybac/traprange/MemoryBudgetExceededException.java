@@ -0,0 +1,34 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+/**
+ * Thrown when a {@link MemoryGovernor} can't admit an extraction before its
+ * maximum wait
+ */
+public class MemoryBudgetExceededException extends RuntimeException {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private final long requestedBytes;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    public MemoryBudgetExceededException(long requestedBytes, long usedBytes, long budget) {
+        super("Memory budget exceeded: " + requestedBytes + " byte(s) requested, "
+                + usedBytes + " of " + budget + " byte(s) used");
+        this.requestedBytes = requestedBytes;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    /**
+     * @return estimated cost of the rejected extraction, in bytes
+     */
+    public long getRequestedBytes() {
+        return requestedBytes;
+    }
+}
@@ -0,0 +1,252 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process wide memory budget of the extractions, shared by the
+ * {@link TableExtractionEngine}s created with it.
+ * <p>
+ * An extraction reserves an estimate of its document, from the file size,
+ * before loading it: it waits while the budget is used up, and is rejected
+ * with {@link MemoryBudgetExceededException} after the maximum wait. Once
+ * loaded, the page count and the glyphs of the parsed pages are added to its
+ * reservation as they are created. When they exceed the budget, every running
+ * extraction switches to a low memory mode: parsed pages are not kept, and
+ * the table pages only keep the glyphs of their rows. The extracted tables
+ * are the same. A document whose estimate alone exceeds the budget is loaded
+ * in low memory mode, with a temp file for its streams.
+ */
+public class MemoryGovernor {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    // heap of a loaded document per byte of its file
+    private static final long DOCUMENT_BYTES_PER_FILE_BYTE = 3;
+    // a document of unknown size costs at least this
+    private static final long MIN_DOCUMENT_BYTES = 1024 * 1024;
+    // resources, content stream and glyphs of the page being parsed
+    private static final long BYTES_PER_PAGE = 64 * 1024;
+
+    private final Logger logger = LoggerFactory.getLogger(MemoryGovernor.class);
+    private final long budget;
+    private final long maxWaitNanos;
+    // guarded by this
+    private long usedBytes = 0;
+    private int queuedCount = 0;
+    private final List<Admission> admissions = new ArrayList<>();
+    private final AtomicLong admittedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong lowMemoryCount = new AtomicLong();
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    /**
+     * Extractions wait without limit for the budget
+     *
+     * @param budget in bytes
+     */
+    public MemoryGovernor(long budget) {
+        this(budget, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param budget in bytes
+     * @param maxWait how long an extraction waits for the budget before it's
+     * rejected, 0 rejects it at once
+     * @param unit
+     */
+    public MemoryGovernor(long budget, long maxWait, TimeUnit unit) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("Invalid memory budget: " + budget);
+        }
+        this.budget = budget;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return bytes reserved by the running extractions
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return extractions waiting for the budget now
+     */
+    public synchronized int getQueuedCount() {
+        return queuedCount;
+    }
+
+    public long getAdmittedCount() {
+        return admittedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return extractions run in low memory mode, from their start or
+     * switched while running
+     */
+    public long getLowMemoryCount() {
+        return lowMemoryCount.get();
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * @param fileSize in bytes, 0 if unknown
+     * @param pageCount
+     * @return estimated heap needed to extract a document, its parsed pages
+     * excluded
+     */
+    public static long estimate(long fileSize, int pageCount) {
+        return estimateDocument(fileSize) + estimatePages(pageCount);
+    }
+
+    /**
+     * Reserve memory for an extraction, waiting for the budget if it's used
+     * up. An estimate over the whole budget reserves the budget, once nothing
+     * else runs, in low memory mode.
+     *
+     * @param bytes estimated cost, see {@link #estimate(long, int)}
+     * @return to close when the extraction ends
+     * @throws MemoryBudgetExceededException if the maximum wait elapsed
+     */
+    public synchronized Admission admit(long bytes) {
+        long reserved = Math.min(bytes, budget);
+        if (usedBytes + reserved > budget) {
+            waitFor(bytes, reserved);
+        }
+        Admission retVal = new Admission(reserved, bytes > budget);
+        usedBytes += reserved;
+        admissions.add(retVal);
+        admittedCount.incrementAndGet();
+        if (retVal.isLowMemory()) {
+            lowMemoryCount.incrementAndGet();
+        }
+        return retVal;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    static long estimateDocument(long fileSize) {
+        return Math.max(MIN_DOCUMENT_BYTES, DOCUMENT_BYTES_PER_FILE_BYTE * fileSize);
+    }
+
+    static long estimatePages(int pageCount) {
+        return BYTES_PER_PAGE * pageCount;
+    }
+
+    /**
+     * Wait until the reservation fits the budget, the lock being held
+     *
+     * @param bytes
+     * @param reserved
+     */
+    private void waitFor(long bytes, long reserved) {
+        long deadline = System.nanoTime() + maxWaitNanos;
+        queuedCount++;
+        try {
+            while (usedBytes + reserved > budget) {
+                long remainingNanos = maxWaitNanos == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    rejectedCount.incrementAndGet();
+                    throw new MemoryBudgetExceededException(bytes, usedBytes, budget);
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            rejectedCount.incrementAndGet();
+            throw new RuntimeException("Interrupted while waiting for the memory budget", ex);
+        } finally {
+            queuedCount--;
+        }
+    }
+
+    private synchronized void track(Admission admission, long bytes) {
+        admission.bytes += bytes;
+        usedBytes += bytes;
+        if (bytes > 0 && usedBytes > budget) {
+            // the pages of the running extractions go over the budget
+            for (Admission runningAdmission : admissions) {
+                if (!runningAdmission.lowMemory) {
+                    runningAdmission.lowMemory = true;
+                    lowMemoryCount.incrementAndGet();
+                }
+            }
+            logger.debug("Memory budget exceeded, " + admissions.size() + " extraction(s) in low memory mode");
+        }
+        if (bytes < 0) {
+            notifyAll();
+        }
+    }
+
+    private synchronized void release(Admission admission) {
+        if (admissions.remove(admission)) {
+            usedBytes -= admission.bytes;
+            notifyAll();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Inner class
+    /**
+     * Memory reserved by one extraction
+     */
+    public class Admission implements Closeable {
+
+        // guarded by the governor
+        private long bytes;
+        private volatile boolean lowMemory;
+
+        private Admission(long bytes, boolean lowMemory) {
+            this.bytes = bytes;
+            this.lowMemory = lowMemory;
+        }
+
+        /**
+         * @return true if the extraction should keep as little as possible
+         */
+        public boolean isLowMemory() {
+            return lowMemory;
+        }
+
+        /**
+         * Add memory used by the extraction, may switch the running
+         * extractions to low memory mode
+         *
+         * @param bytes negative when memory is released
+         */
+        void track(long bytes) {
+            MemoryGovernor.this.track(this, bytes);
+        }
+
+        /**
+         * Give back all memory reserved by the extraction
+         */
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+}
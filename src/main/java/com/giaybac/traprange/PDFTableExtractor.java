@@ -6,40 +6,28 @@
 package com.giaybac.traprange;
 
 import com.giaybac.traprange.entity.Table;
-import com.giaybac.traprange.entity.TableCell;
-import com.giaybac.traprange.entity.TableRow;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Range;
 
-import java.awt.image.RenderedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
-import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDResources;
-import org.apache.pdfbox.pdmodel.graphics.PDXObject;
-import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
-import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.pdfbox.rendering.PageDrawer;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.text.TextPosition;
@@ -47,10 +35,12 @@ import org.apache.pdfbox.text.TextPosition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javafx.util.Pair;
 import org.apache.pdfbox.rendering.PageDrawerParameters;
 
 /**
+ * Fluent helper to extract one document. Not thread safe: services sharing
+ * the extraction between threads use a {@link TableExtractionEngine} with
+ * {@link ExtractionOptions}.
  *
  * @author THOQ LUONG Mar 22, 2015 3:34:29 PM
  */
@@ -59,18 +49,17 @@ public class PDFTableExtractor {
     // --------------------------------------------------------------------------
     // Members
     private final Logger logger = LoggerFactory.getLogger(PDFTableExtractor.class);
-    // contains pages that will be extracted table content.
-    // If this variable doesn't contain any page, all pages will be extracted
-    private final List<Integer> extractedPages = new ArrayList<>();
-    private final List<Integer> exceptedPages = new ArrayList<>();
-    // contains avoided line idx-s for each page,
-    // if this multimap contains only one element and key of this element equals -1
-    // then all lines in extracted pages contains in multi-map value will be avoided
-    private final Multimap<Integer, Integer> pageNExceptedLinesMap = HashMultimap.create();
+    // pages, excepted lines, timeouts...
+    private final ExtractionOptions.Builder options = ExtractionOptions.builder();
 
+    private File file;
     private InputStream inputStream;
-    private PDDocument document;
     private String password;
+    // cancel flag of the running extraction
+    private volatile AtomicBoolean runningCancelled;
+    // optional, shared with other extractors
+    private SharedResourceCache resourceCache;
+    private ImageCollector imageCollector;
 
     /*
      * public static PrintWriter stdout = new PrintWriter( new
@@ -84,22 +73,24 @@ public class PDFTableExtractor {
     // --------------------------------------------------------------------------
     // Method binding
     public PDFTableExtractor setSource(InputStream inputStream) {
-        this.inputStream = inputStream;
-        return this;
+        return this.setSource(inputStream, null);
     }
 
     public PDFTableExtractor setSource(InputStream inputStream, String password) {
         this.inputStream = inputStream;
+        this.file = null;
         this.password = password;
         return this;
     }
 
+    /**
+     * The file is opened by {@link #extract()} and closed before it returns
+     *
+     * @param file
+     * @return
+     */
     public PDFTableExtractor setSource(File file) {
-        try {
-            return this.setSource(new FileInputStream(file));
-        } catch (FileNotFoundException ex) {
-            throw new RuntimeException("Invalid pdf file", ex);
-        }
+        return this.setSource(file, null);
     }
 
     public PDFTableExtractor setSource(String filePath) {
@@ -107,11 +98,13 @@ public class PDFTableExtractor {
     }
 
     public PDFTableExtractor setSource(File file, String password) {
-        try {
-            return this.setSource(new FileInputStream(file), password);
-        } catch (FileNotFoundException ex) {
-            throw new RuntimeException("Invalid pdf file", ex);
+        if (!file.isFile()) {
+            throw new RuntimeException("Invalid pdf file", new FileNotFoundException(file.getPath()));
         }
+        this.file = file;
+        this.inputStream = null;
+        this.password = password;
+        return this;
     }
 
     public PDFTableExtractor setSource(String filePath, String password) {
@@ -125,12 +118,12 @@ public class PDFTableExtractor {
      * @return
      */
     public PDFTableExtractor addPage(int pageIdx) {
-        extractedPages.add(pageIdx);
+        options.addPage(pageIdx);
         return this;
     }
 
     public PDFTableExtractor exceptPage(int pageIdx) {
-        exceptedPages.add(pageIdx);
+        options.exceptPage(pageIdx);
         return this;
     }
 
@@ -143,9 +136,7 @@ public class PDFTableExtractor {
      * @return
      */
     public PDFTableExtractor exceptLine(int pageIdx, int[] lineIdxs) {
-        for (int lineIdx : lineIdxs) {
-            pageNExceptedLinesMap.put(pageIdx, lineIdx);
-        }
+        options.exceptLine(pageIdx, lineIdxs);
         return this;
     }
 
@@ -161,239 +152,167 @@ public class PDFTableExtractor {
         return this;
     }
 
-    public List<Table> extract() {
-        List<Table> retVal = new ArrayList<>();
-        Multimap<Integer, Range<Float>> pageIdNLineRangesMap = LinkedListMultimap.create();
-        Multimap<Integer, TextPosition> pageIdNTextsMap = LinkedListMultimap.create();
-        try {
-            this.document = this.password != null ? PDDocument.load(inputStream, this.password)
-                    : PDDocument.load(inputStream);
-            PageProcessor thePageProcessor = new PageProcessor(document, pageNExceptedLinesMap);
-
-            for (int pageId = 0; pageId < document.getNumberOfPages(); pageId++) {
-                boolean need_extract = !exceptedPages.contains(pageId)
-                        && (extractedPages.isEmpty() || extractedPages.contains(pageId));
-                if (need_extract) {
-                    thePageProcessor.processPage(pageId, pageIdNLineRangesMap, pageIdNTextsMap);
-
-                    LineCatcher test = new LineCatcher(document.getPage(pageId));
-                    test.processPage(document.getPage(pageId));
-                }
-            }
+    /**
+     * Avoid the lines repeated on many pages, see
+     * {@link ExtractionOptions.Builder#exceptBoilerplate(float)}
+     *
+     * @param minPageRatio
+     * @return
+     */
+    public PDFTableExtractor exceptBoilerplate(float minPageRatio) {
+        options.exceptBoilerplate(minPageRatio);
+        return this;
+    }
 
-            // Calculate columnRanges
-            List<Range<Float>> columnRanges = getColumnRanges(pageIdNTextsMap.values());
-            for (int pageId : pageIdNTextsMap.keySet()) {
-                Collection<TextPosition> pageContent = pageIdNTextsMap.get(pageId);
-                Collection<Range<Float>> rowRanges = pageIdNLineRangesMap.get(pageId);
-
-                Table table = buildTable(pageId, (List) pageContent, 
-                                    (List) rowRanges, columnRanges);
-                retVal.add(table);
-                // debug
-                logger.debug("Found " + table.getRows().size() + " row(s) and " + columnRanges.size()
-                        + " column(s) of a table in page " + pageId);
-            }
+    /**
+     * Limit the time spent on the whole document. 0 means no limit
+     *
+     * @param timeout
+     * @param unit
+     * @return
+     */
+    public PDFTableExtractor setDocumentTimeout(long timeout, TimeUnit unit) {
+        options.setDocumentTimeout(timeout, unit);
+        return this;
+    }
 
-        } catch (IOException ex) {
-            throw new RuntimeException("Parse pdf file fail", ex);
-        } finally {
-            if (this.document != null) {
-                try {
-                    this.document.close();
-                } catch (IOException ex) {
-                    logger.error(null, ex);
-                }
-            }
-        }
-        return retVal;
+    /**
+     * Limit the time spent on each page. 0 means no limit
+     *
+     * @param timeout
+     * @param unit
+     * @return
+     */
+    public PDFTableExtractor setPageTimeout(long timeout, TimeUnit unit) {
+        options.setPageTimeout(timeout, unit);
+        return this;
     }
 
-    public List<RenderedImage> getImagesFromPDF(PDDocument document, int pageid) throws IOException {
-            
-        List<RenderedImage> images = new ArrayList<>();
-        PDPage page = document.getPage(pageid);
-        images.addAll(getImagesFromResources(page.getResources()));
-    
-        return images;
-    }
-    
-    private List<RenderedImage> getImagesFromResources(PDResources resources) throws IOException {
-        
-        List<RenderedImage> images = new ArrayList<>();
-    
-        for (COSName xObjectName : resources.getXObjectNames()) {
-            
-            PDXObject xObject = resources.getXObject(xObjectName);
-    
-            if (xObject instanceof PDFormXObject) {
-                images.addAll(getImagesFromResources(((PDFormXObject) xObject).getResources()));
-            } else if (xObject instanceof PDImageXObject) {
-                images.add(((PDImageXObject) xObject).getImage());
-            }
-        }
-    
-        return images;
-    }        
+    /**
+     * What to do when a timeout expires, default is
+     * {@link TimeoutPolicy#FAIL_DOCUMENT}
+     *
+     * @param timeoutPolicy
+     * @return
+     */
+    public PDFTableExtractor setTimeoutPolicy(TimeoutPolicy timeoutPolicy) {
+        options.setTimeoutPolicy(timeoutPolicy);
+        return this;
+    }
 
     /**
-     * @param texts
+     * Only read texts enclosed by this rectangle, see
+     * {@link ExtractionOptions.Builder#setRegion}
+     *
+     * @param xBand
+     * @param yBand
      * @return
      */
-    private List<Range<Float>> getColumnRanges(Collection<TextPosition> texts) {
-        TrapRangeBuilder rangesBuilder = new TrapRangeBuilder();
+    public PDFTableExtractor setRegion(Range<Float> xBand, Range<Float> yBand) {
+        options.setRegion(xBand, yBand);
+        return this;
+    }
 
-        /*
-         * for (TextPosition ep : texts) { stdout.println("X:" + ep.getX() + "  Xwid: "
-         * + ep.getWidth() + "  Y:" + ep.getY() + "  Yhgt:" + ep.getHeight() + "  Str: "
-         * + ep.getUnicode()); stdout.println("endx: " + ep.getEndX() + " xscale:" +
-         * ep.getXScale()); // stdout.println(ep.toString()); }
-         */
-
-        for (TextPosition text : texts) {
-            // Range<Float> range = Range.closed((int) text.getX(), (int) (text.getX() +
-            // text.getWidth()));
-            Range<Float> range = Range.closed(text.getX(), text.getX() + text.getWidth());
-            rangesBuilder.addRange(range);
-        }
-        return rangesBuilder.build();
+    public PDFTableExtractor setColumnMode(ColumnMode columnMode) {
+        options.setColumnMode(columnMode);
+        return this;
     }
 
-    // --------------------------------------------------------------------------
-    // Implement N Override
-    // --------------------------------------------------------------------------
-    // Utils
     /**
-     * Texts in tableContent have been ordered by .getY() ASC
+     * Reuse fonts parsed by other extractions sharing the same cache
      *
-     * @param pageIdx
-     * @param tableContent
-     * @param rowTrapRanges
-     * @param columnTrapRanges
+     * @param resourceCache
      * @return
      */
-    private Table buildTable(int pageIdx, List<TextPosition> tableContent, List<Range<Float>> rowTrapRanges,
-            List<Range<Float>> columnTrapRanges) {
+    public PDFTableExtractor setResourceCache(SharedResourceCache resourceCache) {
+        this.resourceCache = resourceCache;
+        return this;
+    }
 
-        Table retVal = new Table(pageIdx, columnTrapRanges.size());
-        int idx = 0;
-        int rowIdx = 0;
-        List<TextPosition> rowContent = new ArrayList<>();
-        while (idx < tableContent.size()) {
-            TextPosition textPosition = tableContent.get(idx);
-            Range<Float> rowTrapRange = rowTrapRanges.get(rowIdx);
-            Range<Float> textRange = Range.closed(textPosition.getY(), textPosition.getY() + textPosition.getHeight());
-            if (rowTrapRange.encloses(textRange)) {
-                rowContent.add(textPosition);
-                idx++;
-            } else {
-                TableRow row = buildRow(rowIdx, rowContent, columnTrapRanges);
-                retVal.getRows().add(row);
-                // next row: clear rowContent
-                rowContent.clear();
-                rowIdx++;
-            }
-        }
-        // last row
-        if (!rowContent.isEmpty() && rowIdx < rowTrapRanges.size()) {
-            TableRow row = buildRow(rowIdx, rowContent, columnTrapRanges);
-            retVal.getRows().add(row);
+    /**
+     * Stop the running extraction, if any. Can be called from any thread, the
+     * extracting thread then throws
+     * {@link java.util.concurrent.CancellationException}. Later extractions
+     * aren't cancelled.
+     */
+    public void cancel() {
+        AtomicBoolean cancelled = runningCancelled;
+        if (cancelled != null) {
+            cancelled.set(true);
         }
-        // return
-        return retVal;
+    }
+
+    public List<Table> extract() {
+        return extractResult().getTables();
     }
 
     /**
+     * Same as {@link #extract()} but also reports the pages which were skipped
      *
-     * @param rowIdx
-     * @param rowContent
-     * @param columnTrapRanges
      * @return
      */
-    private TableRow buildRow(int rowIdx, List<TextPosition> rowContent, List<Range<Float>> columnTrapRanges) {
-        TableRow retVal = new TableRow(rowIdx);
-        // Sort rowContent
-        Collections.sort(rowContent, new Comparator<TextPosition>() {
-            @Override
-            public int compare(TextPosition o1, TextPosition o2) {
-                int retVal = 0;
-                if (o1.getX() < o2.getX()) {
-                    retVal = -1;
-                } else if (o1.getX() > o2.getX()) {
-                    retVal = 1;
-                }
-                return retVal;
-            }
-        });
-        int idx = 0;
-        int columnIdx = 0;
-        List<TextPosition> cellContent = new ArrayList<>();
-        while (idx < rowContent.size()) {
-            TextPosition textPosition = rowContent.get(idx);
-            Range<Float> columnTrapRange = columnTrapRanges.get(columnIdx);
-            Range<Float> textRange = Range.closed(textPosition.getX(), 
-                                textPosition.getX() + textPosition.getWidth());
-            if (columnTrapRange.encloses(textRange)) {
-                cellContent.add(textPosition);
-                idx++;
-            } else {
-                TableCell cell = buildCell(columnIdx, cellContent);
-                retVal.getCells().add(cell);
-                // next column: clear cell content
-                cellContent.clear();
-                columnIdx++;
+    public ExtractionResult extractResult() {
+        TableExtractionEngine engine = new TableExtractionEngine(resourceCache);
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        runningCancelled = cancelled;
+        try {
+            if (file != null) {
+                return engine.extract(file, password, options.build(), cancelled);
             }
+            return engine.extract(inputStream, password, options.build(), cancelled);
+        } finally {
+            runningCancelled = null;
         }
-        if (!cellContent.isEmpty() && columnIdx < columnTrapRanges.size()) {
-            TableCell cell = buildCell(columnIdx, cellContent);
-            retVal.getCells().add(cell);
-        }
-        // return
-        return retVal;
     }
 
-    private TableCell buildCell(int columnIdx, List<TextPosition> cellContent) {
-        Collections.sort(cellContent, new Comparator<TextPosition>() {
-            @Override
-            public int compare(TextPosition o1, TextPosition o2) {
-                int retVal = 0;
-                if (o1.getX() < o2.getX()) {
-                    retVal = -1;
-                } else if (o1.getX() > o2.getX()) {
-                    retVal = 1;
-                }
-                return retVal;
-            }
-        });
-        // String cellContentString = Joiner.on("").join(cellContent.stream().map(e ->
-        // e.getCharacter()).iterator());
-        StringBuilder cellContentBuilder = new StringBuilder();
-        for (TextPosition textPosition : cellContent) {
-            cellContentBuilder.append(textPosition.getUnicode());
+    /**
+     * Images of a page, decoded only on demand. Calls with the same document
+     * return the same handle for an image shared by several pages.
+     *
+     * @param document
+     * @param pageid
+     * @return
+     */
+    public List<ImageHandle> getImagesFromPDF(PDDocument document, int pageid) {
+        if (imageCollector == null || imageCollector.getDocument() != document) {
+            imageCollector = new ImageCollector(document);
         }
-        String cellContentString = cellContentBuilder.toString();
-        return new TableCell(columnIdx, cellContentString);
+        return imageCollector.collect(pageid);
     }
+
+    // --------------------------------------------------------------------------
+    // Implement N Override
+    // --------------------------------------------------------------------------
+    // Utils
 }
 
 class PageRowColumnsProcessor {
 
-    private final List<TextPosition> pageContent;
+    private final PageGlyphIndex pageIndex;
     private final List<Range<Float>> pageRowTrapRanges;
+    private final ExtractionDeadline deadline;
+    // rows split between threads
+    private final boolean parallel;
     private final Logger logger = LoggerFactory.getLogger(PageRowColumnsProcessor.class);
 
-    public PageRowColumnsProcessor(List<TextPosition> tableContent, List<Range<Float>> rowTrapRanges) {
-        this.pageContent = tableContent;
+    public PageRowColumnsProcessor(PageGlyphIndex pageIndex, List<Range<Float>> rowTrapRanges,
+            ExtractionDeadline deadline, boolean parallel) {
+        this.pageIndex = pageIndex;
         this.pageRowTrapRanges = rowTrapRanges;
+        this.deadline = deadline;
+        this.parallel = parallel;
     }
 
-    public List<Pair<Integer, Integer>> getTableRows() {
+    /**
+     * @return row indexes of each table, first and last rows included
+     */
+    public List<Range<Integer>> getTableRows() {
 
-        Map<Integer, List<Range<Float>>> rowColumns = getRowColumnRanges();
+        List<List<Range<Float>>> rowColumns = getRowColumnRanges();
 
-        List<Pair<Integer, Integer>> retVal = new ArrayList();
+        List<Range<Integer>> retVal = new ArrayList();
 
-        int lRowCount = rowColumns.keySet().size();
+        int lRowCount = rowColumns.size();
         logger.debug("Total rows:" + lRowCount);
         int startRow = 0;
         boolean inTable = false;
@@ -412,17 +331,17 @@ class PageRowColumnsProcessor {
             if (startRow == idx)
                 startRow = idx + 1;
             else {
-                retVal.add(new Pair<>(startRow, idx));
+                retVal.add(Range.closed(startRow, idx));
                 startRow = idx + 1;
                 inTable = false;
             }
         }
         if (inTable) {
-            retVal.add(new Pair<>(startRow, lRowCount-1));
+            retVal.add(Range.closed(startRow, lRowCount-1));
         }
 
-        for (Pair<Integer, Integer> pair : retVal) {
-            logger.debug("start row: " + pair.getKey() + " end row:" + pair.getValue());
+        for (Range<Integer> rows : retVal) {
+            logger.debug("start row: " + rows.lowerEndpoint() + " end row:" + rows.upperEndpoint());
         }
 
         return retVal;
@@ -444,78 +363,181 @@ class PageRowColumnsProcessor {
     }
 
     /**
-     * @param texts
-     * @return
+     * @return column trap-ranges of each row, ordered by row idx ASC
      */
-    private Map<Integer, List<Range<Float>>> getRowColumnRanges() {
-        Map<Integer, List<Range<Float>>> retVal = new HashMap<Integer, List<Range<Float>>>();
-        for (int idx = 0; idx < this.pageRowTrapRanges.size(); idx++) {
-            Range<Float> row = this.pageRowTrapRanges.get(idx);
-            TrapRangeBuilder rangesBuilder = new TrapRangeBuilder();
-
-            /*
-             * for (TextPosition ep : texts) { stdout.println("X:" + ep.getX() + "  Xwid: "
-             * + ep.getWidth() + "  Y:" + ep.getY() + "  Yhgt:" + ep.getHeight() + "  Str: "
-             * + ep.getUnicode()); stdout.println("endx: " + ep.getEndX() + " xscale:" +
-             * ep.getXScale()); // stdout.println(ep.toString()); }
-             */
-
-            for (TextPosition text : this.pageContent) {
-                Range<Float> rangeY = Range.closed(text.getY(), text.getY() + text.getHeight());
-                if (row.encloses(rangeY)) {
-                    Range<Float> rangeX = Range.closed(text.getX(), text.getX() + text.getWidth());
+    private List<List<Range<Float>>> getRowColumnRanges() {
+        return RowTasks.map(pageRowTrapRanges.size(), parallel, new RowTasks.RowFunction<List<Range<Float>>>() {
+            @Override
+            public List<Range<Float>> apply(int rowIdx) {
+                Range<Float> row = pageRowTrapRanges.get(rowIdx);
+                TrapRangeBuilder rangesBuilder = new TrapRangeBuilder();
+                deadline.check();
+                for (int text : pageIndex.inYBand(row)) {
+                    Range<Float> rangeX = Range.closed(pageIndex.getMinX(text), pageIndex.getMaxX(text));
                     rangesBuilder.addRange(rangeX);
                 }
+                return rangesBuilder.build();
             }
-            retVal.put(idx, rangesBuilder.build());
-        }
-
-        return retVal;
+        });
     }
 
 }
 
 class PageProcessor {
+    // lines of a repeated text whose tops are this close share a fingerprint
+    private static final float BOILERPLATE_Y_QUANTUM = 4;
+    // characters joining the digit runs of one number, like 1,200.00
+    private static final String NUMBER_SEPARATORS = ".,:/-";
+    private static final int PAGE_NUMBER_MAX_DIGITS = 4;
     private PDDocument document;
     private final Multimap<Integer, Integer> pageNExceptedLinesMap;
+    private final ExtractionDeadline deadline;
+    private int parallelGlyphThreshold = Integer.MAX_VALUE;
+    // fingerprints of the lines to avoid, null if none
+    private Set<Long> boilerplate;
 
-    public PageProcessor(PDDocument document, Multimap<Integer, Integer> pageNExceptedLinesMap) {
+    /**
+     * @param document
+     * @param pageNExceptedLinesMap avoided line idx-s for each page, -1 for all
+     * pages. Null when pages are only parsed.
+     * @param deadline
+     */
+    public PageProcessor(PDDocument document, Multimap<Integer, Integer> pageNExceptedLinesMap,
+            ExtractionDeadline deadline) {
         this.document = document;
         this.pageNExceptedLinesMap = pageNExceptedLinesMap;
+        this.deadline = deadline;
+    }
+
+    /**
+     * @param parallelGlyphThreshold see
+     * {@link ExtractionOptions.Builder#setParallelGlyphThreshold(int)}
+     * @return
+     */
+    public PageProcessor setParallelGlyphThreshold(int parallelGlyphThreshold) {
+        this.parallelGlyphThreshold = parallelGlyphThreshold;
+        return this;
     }
 
-    public void processPage(int pageId, Multimap<Integer, Range<Float>> pageIdNLineRangesMap,
-            Multimap<Integer, TextPosition> pageIdNTextsMap) throws IOException {
+    /**
+     * @param boilerplate fingerprints of the lines repeated on many pages,
+     * see {@link #getLineFingerprints(int, PageModel)}, removed with the
+     * excepted lines. Null to keep them.
+     * @return
+     */
+    public PageProcessor setBoilerplate(Set<Long> boilerplate) {
+        this.boilerplate = boilerplate;
+        return this;
+    }
 
-        List<TextPosition> texts = extractTextPositionsInPage(pageId);// sorted by .getY() ASC
+    /**
+     * Collect the glyphs and lines of a page, independently of any option
+     * but the duplicate tolerance
+     *
+     * @param pageId
+     * @param duplicateTolerance see
+     * {@link ExtractionOptions.Builder#setDuplicateTolerance(float)}
+     * @return
+     * @throws IOException
+     */
+    public PageModel parsePage(int pageId, float duplicateTolerance) throws IOException {
+        TextPositionExtractor extractor = new TextPositionExtractor(document, pageId, deadline, duplicateTolerance);
+        List<TextPosition> texts = extractor.extract();// sorted by .getY() ASC
+        PageGlyphIndex pageIndex = new PageGlyphIndex(texts);
         // extract line ranges
-        List<Range<Float>> lineRanges = getLineRangesWithoutExceptedLines(pageId, texts);
-        // extract column ranges
+        List<Range<Float>> lineRanges = getLineRanges(pageIndex);
 
-        PageRowColumnsProcessor pagerowcolumns = new PageRowColumnsProcessor(texts,
-                        lineRanges);
-        List<Pair<Integer, Integer>> tablepos = pagerowcolumns.getTableRows();
-        List<Range<Float>> detectedLineRanges = applyTablePos(lineRanges, tablepos);
+        LineCatcher test = new LineCatcher(document.getPage(pageId));
+        test.setDeadline(deadline);
+        test.processPage(document.getPage(pageId));
+        return new PageModel(pageIndex, lineRanges, duplicateTolerance, extractor.getDuplicateCount());
+    }
 
-        //List<TextPosition> textsByLineRanges = pickTextsByLineRanges(lineRanges, texts);
-        List<TextPosition> textsByLineRanges = pickTextsByLineRanges(detectedLineRanges, texts);
+    /**
+     * Collect the glyphs of a page only, for a {@link LayoutSpec}: lines are
+     * neither built nor caught
+     *
+     * @param pageId
+     * @param duplicateTolerance
+     * @return a page model without line ranges
+     * @throws IOException
+     */
+    public PageModel collectGlyphs(int pageId, float duplicateTolerance) throws IOException {
+        TextPositionExtractor extractor = new TextPositionExtractor(document, pageId, deadline, duplicateTolerance);
+        PageGlyphIndex pageIndex = new PageGlyphIndex(extractor.extract());
+        return new PageModel(pageIndex, new ArrayList<Range<Float>>(), duplicateTolerance,
+                extractor.getDuplicateCount());
+    }
 
-        pageIdNLineRangesMap.putAll(pageId, detectedLineRanges);
-        pageIdNTextsMap.putAll(pageId, textsByLineRanges);
+    /**
+     * Keep the texts enclosed by the region only
+     *
+     * @param pageModel
+     * @param xBand
+     * @param yBand
+     * @return
+     */
+    public PageModel cropPage(PageModel pageModel, Range<Float> xBand, Range<Float> yBand) {
+        PageGlyphIndex pageIndex = new PageGlyphIndex(pageModel.getPageIndex(),
+                pageModel.getPageIndex().inRect(xBand, yBand));
+        return new PageModel(pageIndex, getLineRanges(pageIndex), pageModel.getDuplicateTolerance(),
+                pageModel.getDuplicateCount());
     }
 
-    private List<TextPosition> extractTextPositionsInPage(int pageId) throws IOException {
-        TextPositionExtractor extractor = new TextPositionExtractor(document, pageId);
-        return extractor.extract();
+    /**
+     * Fingerprint the lines of a page left by the excepted lines, see
+     * {@link #setBoilerplate(Set)}
+     *
+     * @param pageId
+     * @param pageModel
+     * @return fingerprint of each line
+     */
+    public long[] getLineFingerprints(int pageId, PageModel pageModel) {
+        List<Range<Float>> lineRanges = removeExceptedLines(pageId, pageModel.getLineRanges());
+        long[] retVal = new long[lineRanges.size()];
+        for (int idx = 0; idx < retVal.length; idx++) {
+            deadline.check();
+            retVal[idx] = getFingerprint(pageModel.getPageIndex(), lineRanges.get(idx));
+        }
+        return retVal;
+    }
+
+    /**
+     * Detect the table rows of a page
+     *
+     * @param pageId
+     * @param pageModel
+     * @return null if the page has no table content
+     */
+    public TablePageModel processPage(int pageId, PageModel pageModel) {
+
+        PageGlyphIndex pageIndex = pageModel.getPageIndex();
+        List<Range<Float>> lineRanges = removeExceptedLines(pageId, pageModel.getLineRanges());
+        if (boilerplate != null) {
+            lineRanges = removeBoilerplate(pageIndex, lineRanges);
+        }
+        // extract column ranges
+
+        PageRowColumnsProcessor pagerowcolumns = new PageRowColumnsProcessor(pageIndex,
+                        lineRanges, deadline, pageIndex.size() >= parallelGlyphThreshold);
+        List<Range<Integer>> tablepos = pagerowcolumns.getTableRows();
+        List<Range<Float>> detectedLineRanges = applyTablePos(lineRanges, tablepos);
+
+        // every line encloses at least one text: the page has table content
+        // as soon as one of its lines is detected
+        if (detectedLineRanges.isEmpty()) {
+            return null;
+        }
+        return new TablePageModel(pageId, pageIndex, detectedLineRanges);
     }
 
     List<Range<Float>> applyTablePos(List<Range<Float>> lineRanges, 
-                            List<Pair<Integer, Integer>> tablepos) {
+                            List<Range<Integer>> tablepos) {
 
         List<Range<Float>> retVal = new ArrayList<Range<Float>>();
-        for (Pair<Integer, Integer> pair: tablepos) {
-            int start = pair.getKey();
-            int end = pair.getValue();
+        for (Range<Integer> rows: tablepos) {
+            int start = rows.lowerEndpoint();
+            int end = rows.upperEndpoint();
             for(int idx = start; idx <= end; idx++) {
                 retVal.add(lineRanges.get(idx));
             }
@@ -523,52 +545,84 @@ class PageProcessor {
         return retVal;
     }
 
+    private List<Range<Float>> getLineRanges(PageGlyphIndex pageIndex) {
+        TrapRangeBuilder lineTrapRangeBuilder = new TrapRangeBuilder();
+        for (int text = 0; text < pageIndex.size(); text++) {
+            deadline.check();
+            Range<Float> lineRange = Range.closed(pageIndex.getMinY(text), pageIndex.getMaxY(text));
+            // add to builder
+            lineTrapRangeBuilder.addRange(lineRange);
+        }
+        return lineTrapRangeBuilder.build();
+    }
+
+    private List<Range<Float>> removeBoilerplate(PageGlyphIndex pageIndex, List<Range<Float>> lineTrapRanges) {
+        List<Range<Float>> retVal = new ArrayList<>();
+        for (Range<Float> lineRange : lineTrapRanges) {
+            if (!boilerplate.contains(getFingerprint(pageIndex, lineRange))) {
+                retVal.add(lineRange);
+            }
+        }
+        return retVal;
+    }
+
     /**
-     *
-     * Remove all texts in excepted lines
-     *
-     * TexPositions are sorted by .getY() ASC
-     *
-     * @param lineRanges
-     * @param textPositions
-     * @return
+     * @param pageIndex
+     * @param lineRange
+     * @return hash of the text of the line, whitespaces skipped and page
+     * numbers masked, see {@link #isPageNumber(String, int, int)}, and of its
+     * top quantized
      */
-    private List<TextPosition> pickTextsByLineRanges(List<Range<Float>> lineRanges, List<TextPosition> textPositions) {
-        // textPosition is sorted by it Y value asc.
-        List<TextPosition> retVal = new ArrayList<>();
-        int idxText = 0;
-        int lineIdx = 0;
-        while (idxText < textPositions.size() && lineIdx < lineRanges.size()) {
-
-            TextPosition textPosition = textPositions.get(idxText);
-
-            Range<Float> textYRange = Range.closed(textPosition.getY(), textPosition.getY() + textPosition.getHeight());
-
-            Range<Float> lineYRange = lineRanges.get(lineIdx);
-            if (lineYRange.encloses(textYRange)) {
-                retVal.add(textPosition);
-                idxText++;
-            } else if (lineYRange.upperEndpoint() < textYRange.lowerEndpoint()) {
-                lineIdx++;
+    private static long getFingerprint(PageGlyphIndex pageIndex, Range<Float> lineRange) {
+        String text = pageIndex.getText(pageIndex.sortByX(pageIndex.inYBand(lineRange)));
+        int textHash = 0;
+        int idx = 0;
+        while (idx < text.length()) {
+            char c = text.charAt(idx);
+            if (!Character.isDigit(c)) {
+                if (!Character.isWhitespace(c)) {
+                    textHash = 31 * textHash + c;
+                }
+                idx++;
+                continue;
+            }
+            int end = idx;
+            while (end < text.length() && Character.isDigit(text.charAt(end))) {
+                end++;
+            }
+            if (isPageNumber(text, idx, end)) {
+                textHash = 31 * textHash + '#';
             } else {
-                // not in chosen lines. Skip this textPosition.
-                idxText++;
+                for (; idx < end; idx++) {
+                    textHash = 31 * textHash + text.charAt(idx);
+                }
             }
+            idx = end;
         }
-        //
-        return retVal;
+        int top = Math.round(lineRange.lowerEndpoint() / BOILERPLATE_Y_QUANTUM);
+        return ((long) textHash << 32) | (top & 0xffffffffL);
     }
 
-    private List<Range<Float>> getLineRangesWithoutExceptedLines(int pageId, List<TextPosition> pageContent) {
-        TrapRangeBuilder lineTrapRangeBuilder = new TrapRangeBuilder();
-        for (TextPosition textPosition : pageContent) {
-            Range<Float> lineRange = Range.closed(textPosition.getY(), textPosition.getY() + textPosition.getHeight());
-            // add to builder
-            lineTrapRangeBuilder.addRange(lineRange);
+    /**
+     * A run of digits is masked only when it is a number of its own, like 3
+     * and 40 in "Page 3 of 40": digits of amounts, dates or codes such as
+     * 125.00 or 2024-01-15 are data and are kept.
+     *
+     * @param text
+     * @param start first digit of the run
+     * @param end after the last digit of the run
+     * @return
+     */
+    private static boolean isPageNumber(String text, int start, int end) {
+        if (end - start > PAGE_NUMBER_MAX_DIGITS) {
+            return false;
         }
-        List<Range<Float>> lineTrapRanges = lineTrapRangeBuilder.build();
-        List<Range<Float>> retVal = removeExceptedLines(pageId, lineTrapRanges);
-        return retVal;
+        if (start >= 2 && NUMBER_SEPARATORS.indexOf(text.charAt(start - 1)) >= 0
+                && Character.isDigit(text.charAt(start - 2))) {
+            return false;
+        }
+        return !(end + 1 < text.length() && NUMBER_SEPARATORS.indexOf(text.charAt(end)) >= 0
+                && Character.isDigit(text.charAt(end + 1)));
     }
 
     private List<Range<Float>> removeExceptedLines(int pageIdx, List<Range<Float>> lineTrapRanges) {
@@ -584,8 +638,9 @@ class PageProcessor {
     }
 
     private boolean isExceptedLine(int pageIdx, int lineIdx) {
-        boolean retVal = this.pageNExceptedLinesMap.containsEntry(pageIdx, lineIdx)
-                || this.pageNExceptedLinesMap.containsEntry(-1, lineIdx);
+        boolean retVal = this.pageNExceptedLinesMap != null
+                && (this.pageNExceptedLinesMap.containsEntry(pageIdx, lineIdx)
+                || this.pageNExceptedLinesMap.containsEntry(-1, lineIdx));
         return retVal;
     }
 }
@@ -596,32 +651,77 @@ class PageProcessor {
 
 // --------------------------------------------------------------------------
 // Inner class
+/**
+ * Collects the glyphs of one page as PDFTextStripper positions them, with its
+ * diacritic handling, but skips the layout: no sort by position, no word or
+ * paragraph detection, no text is written. Overlapping copies of a glyph are
+ * dropped by a {@link DuplicateGlyphFilter}.
+ */
 class TextPositionExtractor extends PDFTextStripper {
 
     private final List<TextPosition> textPositions = new ArrayList<>();
     private final int pageId;
+    private final ExtractionDeadline deadline;
+    private final DuplicateGlyphFilter duplicateGlyphFilter;
     private final Logger logger = LoggerFactory.getLogger(TextPositionExtractor.class);
 
-    TextPositionExtractor(PDDocument document, int pageId) throws IOException {
+    /**
+     * @param document
+     * @param pageId
+     * @param deadline
+     * @param duplicateTolerance see
+     * {@link ExtractionOptions.Builder#setDuplicateTolerance(float)}
+     * @throws IOException
+     */
+    TextPositionExtractor(PDDocument document, int pageId, ExtractionDeadline deadline,
+            float duplicateTolerance) throws IOException {
         super();
-        super.setSortByPosition(true);
+        // page numbers are only counted by writeText(), which walks the whole
+        // page tree: the page is processed directly with page number 0
+        super.setStartPage(0);
+        // replaced by the filter, in linear time and counted
+        super.setSuppressDuplicateOverlappingText(false);
         super.document = document;
         this.pageId = pageId;
+        this.deadline = deadline;
+        this.duplicateGlyphFilter = new DuplicateGlyphFilter(duplicateTolerance);
+    }
+
+    int getDuplicateCount() {
+        return duplicateGlyphFilter.getDuplicateCount();
     }
 
     @Override
-    protected void writeString(String string, List<TextPosition> textPositions) throws IOException {
-        this.textPositions.addAll(textPositions);
+    protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+        // malformed content streams can run for minutes without showing any glyph
+        deadline.check();
+        super.processOperator(operator, operands);
+    }
+
+    @Override
+    protected void processTextPosition(TextPosition text) {
+        deadline.check();
+        if (duplicateGlyphFilter.isDuplicate(text)) {
+            return;
+        }
+        super.processTextPosition(text);
+    }
+
+    @Override
+    protected void writePage() throws IOException {
+        for (List<TextPosition> article : getCharactersByArticle()) {
+            textPositions.addAll(article);
+        }
     }
 
     /**
-     * and order by textPosition.getY() ASC
+     * and order by textPosition.getY() ASC, then textPosition.getX() ASC
      *
      * @return
      * @throws IOException
      */
     public List<TextPosition> extract() throws IOException {
-        this.stripPage(pageId);
+        processPage(document.getPage(pageId));
 
         // sort
         Collections.sort(textPositions, new Comparator<TextPosition>() {
@@ -632,24 +732,17 @@ class TextPositionExtractor extends PDFTextStripper {
                     retVal = -1;
                 } else if (o1.getY() > o2.getY()) {
                     retVal = 1;
+                } else if (o1.getX() < o2.getX()) {
+                    retVal = -1;
+                } else if (o1.getX() > o2.getX()) {
+                    retVal = 1;
                 }
                 return retVal;
-
             }
         });
         return this.textPositions;
     }
 
-    private void stripPage(int pageId) throws IOException {
-        this.setStartPage(pageId + 1);
-        this.setEndPage(pageId + 1);
-        try (Writer writer = new OutputStreamWriter(new ByteArrayOutputStream())) {
-            writeText(document, writer);
-            // the above function shall call the overwritten writeString(),
-            // so that we can get all the TextPosition in this page.
-        }
-    }
-
 }
 
 
@@ -0,0 +1,409 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import com.google.common.collect.Range;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.pdfbox.text.TextPosition;
+
+/**
+ * Glyph boxes of a page packed in primitive arrays, built once per page and
+ * queried by every later stage. Glyph ids are positions in the list the index
+ * was built from, which is ordered by Y ASC. A second permutation orders the
+ * glyphs by X so that bands on both axes are found by binary search: a query
+ * costs O(log n + glyphs in the band) instead of a scan of the page.
+ * <p>
+ * Like the rest of the extractor, a glyph is inside a band only when the band
+ * encloses its whole box.
+ */
+public class PageGlyphIndex {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private static final int[] EMPTY = new int[0];
+
+    private final float[] minXs;
+    private final float[] maxXs;
+    private final float[] minYs;
+    private final float[] maxYs;
+    // unicode of glyph i is text[textOffsets[i] .. textOffsets[i + 1])
+    private final char[] text;
+    private final int[] textOffsets;
+    // glyph ids ordered by minX ASC, ties keep the Y order
+    private final int[] idsByX;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    /**
+     * @param texts glyphs ordered by .getY() ASC
+     */
+    PageGlyphIndex(List<TextPosition> texts) {
+        int size = texts.size();
+        this.minXs = new float[size];
+        this.maxXs = new float[size];
+        this.minYs = new float[size];
+        this.maxYs = new float[size];
+        this.textOffsets = new int[size + 1];
+        StringBuilder textBuilder = new StringBuilder(size);
+        for (int idx = 0; idx < size; idx++) {
+            TextPosition textPosition = texts.get(idx);
+            minXs[idx] = textPosition.getX();
+            maxXs[idx] = textPosition.getX() + textPosition.getWidth();
+            minYs[idx] = textPosition.getY();
+            maxYs[idx] = textPosition.getY() + textPosition.getHeight();
+            textBuilder.append(textPosition.getUnicode());
+            textOffsets[idx + 1] = textBuilder.length();
+        }
+        this.text = textBuilder.toString().toCharArray();
+        int[] glyphIds = new int[size];
+        for (int idx = 0; idx < size; idx++) {
+            glyphIds[idx] = idx;
+        }
+        this.idsByX = sortByX(glyphIds);
+    }
+
+    /**
+     * Index of a subset of the glyphs of another index
+     *
+     * @param source
+     * @param glyphIds glyph ids of source, ordered by Y ASC
+     */
+    PageGlyphIndex(PageGlyphIndex source, int[] glyphIds) {
+        int size = glyphIds.length;
+        this.minXs = new float[size];
+        this.maxXs = new float[size];
+        this.minYs = new float[size];
+        this.maxYs = new float[size];
+        this.textOffsets = new int[size + 1];
+        StringBuilder textBuilder = new StringBuilder(size);
+        for (int idx = 0; idx < size; idx++) {
+            int glyphId = glyphIds[idx];
+            minXs[idx] = source.minXs[glyphId];
+            maxXs[idx] = source.maxXs[glyphId];
+            minYs[idx] = source.minYs[glyphId];
+            maxYs[idx] = source.maxYs[glyphId];
+            source.appendUnicode(textBuilder, glyphId);
+            textOffsets[idx + 1] = textBuilder.length();
+        }
+        this.text = textBuilder.toString().toCharArray();
+        int[] sourceIds = new int[size];
+        for (int idx = 0; idx < size; idx++) {
+            sourceIds[idx] = idx;
+        }
+        this.idsByX = sortByX(sourceIds);
+    }
+
+    private PageGlyphIndex(float[] minXs, float[] maxXs, float[] minYs, float[] maxYs, char[] text, int[] textOffsets) {
+        this.minXs = minXs;
+        this.maxXs = maxXs;
+        this.minYs = minYs;
+        this.maxYs = maxYs;
+        this.text = text;
+        this.textOffsets = textOffsets;
+        int[] glyphIds = new int[minXs.length];
+        for (int idx = 0; idx < glyphIds.length; idx++) {
+            glyphIds[idx] = idx;
+        }
+        this.idsByX = sortByX(glyphIds);
+    }
+
+    /**
+     * Read an index written by {@link #write(DataOutput)}
+     *
+     * @param input
+     * @return
+     * @throws IOException
+     */
+    static PageGlyphIndex read(DataInput input) throws IOException {
+        int size = input.readInt();
+        float[] minXs = readFloats(input, size);
+        float[] maxXs = readFloats(input, size);
+        float[] minYs = readFloats(input, size);
+        float[] maxYs = readFloats(input, size);
+        int[] textOffsets = new int[size + 1];
+        for (int idx = 0; idx <= size; idx++) {
+            textOffsets[idx] = input.readInt();
+        }
+        char[] text = new char[textOffsets[size]];
+        for (int idx = 0; idx < text.length; idx++) {
+            text[idx] = input.readChar();
+        }
+        return new PageGlyphIndex(minXs, maxXs, minYs, maxYs, text, textOffsets);
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    public int size() {
+        return minXs.length;
+    }
+
+    public float getMinX(int glyphId) {
+        return minXs[glyphId];
+    }
+
+    public float getMaxX(int glyphId) {
+        return maxXs[glyphId];
+    }
+
+    public float getMinY(int glyphId) {
+        return minYs[glyphId];
+    }
+
+    public float getMaxY(int glyphId) {
+        return maxYs[glyphId];
+    }
+
+    public String getUnicode(int glyphId) {
+        return new String(text, textOffsets[glyphId], textOffsets[glyphId + 1] - textOffsets[glyphId]);
+    }
+
+    /**
+     * Append the unicode of a glyph without creating a String
+     *
+     * @param builder
+     * @param glyphId
+     */
+    public void appendUnicode(StringBuilder builder, int glyphId) {
+        builder.append(text, textOffsets[glyphId], textOffsets[glyphId + 1] - textOffsets[glyphId]);
+    }
+
+    /**
+     * @return approximate heap used by this index, in bytes
+     */
+    public long getMemoryFootprint() {
+        // 4 float arrays, 2 int arrays, the char array and their headers
+        return 6L * 4 * minXs.length + 2L * text.length + 7 * 16;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * @param yBand
+     * @return ids of the glyphs vertically inside the band, ordered by Y ASC
+     */
+    public int[] inYBand(Range<Float> yBand) {
+        IntBuffer retVal = new IntBuffer();
+        float lower = yBand.lowerEndpoint();
+        float upper = yBand.upperEndpoint();
+        for (int glyphId = lowerBound(minYs, null, lower); glyphId < minYs.length && minYs[glyphId] <= upper; glyphId++) {
+            if (encloses(lower, upper, minYs[glyphId], maxYs[glyphId])) {
+                retVal.add(glyphId);
+            }
+        }
+        return retVal.toArray();
+    }
+
+    /**
+     * @param yBands bands ordered by Y ASC, not overlapping
+     * @return ids of the glyphs inside any of the bands, ordered by Y ASC
+     */
+    public int[] inYBands(List<Range<Float>> yBands) {
+        IntBuffer retVal = new IntBuffer();
+        for (Range<Float> yBand : yBands) {
+            retVal.addAll(inYBand(yBand));
+        }
+        return retVal.toArray();
+    }
+
+    /**
+     * @param xBand
+     * @return ids of the glyphs horizontally inside the band, ordered by X ASC
+     */
+    public int[] inXBand(Range<Float> xBand) {
+        IntBuffer retVal = new IntBuffer();
+        float lower = xBand.lowerEndpoint();
+        float upper = xBand.upperEndpoint();
+        for (int idx = lowerBound(minXs, idsByX, lower); idx < idsByX.length && minXs[idsByX[idx]] <= upper; idx++) {
+            int glyphId = idsByX[idx];
+            if (encloses(lower, upper, minXs[glyphId], maxXs[glyphId])) {
+                retVal.add(glyphId);
+            }
+        }
+        return retVal.toArray();
+    }
+
+    /**
+     * @param xBand
+     * @param yBand
+     * @return ids of the glyphs inside the rectangle, ordered by Y ASC
+     */
+    public int[] inRect(Range<Float> xBand, Range<Float> yBand) {
+        int[] inYBand = inYBand(yBand);
+        IntBuffer retVal = new IntBuffer();
+        float lower = xBand.lowerEndpoint();
+        float upper = xBand.upperEndpoint();
+        for (int glyphId : inYBand) {
+            if (encloses(lower, upper, minXs[glyphId], maxXs[glyphId])) {
+                retVal.add(glyphId);
+            }
+        }
+        return retVal.toArray();
+    }
+
+    /**
+     * Order glyph ids by X ASC, ties keep the given order
+     *
+     * @param glyphIds
+     * @return
+     */
+    public int[] sortByX(int[] glyphIds) {
+        // X key in the high bits, position in the low bits: ties keep the
+        // given order without a boxed comparator
+        long[] keys = new long[glyphIds.length];
+        for (int idx = 0; idx < glyphIds.length; idx++) {
+            keys[idx] = ((long) getSortKey(minXs[glyphIds[idx]]) << 32) | idx;
+        }
+        Arrays.sort(keys);
+        int[] retVal = new int[glyphIds.length];
+        for (int idx = 0; idx < keys.length; idx++) {
+            retVal[idx] = glyphIds[(int) keys[idx]];
+        }
+        return retVal;
+    }
+
+    /**
+     * @param glyphIds faster when ordered by X ASC
+     * @param lowers lower endpoint of each column, ASC
+     * @param uppers upper endpoint of each column, columns don't overlap
+     * @return for each given glyph, idx of the column enclosing it, -1 if
+     * none
+     */
+    int[] classifyByX(int[] glyphIds, float[] lowers, float[] uppers) {
+        return GlyphClassifier.get().classify(minXs, maxXs, glyphIds, lowers, uppers);
+    }
+
+    /**
+     * @param lowers lower endpoint of each row, ASC
+     * @param uppers upper endpoint of each row, rows don't overlap
+     * @return for each glyph id, idx of the row enclosing the glyph, -1 if
+     * none
+     */
+    int[] classifyByY(float[] lowers, float[] uppers) {
+        return GlyphClassifier.get().classifyAll(minYs, maxYs, lowers, uppers);
+    }
+
+    /**
+     * @param glyphIds
+     * @return unicode of the glyphs concatenated in the given order
+     */
+    public String getText(int[] glyphIds) {
+        StringBuilder retVal = new StringBuilder();
+        for (int glyphId : glyphIds) {
+            appendUnicode(retVal, glyphId);
+        }
+        return retVal.toString();
+    }
+
+    /**
+     * Write the glyphs in a compact binary form, the X order is rebuilt when
+     * read
+     *
+     * @param output
+     * @throws IOException
+     */
+    void write(DataOutput output) throws IOException {
+        output.writeInt(minXs.length);
+        writeFloats(output, minXs);
+        writeFloats(output, maxXs);
+        writeFloats(output, minYs);
+        writeFloats(output, maxYs);
+        for (int textOffset : textOffsets) {
+            output.writeInt(textOffset);
+        }
+        for (char c : text) {
+            output.writeChar(c);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private static void writeFloats(DataOutput output, float[] values) throws IOException {
+        for (float value : values) {
+            output.writeFloat(value);
+        }
+    }
+
+    private static float[] readFloats(DataInput input, int size) throws IOException {
+        float[] retVal = new float[size];
+        for (int idx = 0; idx < size; idx++) {
+            retVal[idx] = input.readFloat();
+        }
+        return retVal;
+    }
+
+    /**
+     * @param x
+     * @return int ordered as the float, -0 and 0 being the same key
+     */
+    private static int getSortKey(float x) {
+        int bits = Float.floatToIntBits(x + 0f);
+        return bits ^ ((bits >> 31) & 0x7fffffff);
+    }
+
+    /**
+     * @param values sorted ASC, directly or through order
+     * @param order permutation of values, null for the identity
+     * @param key
+     * @return first position whose value is not less than key
+     */
+    private static int lowerBound(float[] values, int[] order, float key) {
+        int low = 0;
+        int high = order == null ? values.length : order.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            float value = order == null ? values[middle] : values[order[middle]];
+            if (value < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Same result as Range.closed(lower, upper).encloses(Range.closed(min,
+     * max))
+     */
+    static boolean encloses(float lower, float upper, float min, float max) {
+        return Float.compare(lower, min) <= 0 && Float.compare(max, upper) <= 0;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Inner class
+    static class IntBuffer {
+
+        private int[] values = EMPTY;
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.max(16, size * 2));
+            }
+            values[size++] = value;
+        }
+
+        void addAll(int[] newValues) {
+            if (size + newValues.length > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + newValues.length, size * 2));
+            }
+            System.arraycopy(newValues, 0, values, size, newValues.length);
+            size += newValues.length;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return size == 0 ? EMPTY : Arrays.copyOf(values, size);
+        }
+    }
+}
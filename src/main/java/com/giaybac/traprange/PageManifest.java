@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import com.google.common.collect.Range;
+import com.google.common.hash.HashCode;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * What an {@link IncrementalExtractor} run detected on each page of a
+ * document, keyed by the content hash of the page, and the columns computed
+ * from the table pages. It's stored in a local file:
+ * <ul>
+ * <li>magic and format version</li>
+ * <li>options which change the detection of a page</li>
+ * <li>per page: idx, content hash, duplicate glyph count, prescreen skip
+ * reason if any, and the rows and glyphs of its table if any</li>
+ * <li>column trap-ranges and the table pages they were computed from</li>
+ * </ul>
+ * A manifest written by another version of the format is ignored, the pages
+ * are then processed again.
+ */
+class PageManifest {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private static final int MAGIC = 0x54524d46;// TRMF
+    // 2: page hashes tell which object a back reference points to
+    static final int VERSION = 2;
+
+    private final byte[] pageOptions;
+    // ordered by page idx ASC
+    private final Map<Integer, Entry> entries = new TreeMap<>();
+    // table pages the columns were computed from, null if there are no columns
+    private List<Integer> columnPages;
+    private List<Range<Float>> columnRanges;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    /**
+     * @param pageOptions see {@link ExtractionOptions#writePageOptions}
+     */
+    PageManifest(byte[] pageOptions) {
+        this.pageOptions = pageOptions;
+    }
+
+    /**
+     * @param file
+     * @return null if the manifest was written by another version
+     * @throws IOException if the file isn't a manifest
+     */
+    static PageManifest read(File file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Invalid manifest: " + file);
+            }
+            if (input.readInt() != VERSION) {
+                return null;
+            }
+            PageManifest retVal = new PageManifest(readBytes(input));
+            int entryCount = input.readInt();
+            for (int idx = 0; idx < entryCount; idx++) {
+                int pageIdx = input.readInt();
+                HashCode hash = HashCode.fromBytes(readBytes(input));
+                int duplicateCount = input.readInt();
+                SkipReason skipReason = input.readBoolean() ? SkipReason.valueOf(input.readUTF()) : null;
+                TablePageModel tablePage = input.readBoolean() ? TablePageModel.read(input) : null;
+                retVal.entries.put(pageIdx, new Entry(hash, duplicateCount, skipReason, tablePage));
+            }
+            if (input.readBoolean()) {
+                int pageCount = input.readInt();
+                List<Integer> columnPages = new ArrayList<>(pageCount);
+                for (int idx = 0; idx < pageCount; idx++) {
+                    columnPages.add(input.readInt());
+                }
+                int columnCount = input.readInt();
+                List<Range<Float>> columnRanges = new ArrayList<>(columnCount);
+                for (int idx = 0; idx < columnCount; idx++) {
+                    columnRanges.add(TablePageModel.readRange(input));
+                }
+                retVal.setColumns(columnPages, columnRanges);
+            }
+            return retVal;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    /**
+     * @param pageOptions
+     * @return true if the pages were detected with these options
+     */
+    boolean hasPageOptions(byte[] pageOptions) {
+        return Arrays.equals(this.pageOptions, pageOptions);
+    }
+
+    /**
+     * @param pageIdx
+     * @return null if the page wasn't stored
+     */
+    Entry getEntry(int pageIdx) {
+        return entries.get(pageIdx);
+    }
+
+    void putEntry(int pageIdx, Entry entry) {
+        entries.put(pageIdx, entry);
+    }
+
+    List<Integer> getColumnPages() {
+        return columnPages;
+    }
+
+    List<Range<Float>> getColumnRanges() {
+        return columnRanges;
+    }
+
+    /**
+     * @param columnPages idx of the table pages the columns were computed from
+     * @param columnRanges
+     */
+    void setColumns(List<Integer> columnPages, List<Range<Float>> columnRanges) {
+        this.columnPages = columnPages;
+        this.columnRanges = columnRanges;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * Replace the file at once, a failed run leaves the previous manifest
+     *
+     * @param file
+     * @throws IOException
+     */
+    void write(File file) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            writeBytes(output, pageOptions);
+            output.writeInt(entries.size());
+            for (Map.Entry<Integer, Entry> pageEntry : entries.entrySet()) {
+                Entry entry = pageEntry.getValue();
+                output.writeInt(pageEntry.getKey());
+                writeBytes(output, entry.hash.asBytes());
+                output.writeInt(entry.duplicateCount);
+                output.writeBoolean(entry.skipReason != null);
+                if (entry.skipReason != null) {
+                    output.writeUTF(entry.skipReason.name());
+                }
+                output.writeBoolean(entry.tablePage != null);
+                if (entry.tablePage != null) {
+                    entry.tablePage.compact().write(output);
+                }
+            }
+            output.writeBoolean(columnPages != null);
+            if (columnPages != null) {
+                output.writeInt(columnPages.size());
+                for (int pageIdx : columnPages) {
+                    output.writeInt(pageIdx);
+                }
+                output.writeInt(columnRanges.size());
+                for (Range<Float> columnRange : columnRanges) {
+                    TablePageModel.writeRange(output, columnRange);
+                }
+            }
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream input) throws IOException {
+        byte[] retVal = new byte[input.readInt()];
+        input.readFully(retVal);
+        return retVal;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Inner class
+    /**
+     * Detection result of one page
+     */
+    static class Entry {
+
+        private final HashCode hash;
+        private final int duplicateCount;
+        // null if the page wasn't skipped by the prescreen
+        private final SkipReason skipReason;
+        // null if the page has no table content
+        private final TablePageModel tablePage;
+
+        Entry(HashCode hash, int duplicateCount, SkipReason skipReason, TablePageModel tablePage) {
+            this.hash = hash;
+            this.duplicateCount = duplicateCount;
+            this.skipReason = skipReason;
+            this.tablePage = tablePage;
+        }
+
+        HashCode getHash() {
+            return hash;
+        }
+
+        int getDuplicateCount() {
+            return duplicateCount;
+        }
+
+        SkipReason getSkipReason() {
+            return skipReason;
+        }
+
+        TablePageModel getTablePage() {
+            return tablePage;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import com.google.common.collect.Range;
+import java.util.List;
+
+/**
+ * What is kept of a parsed page: its glyphs and all its line trap-ranges,
+ * before any option (excepted lines, region...) is applied. Only the
+ * duplicate tolerance is applied while parsing.
+ */
+class PageModel {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    // Range<Float> with its two cuts and boxed endpoints
+    private static final int LINE_RANGE_BYTES = 88;
+
+    private final PageGlyphIndex pageIndex;
+    // ordered by Y ASC
+    private final List<Range<Float>> lineRanges;
+    // the glyphs depend on it
+    private final float duplicateTolerance;
+    // dropped glyphs
+    private final int duplicateCount;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    PageModel(PageGlyphIndex pageIndex, List<Range<Float>> lineRanges, float duplicateTolerance,
+            int duplicateCount) {
+        this.pageIndex = pageIndex;
+        this.lineRanges = lineRanges;
+        this.duplicateTolerance = duplicateTolerance;
+        this.duplicateCount = duplicateCount;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    PageGlyphIndex getPageIndex() {
+        return pageIndex;
+    }
+
+    List<Range<Float>> getLineRanges() {
+        return lineRanges;
+    }
+
+    float getDuplicateTolerance() {
+        return duplicateTolerance;
+    }
+
+    int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    long getMemoryFootprint() {
+        return pageIndex.getMemoryFootprint() + (long) LINE_RANGE_BYTES * lineRanges.size();
+    }
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+
+/**
+ * Cheap look at the content stream of a page, before its glyphs are
+ * extracted. Operators are only tokenized: no font is loaded and no glyph is
+ * positioned.
+ * <p>
+ * The counts are upper bounds, so a page is only rejected when it can't give
+ * a table: each glyph takes at least one byte of a shown string, and a text
+ * showing operator can't spread over several lines as long as the text is
+ * neither rotated nor written vertically. A table needs two lines at least.
+ */
+class PagePrescreen {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private static final int MIN_TABLE_LINES = 2;
+
+    private int glyphCount = 0;
+    private int showTextCount = 0;
+    // rotated, skewed or vertical text: one operator may give several lines
+    private boolean freeLayout = false;
+    private final Set<COSBase> visitedForms = Collections.newSetFromMap(new IdentityHashMap<COSBase, Boolean>());
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    private PagePrescreen() {
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * @param page
+     * @return why the page can't contain a table, null if it may
+     * @throws IOException
+     */
+    static SkipReason prescreen(PDPage page) throws IOException {
+        PagePrescreen prescreen = new PagePrescreen();
+        int rotation = page.getRotation() % 180;
+        prescreen.freeLayout = rotation != 0;
+        // inherited from the page tree if needed
+        COSDictionary resources = page.getResources() == null ? null : page.getResources().getCOSObject();
+        for (COSStream contentStream : getContentStreams(page)) {
+            prescreen.scan(contentStream, resources);
+        }
+        return prescreen.getSkipReason();
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private SkipReason getSkipReason() {
+        if (glyphCount == 0) {
+            return SkipReason.NO_TEXT;
+        }
+        int maxLineCount = freeLayout ? glyphCount : Math.min(glyphCount, showTextCount);
+        if (maxLineCount < MIN_TABLE_LINES) {
+            return SkipReason.TOO_FEW_LINES;
+        }
+        return null;
+    }
+
+    private static List<COSStream> getContentStreams(PDPage page) {
+        List<COSStream> retVal = new ArrayList<>();
+        COSBase contents = page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+        if (contents instanceof COSStream) {
+            retVal.add((COSStream) contents);
+        } else if (contents instanceof COSArray) {
+            COSArray contentArray = (COSArray) contents;
+            for (int idx = 0; idx < contentArray.size(); idx++) {
+                COSBase contentStream = contentArray.getObject(idx);
+                if (contentStream instanceof COSStream) {
+                    retVal.add((COSStream) contentStream);
+                }
+            }
+        }
+        return retVal;
+    }
+
+    private void scan(COSStream contentStream, COSDictionary resources) throws IOException {
+        PDFStreamParser parser = new PDFStreamParser(new PDStream(contentStream));
+        List<COSBase> operands = new ArrayList<>();
+        Object token = parser.parseNextToken();
+        while (token != null) {
+            if (token instanceof Operator) {
+                processOperator(((Operator) token).getName(), operands, resources);
+                operands.clear();
+            } else if (token instanceof COSBase) {
+                operands.add((COSBase) token);
+            }
+            token = parser.parseNextToken();
+        }
+    }
+
+    private void processOperator(String name, List<COSBase> operands, COSDictionary resources) throws IOException {
+        switch (name) {
+            case "Tj":
+            case "'":
+            case "\"":
+                showText(operands.isEmpty() ? null : operands.get(operands.size() - 1));
+                break;
+            case "TJ":
+                if (!operands.isEmpty() && operands.get(0) instanceof COSArray) {
+                    int before = glyphCount;
+                    for (COSBase item : (COSArray) operands.get(0)) {
+                        if (item instanceof COSString) {
+                            glyphCount += ((COSString) item).getBytes().length;
+                        }
+                    }
+                    if (glyphCount > before) {
+                        showTextCount++;
+                    }
+                }
+                break;
+            case "cm":
+            case "Tm":
+                checkMatrix(operands);
+                break;
+            case "Tf":
+                if (!operands.isEmpty() && operands.get(0) instanceof COSName) {
+                    checkFont(resources, (COSName) operands.get(0));
+                }
+                break;
+            case "gs":
+                // a graphics state can change the font
+                checkExtGState(resources, operands.isEmpty() ? null : operands.get(0));
+                break;
+            case "Do":
+                if (!operands.isEmpty() && operands.get(0) instanceof COSName) {
+                    scanForm(resources, (COSName) operands.get(0));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void showText(COSBase operand) {
+        if (operand instanceof COSString && ((COSString) operand).getBytes().length > 0) {
+            glyphCount += ((COSString) operand).getBytes().length;
+            showTextCount++;
+        }
+    }
+
+    /**
+     * a b c d e f: text stays horizontal as long as b and c are 0
+     */
+    private void checkMatrix(List<? extends COSBase> operands) {
+        if (operands.size() < 6 || !(operands.get(1) instanceof COSNumber) || !(operands.get(2) instanceof COSNumber)) {
+            freeLayout = true;
+            return;
+        }
+        if (((COSNumber) operands.get(1)).floatValue() != 0 || ((COSNumber) operands.get(2)).floatValue() != 0) {
+            freeLayout = true;
+        }
+    }
+
+    private void checkFont(COSDictionary resources, COSName fontName) {
+        COSDictionary fonts = resources == null ? null : getDictionary(resources, COSName.FONT);
+        COSDictionary font = fonts == null ? null : getDictionary(fonts, fontName);
+        if (font == null) {
+            // unknown font, the stripper will tell
+            freeLayout = true;
+            return;
+        }
+        COSName subtype = font.getCOSName(COSName.SUBTYPE);
+        if (COSName.TYPE0.equals(subtype)) {
+            COSBase encoding = font.getDictionaryObject(COSName.ENCODING);
+            if (encoding instanceof COSName) {
+                if (((COSName) encoding).getName().endsWith("-V")) {
+                    freeLayout = true;
+                }
+            } else if (!(encoding instanceof COSStream) || ((COSStream) encoding).getInt(COSName.getPDFName("WMode"), 0) != 0) {
+                freeLayout = true;
+            }
+        } else if (COSName.TYPE3.equals(subtype)) {
+            COSBase fontMatrix = font.getDictionaryObject(COSName.FONT_MATRIX);
+            if (!(fontMatrix instanceof COSArray) || ((COSArray) fontMatrix).size() < 6) {
+                freeLayout = true;
+            } else {
+                checkMatrix(((COSArray) fontMatrix).toList());
+            }
+        }
+    }
+
+    private void checkExtGState(COSDictionary resources, COSBase name) {
+        COSDictionary extGStates = resources == null ? null : getDictionary(resources, COSName.EXT_G_STATE);
+        COSDictionary extGState = extGStates == null || !(name instanceof COSName)
+                ? null
+                : getDictionary(extGStates, (COSName) name);
+        if (extGState == null || extGState.containsKey(COSName.FONT)) {
+            freeLayout = true;
+        }
+    }
+
+    private void scanForm(COSDictionary resources, COSName xObjectName) throws IOException {
+        COSDictionary xObjects = resources == null ? null : getDictionary(resources, COSName.XOBJECT);
+        COSBase xObject = xObjects == null ? null : xObjects.getDictionaryObject(xObjectName);
+        if (!(xObject instanceof COSStream)) {
+            return;
+        }
+        COSStream form = (COSStream) xObject;
+        if (!COSName.FORM.equals(form.getCOSName(COSName.SUBTYPE)) || !visitedForms.add(form)) {
+            return;
+        }
+        COSBase matrix = form.getDictionaryObject(COSName.MATRIX);
+        if (matrix instanceof COSArray) {
+            checkMatrix(((COSArray) matrix).toList());
+        }
+        COSDictionary formResources = getDictionary(form, COSName.RESOURCES);
+        scan(form, formResources != null ? formResources : resources);
+        visitedForms.remove(form);
+    }
+
+    private static COSDictionary getDictionary(COSDictionary dictionary, COSName key) {
+        COSBase retVal = dictionary.getDictionaryObject(key);
+        return retVal instanceof COSDictionary ? (COSDictionary) retVal : null;
+    }
+}
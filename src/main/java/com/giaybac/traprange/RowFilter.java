@@ -0,0 +1,22 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+/**
+ * Keeps or drops the rows of the extracted tables while they are assembled:
+ * a dropped row never becomes a {@link com.giaybac.traprange.entity.TableRow}.
+ * The rows of a dense page are filtered by several threads, see
+ * {@link ExtractionOptions.Builder#setParallelGlyphThreshold(int)}, so an
+ * implementation must be thread safe.
+ */
+public interface RowFilter {
+
+    /**
+     * @param row valid during this call only
+     * @return true to keep the row
+     */
+    boolean accept(RowView row);
+}
@@ -0,0 +1,29 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+/**
+ * How the glyphs of a {@link LayoutSpec} band are split into rows
+ */
+public enum RowSplit {
+
+    /**
+     * One row per line trap-range of the band
+     */
+    LINES,
+    /**
+     * Rows of a fixed height from the top of the band, a line goes to the row
+     * holding its center, see
+     * {@link LayoutSpec.Builder#splitRowsByHeight(float)}
+     */
+    FIXED_HEIGHT,
+    /**
+     * A line starts a new row when it has a text in the anchor column, other
+     * lines continue the row above, see
+     * {@link LayoutSpec.Builder#splitRowsByAnchor(int)}
+     */
+    ANCHOR_COLUMN
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs an independent computation on each row of a page. The rows of a dense
+ * page are split between the threads of the common fork/join pool, and each
+ * result is stored at the index of its row: the results never depend on the
+ * scheduling.
+ */
+class RowTasks {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    // a task computes its rows itself below this count
+    private static final int MIN_ROWS_PER_TASK = 16;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    private RowTasks() {
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * @param <T>
+     * @param rowCount
+     * @param parallel false to compute the rows in the calling thread
+     * @param function must be thread safe when parallel
+     * @return result of each row, ordered by row idx ASC
+     */
+    @SuppressWarnings("unchecked")
+    static <T> List<T> map(int rowCount, boolean parallel, RowFunction<T> function) {
+        Object[] retVal = new Object[rowCount];
+        if (parallel && rowCount > MIN_ROWS_PER_TASK) {
+            ForkJoinPool.commonPool().invoke(new RowRangeTask<>(function, retVal, 0, rowCount));
+        } else {
+            for (int rowIdx = 0; rowIdx < rowCount; rowIdx++) {
+                retVal[rowIdx] = function.apply(rowIdx);
+            }
+        }
+        return (List<T>) Arrays.asList(retVal);
+    }
+
+    //--------------------------------------------------------------------------
+    //  Inner class
+    interface RowFunction<T> {
+
+        T apply(int rowIdx);
+    }
+
+    private static class RowRangeTask<T> extends RecursiveAction {
+
+        private final RowFunction<T> function;
+        private final Object[] results;
+        private final int from;
+        // exclusive
+        private final int to;
+
+        private RowRangeTask(RowFunction<T> function, Object[] results, int from, int to) {
+            this.function = function;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= MIN_ROWS_PER_TASK) {
+                for (int rowIdx = from; rowIdx < to; rowIdx++) {
+                    results[rowIdx] = function.apply(rowIdx);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RowRangeTask<>(function, results, from, middle),
+                    new RowRangeTask<>(function, results, middle, to));
+        }
+    }
+}
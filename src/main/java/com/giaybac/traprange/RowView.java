@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+/**
+ * A row being assembled, as seen by a {@link RowFilter}. Cells are read from
+ * the glyphs of the page when asked for, the other cells of the row are never
+ * built. Column idx-s are those of the whole table, before any projection.
+ */
+public class RowView {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private final int pageIdx;
+    private final int rowIdx;
+    private final PageGlyphIndex pageIndex;
+    // texts of the row ordered by X ASC
+    private final int[] sortedContent;
+    // texts of column i are sortedContent[cellStarts[i] .. cellEnds[i])
+    private final int[] cellStarts;
+    private final int[] cellEnds;
+    // texts of the cells of a tagged row, null for a row of glyphs
+    private final String[] cellTexts;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    RowView(int pageIdx, int rowIdx, PageGlyphIndex pageIndex, int[] sortedContent, int[] cellStarts,
+            int[] cellEnds) {
+        this.pageIdx = pageIdx;
+        this.rowIdx = rowIdx;
+        this.pageIndex = pageIndex;
+        this.sortedContent = sortedContent;
+        this.cellStarts = cellStarts;
+        this.cellEnds = cellEnds;
+        this.cellTexts = null;
+    }
+
+    /**
+     * @param pageIdx
+     * @param rowIdx
+     * @param cellTexts texts of a row read from the structure tree
+     */
+    RowView(int pageIdx, int rowIdx, String[] cellTexts) {
+        this.pageIdx = pageIdx;
+        this.rowIdx = rowIdx;
+        this.pageIndex = null;
+        this.sortedContent = null;
+        this.cellStarts = null;
+        this.cellEnds = null;
+        this.cellTexts = cellTexts;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    public int getPageIdx() {
+        return pageIdx;
+    }
+
+    public int getRowIdx() {
+        return rowIdx;
+    }
+
+    public int getColumnCount() {
+        return cellTexts != null ? cellTexts.length : cellStarts.length;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * @param columnIdx
+     * @return true if no text of the row is in this column
+     */
+    public boolean isEmpty(int columnIdx) {
+        checkColumn(columnIdx);
+        if (cellTexts != null) {
+            return cellTexts[columnIdx].isEmpty();
+        }
+        return cellEnds[columnIdx] == cellStarts[columnIdx];
+    }
+
+    /**
+     * Content of a cell, without creating a String: it can be matched by a
+     * {@link java.util.regex.Pattern} directly
+     *
+     * @param columnIdx
+     * @return
+     */
+    public CharSequence getCell(int columnIdx) {
+        checkColumn(columnIdx);
+        if (cellTexts != null) {
+            return cellTexts[columnIdx];
+        }
+        StringBuilder retVal = new StringBuilder();
+        for (int idx = cellStarts[columnIdx]; idx < cellEnds[columnIdx]; idx++) {
+            pageIndex.appendUnicode(retVal, sortedContent[idx]);
+        }
+        return retVal;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private void checkColumn(int columnIdx) {
+        if (columnIdx < 0 || columnIdx >= getColumnCount()) {
+            throw new IndexOutOfBoundsException("Invalid column idx: " + columnIdx);
+        }
+    }
+}
@@ -0,0 +1,387 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Range;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extract a huge document with several worker processes, so that no JVM has
+ * to keep all pages in memory.
+ * <p>
+ * The selected pages are split into shards of consecutive pages. A worker
+ * process ({@link MAIN} with <code>-worker</code>) detects the tables of one
+ * shard and writes the detected rows, the texts inside them and the column
+ * trap-ranges of the shard to a file. The coordinator merges the column
+ * trap-ranges of all shards with a {@link TrapRangeBuilder}, which gives the
+ * same columns as a single process run, then assembles the tables page by
+ * page while reading the shard files in order.
+ * <p>
+ * Timeouts of the options apply to each worker: the document timeout limits
+ * the time spent on one shard.
+ */
+public class ShardedExtractor {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private static final int TASK_MAGIC = 0x54525431;// TRT1
+    private static final int RESULT_MAGIC = 0x54525331;// TRS1
+
+    private final Logger logger = LoggerFactory.getLogger(ShardedExtractor.class);
+    private final File source;
+    private final ExtractionOptions options;
+    private final int workerCount;
+    // 0 means the pages are split evenly between the workers
+    private int shardSize = 0;
+    private List<String> workerJvmArgs = new ArrayList<>();
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    /**
+     * @param source
+     * @param options
+     * @param workerCount
+     * @throws IllegalArgumentException if the options need the whole
+     * document: tagged pages, a layout, boilerplate lines
+     */
+    public ShardedExtractor(File source, ExtractionOptions options, int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Invalid worker count: " + workerCount);
+        }
+        if (options.isTagged()) {
+            throw new IllegalArgumentException("Tagged pages can't be read by a sharded extraction");
+        }
+        if (options.getLayout() != null) {
+            throw new IllegalArgumentException("A layout can't be used by a sharded extraction");
+        }
+        if (options.getBoilerplateRatio() > 0) {
+            throw new IllegalArgumentException("Boilerplate lines can't be found by a sharded extraction");
+        }
+        this.source = source;
+        this.options = options;
+        this.workerCount = workerCount;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    /**
+     * Pages per shard. Smaller shards lower the heap needed by a worker and
+     * balance the load better, at the cost of more worker processes
+     *
+     * @param shardSize
+     * @return
+     */
+    public ShardedExtractor setShardSize(int shardSize) {
+        this.shardSize = shardSize;
+        return this;
+    }
+
+    /**
+     * @param workerJvmArgs options of the worker JVMs. Ex: -Xmx512m
+     * @return
+     */
+    public ShardedExtractor setWorkerJvmArgs(List<String> workerJvmArgs) {
+        this.workerJvmArgs = new ArrayList<>(workerJvmArgs);
+        return this;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    public ExtractionResult extract() {
+        try {
+            List<Integer> selectedPages = new ArrayList<>();
+            try (ExtractionSession session = new ExtractionSession(source)) {
+                for (int pageId = 0; pageId < session.getNumberOfPages(); pageId++) {
+                    if (options.isPageSelected(pageId)) {
+                        selectedPages.add(pageId);
+                    }
+                }
+            }
+            if (selectedPages.isEmpty()) {
+                return new ExtractionResult();
+            }
+            int pagesPerShard = shardSize > 0 ? shardSize : (selectedPages.size() + workerCount - 1) / workerCount;
+            List<List<Integer>> shards = Lists.partition(selectedPages, pagesPerShard);
+            logger.debug("Split " + selectedPages.size() + " page(s) into " + shards.size() + " shard(s)");
+
+            File workDir = Files.createTempDirectory("traprange-shards").toFile();
+            try {
+                runWorkers(shards, workDir);
+                return merge(shards.size(), workDir);
+            } finally {
+                File[] files = workDir.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        file.delete();
+                    }
+                }
+                workDir.delete();
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Parse pdf file fail", ex);
+        }
+    }
+
+    /**
+     * Entry point of a worker process: detect the tables of the shard
+     * described by the task file
+     *
+     * @param taskFile
+     * @param resultFile
+     * @throws IOException
+     */
+    static void runWorker(File taskFile, File resultFile) throws IOException {
+        File documentFile;
+        ExtractionOptions shardOptions;
+        List<Integer> pageIds = new ArrayList<>();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(taskFile)))) {
+            if (input.readInt() != TASK_MAGIC) {
+                throw new IOException("Invalid shard task: " + taskFile);
+            }
+            documentFile = new File(input.readUTF());
+            shardOptions = ExtractionOptions.read(input);
+            int pageCount = input.readInt();
+            for (int idx = 0; idx < pageCount; idx++) {
+                pageIds.add(input.readInt());
+            }
+        }
+        ExtractionResult skipped = new ExtractionResult();
+        List<TablePageModel> tablePages;
+        try (ExtractionSession session = new ExtractionSession(documentFile)) {
+            tablePages = session.detectTables(shardOptions, pageIds, skipped);
+        }
+        List<Range<Float>> columnRanges = shardOptions.getColumnMode() == ColumnMode.GLOBAL
+                ? TableAssembler.getColumnRanges(tablePages)
+                : Collections.<Range<Float>>emptyList();
+
+        // the coordinator only sees complete results
+        File tempFile = new File(resultFile.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            output.writeInt(RESULT_MAGIC);
+            output.writeInt(columnRanges.size());
+            for (Range<Float> columnRange : columnRanges) {
+                TablePageModel.writeRange(output, columnRange);
+            }
+            output.writeInt(skipped.getSkippedPages().size());
+            for (Map.Entry<Integer, SkipReason> entry : skipped.getSkippedPages().entrySet()) {
+                output.writeInt(entry.getKey());
+                output.writeUTF(entry.getValue().name());
+            }
+            output.writeInt(skipped.getDuplicateGlyphCount());
+            output.writeInt(tablePages.size());
+            for (TablePageModel tablePage : tablePages) {
+                tablePage.compact().write(output);
+            }
+        }
+        Files.move(tempFile.toPath(), resultFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private void runWorkers(List<List<Integer>> shards, File workDir) throws IOException {
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int shardIdx = 0; shardIdx < shards.size(); shardIdx++) {
+            File taskFile = new File(workDir, "shard-" + shardIdx + ".task");
+            writeTask(taskFile, shards.get(shardIdx));
+            workers.add(newWorker(taskFile, new File(workDir, "shard-" + shardIdx + ".result"), shards.get(shardIdx)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(workerCount, shards.size()));
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> worker : workers) {
+                futures.add(executor.submit(worker));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Shard worker fail", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for shard workers", ex);
+        } finally {
+            // running workers are destroyed when interrupted
+            executor.shutdownNow();
+        }
+    }
+
+    private void writeTask(File taskFile, List<Integer> pageIds) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(taskFile)))) {
+            output.writeInt(TASK_MAGIC);
+            output.writeUTF(source.getAbsolutePath());
+            options.write(output);
+            output.writeInt(pageIds.size());
+            for (int pageId : pageIds) {
+                output.writeInt(pageId);
+            }
+        }
+    }
+
+    private Callable<Void> newWorker(final File taskFile, final File resultFile, final List<Integer> pageIds) {
+        final List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(workerJvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(MAIN.class.getName());
+        command.add("-worker");
+        command.add(taskFile.getPath());
+        command.add("-out");
+        command.add(resultFile.getPath());
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                String shardName = "pages " + pageIds.get(0) + "-" + pageIds.get(pageIds.size() - 1);
+                logger.debug("Start worker of " + shardName);
+                Process process = new ProcessBuilder(command).inheritIO().start();
+                try {
+                    int exitCode = process.waitFor();
+                    if (exitCode != 0 || !resultFile.isFile()) {
+                        throw new IOException("Worker of " + shardName + " exited with code " + exitCode);
+                    }
+                } finally {
+                    process.destroy();
+                }
+                return null;
+            }
+        };
+    }
+
+    private ExtractionResult merge(int shardCount, File workDir) throws IOException {
+        ExtractionResult retVal = new ExtractionResult();
+        retVal.initRowSpill(options);
+        boolean merged = false;
+        try {
+            mergeTables(shardCount, workDir, retVal);
+            merged = true;
+        } finally {
+            if (!merged) {
+                retVal.close();
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @param shardCount
+     * @param workDir
+     * @param result receives the tables, the skipped and the drifted pages
+     * @throws IOException
+     */
+    private void mergeTables(int shardCount, File workDir, ExtractionResult result) throws IOException {
+        // columns of the whole document
+        TrapRangeBuilder columnRangesBuilder = new TrapRangeBuilder();
+        int tablePageCount = 0;
+        for (int shardIdx = 0; shardIdx < shardCount; shardIdx++) {
+            try (DataInputStream input = openResult(workDir, shardIdx)) {
+                columnRangesBuilder.addRangeList(readHeader(input, result));
+                tablePageCount += input.readInt();
+            }
+        }
+        List<Range<Float>> columnRanges = null;
+        if (options.getColumnMode() == ColumnMode.GLOBAL) {
+            columnRanges = columnRangesBuilder.build();
+        } else if (options.getColumnMode() == ColumnMode.SAMPLED) {
+            columnRanges = getSampledColumnRanges(shardCount, workDir, tablePageCount);
+        }
+        // tables, one page in memory at a time
+        TableAssembler assembler = new TableAssembler(ExtractionDeadline.none(), options.getParallelGlyphThreshold())
+                .setColumnProjection(options.getColumnProjection()).setRowFilter(options.getRowFilter())
+                .setRowSpill(result.getRowSpillFile(), options.getRowWindow()).setColumnar(options.isColumnar());
+        for (int shardIdx = 0; shardIdx < shardCount; shardIdx++) {
+            try (DataInputStream input = openResult(workDir, shardIdx)) {
+                readHeader(input, new ExtractionResult());
+                int pageCount = input.readInt();
+                for (int idx = 0; idx < pageCount; idx++) {
+                    TablePageModel tablePage = TablePageModel.read(input);
+                    result.getTables().add(assembler.buildTable(tablePage,
+                            assembler.getPageColumns(tablePage, columnRanges, options.getColumnMode(), result)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Columns of the sampled table pages, read from the shard results
+     *
+     * @param shardCount
+     * @param workDir
+     * @param tablePageCount table pages of all shards
+     * @return
+     * @throws IOException
+     */
+    private List<Range<Float>> getSampledColumnRanges(int shardCount, File workDir, int tablePageCount)
+            throws IOException {
+        int[] samplePositions = TableAssembler.getSamplePositions(tablePageCount, options.getColumnSampleSize());
+        List<TablePageModel> samplePages = new ArrayList<>();
+        int position = 0;
+        for (int shardIdx = 0; shardIdx < shardCount && samplePages.size() < samplePositions.length; shardIdx++) {
+            try (DataInputStream input = openResult(workDir, shardIdx)) {
+                readHeader(input, new ExtractionResult());
+                int pageCount = input.readInt();
+                for (int idx = 0; idx < pageCount && samplePages.size() < samplePositions.length; idx++, position++) {
+                    TablePageModel tablePage = TablePageModel.read(input);
+                    if (position == samplePositions[samplePages.size()]) {
+                        samplePages.add(tablePage);
+                    }
+                }
+            }
+        }
+        return TableAssembler.getColumnRanges(samplePages);
+    }
+
+    private DataInputStream openResult(File workDir, int shardIdx) throws IOException {
+        File resultFile = new File(workDir, "shard-" + shardIdx + ".result");
+        DataInputStream retVal = new DataInputStream(new BufferedInputStream(new FileInputStream(resultFile)));
+        if (retVal.readInt() != RESULT_MAGIC) {
+            retVal.close();
+            throw new IOException("Invalid shard result: " + resultFile);
+        }
+        return retVal;
+    }
+
+    /**
+     * @param input
+     * @param result receives the skipped pages and the duplicate glyph count
+     * @return column trap-ranges of the shard
+     * @throws IOException
+     */
+    private List<Range<Float>> readHeader(DataInputStream input, ExtractionResult result) throws IOException {
+        int columnCount = input.readInt();
+        List<Range<Float>> retVal = new ArrayList<>(columnCount);
+        for (int idx = 0; idx < columnCount; idx++) {
+            retVal.add(TablePageModel.readRange(input));
+        }
+        int skippedCount = input.readInt();
+        for (int idx = 0; idx < skippedCount; idx++) {
+            int pageIdx = input.readInt();
+            result.getSkippedPages().put(pageIdx, SkipReason.valueOf(input.readUTF()));
+        }
+        result.addDuplicateGlyphs(input.readInt());
+        return retVal;
+    }
+}
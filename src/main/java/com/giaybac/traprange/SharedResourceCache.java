@@ -0,0 +1,259 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.pdmodel.DefaultResourceCache;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType3Font;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parsed fonts (including their encodings and ToUnicode CMaps) shared by all
+ * documents loaded with this cache, so that a font embedded in thousands of
+ * documents is parsed once.
+ * <p>
+ * Entries are keyed by a SHA-256 of the font dictionary and the raw bytes of
+ * every stream it references, never by object number, so two documents only
+ * share a font when its content is identical. PDFBox fonts are not thread
+ * safe, that's why an instance is checked out by one document at a time: a
+ * document borrows the font while it's loaded and gives it back when its
+ * {@link DocumentCache} is closed. A second document that needs the same font
+ * meanwhile parses its own copy.
+ * <p>
+ * Type 3 fonts and everything else (form XObjects, color spaces...) read their
+ * streams lazily from the owning document, so they stay in the per document
+ * cache of PDFBox.
+ */
+public class SharedResourceCache {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    // fonts without an embedded program still cost their metrics and maps
+    private static final int MIN_FONT_WEIGHT = 4 * 1024;
+
+    private final Logger logger = LoggerFactory.getLogger(SharedResourceCache.class);
+    private final Cache<String, CachedFont> fonts;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    public SharedResourceCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes upper bound of the summed size of the cached font
+     * programs, least recently used fonts are evicted first
+     */
+    public SharedResourceCache(long maxBytes) {
+        this.fonts = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(new Weigher<String, CachedFont>() {
+                    @Override
+                    public int weigh(String key, CachedFont value) {
+                        return value.weight;
+                    }
+                })
+                .build();
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return number of fonts currently idle in the cache
+     */
+    public long size() {
+        return fonts.size();
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * Create the resource cache of one document, to be set with
+     * {@link PDDocument#setResourceCache} right after loading and closed after
+     * the document
+     *
+     * @return
+     */
+    public DocumentCache newDocumentCache() {
+        return new DocumentCache(this);
+    }
+
+    public void clear() {
+        fonts.invalidateAll();
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private PDFont borrow(String key) {
+        CachedFont retVal = fonts.asMap().remove(key);
+        if (retVal == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return retVal.font;
+    }
+
+    private void giveBack(String key, CachedFont font) {
+        fonts.asMap().putIfAbsent(key, font);
+    }
+
+    /**
+     * @param indirect
+     * @return weight and content key of a shareable font, null if the font
+     * must not be shared
+     */
+    private static FontKey getFontKey(COSObject indirect) throws IOException {
+        COSBase base = indirect.getObject();
+        if (!(base instanceof COSDictionary)) {
+            return null;
+        }
+        COSDictionary fontDictionary = (COSDictionary) base;
+        if (COSName.TYPE3.equals(fontDictionary.getCOSName(COSName.SUBTYPE))) {
+            return null;
+        }
+        ContentHasher hasher = new ContentHasher();
+        hasher.hash(fontDictionary);
+        return new FontKey(hasher.hash().toString(), Math.max(MIN_FONT_WEIGHT, hasher.getByteCount()));
+    }
+
+    //--------------------------------------------------------------------------
+    //  Inner class
+    /**
+     * Resource cache of a single document. Fonts are looked up in the shared
+     * cache by content, everything else is cached per document as PDFBox does
+     * by default. Not thread safe, as the document itself.
+     */
+    public static class DocumentCache extends DefaultResourceCache implements Closeable {
+
+        private final SharedResourceCache shared;
+        // content key of each font object seen in this document
+        private final Map<COSObject, FontKey> fontKeys = new IdentityHashMap<>();
+        // fonts borrowed from or to be given to the shared cache
+        private final Map<String, CachedFont> leasedFonts = new HashMap<>();
+        private boolean closed = false;
+
+        private DocumentCache(SharedResourceCache shared) {
+            this.shared = shared;
+        }
+
+        @Override
+        public PDFont getFont(COSObject indirect) throws IOException {
+            PDFont retVal = super.getFont(indirect);
+            if (retVal != null || closed) {
+                return retVal;
+            }
+            FontKey key = getKey(indirect);
+            if (key == null) {
+                return null;
+            }
+            CachedFont leasedFont = leasedFonts.get(key.key);
+            if (leasedFont != null) {
+                retVal = leasedFont.font;
+            } else {
+                retVal = shared.borrow(key.key);
+                if (retVal != null) {
+                    leasedFonts.put(key.key, new CachedFont(retVal, key.weight));
+                }
+            }
+            if (retVal != null) {
+                super.put(indirect, retVal);
+            }
+            return retVal;
+        }
+
+        @Override
+        public void put(COSObject indirect, PDFont font) throws IOException {
+            super.put(indirect, font);
+            if (closed || font instanceof PDType3Font) {
+                return;
+            }
+            FontKey key = getKey(indirect);
+            if (key != null && !leasedFonts.containsKey(key.key)) {
+                leasedFonts.put(key.key, new CachedFont(font, key.weight));
+            }
+        }
+
+        /**
+         * Give the fonts used by this document back to the shared cache. The
+         * document must not be used afterwards.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Map.Entry<String, CachedFont> entry : leasedFonts.entrySet()) {
+                shared.giveBack(entry.getKey(), entry.getValue());
+            }
+            leasedFonts.clear();
+            fontKeys.clear();
+        }
+
+        private FontKey getKey(COSObject indirect) throws IOException {
+            if (fontKeys.containsKey(indirect)) {
+                return fontKeys.get(indirect);
+            }
+            FontKey retVal = null;
+            try {
+                retVal = getFontKey(indirect);
+            } catch (IOException ex) {
+                shared.logger.debug("Can't hash font " + indirect, ex);
+            }
+            fontKeys.put(indirect, retVal);
+            return retVal;
+        }
+    }
+
+    private static class FontKey {
+
+        private final String key;
+        private final int weight;
+
+        private FontKey(String key, int weight) {
+            this.key = key;
+            this.weight = weight;
+        }
+    }
+
+    private static class CachedFont {
+
+        private final PDFont font;
+        private final int weight;
+
+        private CachedFont(PDFont font, int weight) {
+            this.font = font;
+            this.weight = weight;
+        }
+    }
+}
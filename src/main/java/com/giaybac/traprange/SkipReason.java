@@ -0,0 +1,29 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+/**
+ * Why a selected page didn't produce a table
+ */
+public enum SkipReason {
+
+    /**
+     * The page didn't finish within the page timeout
+     */
+    PAGE_TIMEOUT,
+    /**
+     * The document timeout expired before or while the page was processed
+     */
+    DOCUMENT_TIMEOUT,
+    /**
+     * The content stream of the page shows no text
+     */
+    NO_TEXT,
+    /**
+     * The page has less than two lines of text, too few to align
+     */
+    TOO_FEW_LINES
+}
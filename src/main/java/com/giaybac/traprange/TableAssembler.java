@@ -0,0 +1,414 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import com.giaybac.traprange.entity.ColumnarTable;
+import com.giaybac.traprange.entity.RowSpillFile;
+import com.giaybac.traprange.entity.SpilledRowList;
+import com.giaybac.traprange.entity.Table;
+import com.giaybac.traprange.entity.TableCell;
+import com.giaybac.traprange.entity.TableRow;
+import com.google.common.collect.Range;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Last step of an extraction: the column trap-ranges are built from the
+ * texts of the detected rows, then each row takes the texts of each column.
+ * Glyphs are classified into rows and columns by a {@link GlyphClassifier},
+ * and the rows of a dense page are assembled by several threads. Only the
+ * rows accepted by the row filter and the cells of the projected columns are
+ * built.
+ */
+class TableAssembler {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private final Logger logger = LoggerFactory.getLogger(TableAssembler.class);
+    private final ExtractionDeadline deadline;
+    // pages with more glyphs have their rows split between threads
+    private final int parallelGlyphThreshold;
+    // column idx-s to build cells for, empty for all columns
+    private Set<Integer> columnProjection = Collections.emptySet();
+    // null keeps all rows
+    private RowFilter rowFilter;
+    // null if rows stay on heap
+    private RowSpillFile rowSpillFile;
+    private int rowWindow;
+    // tables are stored by column, their rows stay on heap
+    private boolean columnar = false;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    /**
+     * @param deadline
+     * @param parallelGlyphThreshold see
+     * {@link ExtractionOptions.Builder#setParallelGlyphThreshold(int)}
+     */
+    TableAssembler(ExtractionDeadline deadline, int parallelGlyphThreshold) {
+        this.deadline = deadline;
+        this.parallelGlyphThreshold = parallelGlyphThreshold;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    /**
+     * @param columnProjection column idx-s ordered ASC, empty for all columns
+     * @return
+     */
+    TableAssembler setColumnProjection(Set<Integer> columnProjection) {
+        this.columnProjection = columnProjection;
+        return this;
+    }
+
+    /**
+     * @param rowFilter null keeps all rows
+     * @return
+     */
+    TableAssembler setRowFilter(RowFilter rowFilter) {
+        this.rowFilter = rowFilter;
+        return this;
+    }
+
+    /**
+     * @param rowSpillFile null to keep rows on heap
+     * @param rowWindow rows kept on heap while a table is built
+     * @return
+     */
+    TableAssembler setRowSpill(RowSpillFile rowSpillFile, int rowWindow) {
+        this.rowSpillFile = rowSpillFile;
+        this.rowWindow = rowWindow;
+        return this;
+    }
+
+    /**
+     * @param columnar true to store the tables by column
+     * @return
+     */
+    TableAssembler setColumnar(boolean columnar) {
+        this.columnar = columnar;
+        return this;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * Column trap-ranges shared by the given pages. Ranges built from disjoint
+     * groups of pages can be merged again with a {@link TrapRangeBuilder}, the
+     * result is the same as if they were built from all pages at once.
+     *
+     * @param tablePages
+     * @return
+     */
+    static List<Range<Float>> getColumnRanges(Iterable<TablePageModel> tablePages) {
+        TrapRangeBuilder rangesBuilder = new TrapRangeBuilder();
+        for (TablePageModel tablePage : tablePages) {
+            PageGlyphIndex pageIndex = tablePage.getPageIndex();
+            int[] texts = pageIndex.inYBands(tablePage.getRowRanges());
+            for (int text : texts) {
+                Range<Float> range = Range.closed(pageIndex.getMinX(text), pageIndex.getMaxX(text));
+                rangesBuilder.addRange(range);
+            }
+        }
+        return rangesBuilder.build();
+    }
+
+    /**
+     * Stratified sample of the table pages: the first and the last pages, and
+     * pages evenly spaced between them
+     *
+     * @param pageCount
+     * @param sampleSize
+     * @return positions of the sampled pages, ASC
+     */
+    static int[] getSamplePositions(int pageCount, int sampleSize) {
+        int size = Math.min(pageCount, sampleSize);
+        int[] retVal = new int[size];
+        for (int idx = 0; idx < size; idx++) {
+            // pages are at least one apart when the sample is smaller
+            retVal[idx] = size == pageCount || size == 1 ? idx : (int) ((long) idx * (pageCount - 1) / (size - 1));
+        }
+        return retVal;
+    }
+
+    /**
+     * Cheap drift check of a page against columns built from other pages: no
+     * range is merged, each text of the rows is only searched in the columns
+     *
+     * @param tablePage
+     * @param columnTrapRanges
+     * @return true if every text of the rows is inside a column
+     */
+    static boolean fitsColumns(TablePageModel tablePage, List<Range<Float>> columnTrapRanges) {
+        PageGlyphIndex pageIndex = tablePage.getPageIndex();
+        int[] texts = pageIndex.inYBands(tablePage.getRowRanges());
+        int[] textColumns = pageIndex.classifyByX(texts, getLowerEndpoints(columnTrapRanges),
+                getUpperEndpoints(columnTrapRanges));
+        for (int textColumn : textColumns) {
+            if (textColumn < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param tablePage
+     * @param columnTrapRanges columns shared by the pages, null if none
+     * @param columnMode
+     * @param result receives the page if it drifted from the sampled columns
+     * @return columns to build the table of the page with
+     */
+    List<Range<Float>> getPageColumns(TablePageModel tablePage, List<Range<Float>> columnTrapRanges,
+            ColumnMode columnMode, ExtractionResult result) {
+        if (columnMode != ColumnMode.SAMPLED || fitsColumns(tablePage, columnTrapRanges)) {
+            return columnTrapRanges;
+        }
+        result.getDriftedPages().add(tablePage.getPageIdx());
+        logger.debug("Page " + tablePage.getPageIdx() + " doesn't fit the sampled columns, use its own columns");
+        return null;
+    }
+
+    /**
+     * Each row takes the texts its trap range encloses
+     *
+     * @param tablePage
+     * @param columnTrapRanges null to use the columns of this page only
+     * @return
+     */
+    Table buildTable(TablePageModel tablePage, List<Range<Float>> columnTrapRanges) {
+        List<Range<Float>> columns = columnTrapRanges != null
+                ? columnTrapRanges
+                : getColumnRanges(Collections.singletonList(tablePage));
+        final PageGlyphIndex pageIndex = tablePage.getPageIndex();
+        final float[] columnLowers = getLowerEndpoints(columns);
+        final float[] columnUppers = getUpperEndpoints(columns);
+        List<Range<Float>> rowTrapRanges = tablePage.getRowRanges();
+        boolean parallel = pageIndex.size() >= parallelGlyphThreshold;
+
+        final int pageIdx = tablePage.getPageIdx();
+        final int[] columnPositions = getColumnPositions(columns.size());
+        int columnCount = columnPositions == null ? columns.size() : getProjectedColumnCount(columnPositions);
+        Table retVal = newTable(pageIdx, columnCount);
+        deadline.check();
+        // glyph ids are ordered by Y: so are the texts of each row
+        int[] glyphRows = pageIndex.classifyByY(getLowerEndpoints(rowTrapRanges), getUpperEndpoints(rowTrapRanges));
+        PageGlyphIndex.IntBuffer[] rowBuffers = new PageGlyphIndex.IntBuffer[rowTrapRanges.size()];
+        int lastRowIdx = -1;
+        for (int glyphId = 0; glyphId < glyphRows.length; glyphId++) {
+            int rowIdx = glyphRows[glyphId];
+            if (rowIdx < 0) {
+                continue;
+            }
+            if (rowBuffers[rowIdx] == null) {
+                rowBuffers[rowIdx] = new PageGlyphIndex.IntBuffer();
+            }
+            rowBuffers[rowIdx].add(glyphId);
+            lastRowIdx = Math.max(lastRowIdx, rowIdx);
+        }
+        final int[][] rowContents = new int[lastRowIdx + 1][];
+        for (int rowIdx = 0; rowIdx < rowContents.length; rowIdx++) {
+            rowContents[rowIdx] = rowBuffers[rowIdx] == null ? new int[0] : rowBuffers[rowIdx].toArray();
+        }
+        // trailing rows without content are not part of the table
+        List<TableRow> rows = RowTasks.map(rowContents.length, parallel, new RowTasks.RowFunction<TableRow>() {
+            @Override
+            public TableRow apply(int rowIdx) {
+                deadline.check();
+                return buildRow(pageIdx, rowIdx, pageIndex, rowContents[rowIdx], columnLowers, columnUppers,
+                        columnPositions);
+            }
+        });
+        for (TableRow row : rows) {
+            // null if filtered out
+            if (row != null) {
+                retVal.getRows().add(row);
+            }
+        }
+        // debug
+        logger.debug("Found " + retVal.getRows().size() + " row(s) and " + columns.size()
+                + " column(s) of a table in page " + tablePage.getPageIdx());
+        // return
+        return finishTable(retVal);
+    }
+
+    /**
+     * Build a table from the texts of its cells, read from the structure tree
+     * of a tagged page, see {@link TaggedTableReader}, or from the grid of a
+     * {@link LayoutSpec}, see {@link LayoutGrid}
+     *
+     * @param pageIdx
+     * @param rowTexts text of each column of each row
+     * @return
+     */
+    Table buildTable(int pageIdx, List<String[]> rowTexts) {
+        int tableColumnCount = 0;
+        for (String[] texts : rowTexts) {
+            tableColumnCount = Math.max(tableColumnCount, texts.length);
+        }
+        int[] columnPositions = getColumnPositions(tableColumnCount);
+        int columnCount = columnPositions == null ? tableColumnCount : getProjectedColumnCount(columnPositions);
+        Table retVal = newTable(pageIdx, columnCount);
+        for (int rowIdx = 0; rowIdx < rowTexts.size(); rowIdx++) {
+            String[] texts = rowTexts.get(rowIdx);
+            if (rowFilter != null && !rowFilter.accept(new RowView(pageIdx, rowIdx, texts))) {
+                continue;
+            }
+            TableRow row = new TableRow(rowIdx);
+            for (int columnIdx = 0; columnIdx < texts.length; columnIdx++) {
+                int position = columnPositions == null ? columnIdx : columnPositions[columnIdx];
+                if (position >= 0) {
+                    row.getCells().add(new TableCell(position, texts[columnIdx]));
+                }
+            }
+            retVal.getRows().add(row);
+        }
+        logger.debug("Found " + retVal.getRows().size() + " row(s) and " + tableColumnCount
+                + " column(s) of a table in page " + pageIdx);
+        return finishTable(retVal);
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private Table newTable(int pageIdx, int columnCount) {
+        return rowSpillFile != null
+                ? new Table(pageIdx, columnCount, new SpilledRowList(rowSpillFile, rowWindow))
+                : new Table(pageIdx, columnCount);
+    }
+
+    /**
+     * @param table whose rows are all built
+     * @return the table stored as asked
+     */
+    private Table finishTable(Table table) {
+        if (columnar) {
+            return ColumnarTable.of(table);
+        }
+        if (rowSpillFile != null) {
+            // only the table being built keeps rows on heap
+            ((SpilledRowList) table.getRows()).spill();
+        }
+        return table;
+    }
+
+    private static float[] getLowerEndpoints(List<Range<Float>> ranges) {
+        float[] retVal = new float[ranges.size()];
+        for (int idx = 0; idx < retVal.length; idx++) {
+            retVal[idx] = ranges.get(idx).lowerEndpoint();
+        }
+        return retVal;
+    }
+
+    private static float[] getUpperEndpoints(List<Range<Float>> ranges) {
+        float[] retVal = new float[ranges.size()];
+        for (int idx = 0; idx < retVal.length; idx++) {
+            retVal[idx] = ranges.get(idx).upperEndpoint();
+        }
+        return retVal;
+    }
+
+    /**
+     * @param columnCount
+     * @return position of each column in the projected table, -1 if not
+     * projected. null if all columns are
+     */
+    private int[] getColumnPositions(int columnCount) {
+        if (columnProjection.isEmpty()) {
+            return null;
+        }
+        int[] retVal = new int[columnCount];
+        Arrays.fill(retVal, -1);
+        int position = 0;
+        for (int columnIdx : columnProjection) {
+            if (columnIdx < columnCount) {
+                retVal[columnIdx] = position++;
+            }
+        }
+        return retVal;
+    }
+
+    private static int getProjectedColumnCount(int[] columnPositions) {
+        int retVal = 0;
+        for (int position : columnPositions) {
+            if (position >= 0) {
+                retVal++;
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     *
+     * @param pageIdx
+     * @param rowIdx
+     * @param pageIndex
+     * @param rowContent
+     * @param columnLowers lower endpoint of each column trap-range
+     * @param columnUppers upper endpoint of each column trap-range
+     * @param columnPositions see {@link #getColumnPositions(int)}
+     * @return null if the row filter drops the row
+     */
+    private TableRow buildRow(int pageIdx, int rowIdx, PageGlyphIndex pageIndex, int[] rowContent,
+            float[] columnLowers, float[] columnUppers, int[] columnPositions) {
+        // Sort rowContent
+        int[] sortedContent = pageIndex.sortByX(rowContent);
+        int[] textColumns = pageIndex.classifyByX(sortedContent, columnLowers, columnUppers);
+        int[] cellStarts = new int[columnLowers.length];
+        int[] cellEnds = new int[columnLowers.length];
+        // texts and columns are both ordered by X: walk them together
+        int idx = 0;
+        // columns with a cell in the row, a text outside of all columns
+        // closes all of them
+        int cellCount = 0;
+        while (idx < sortedContent.length && cellCount < columnLowers.length) {
+            cellStarts[cellCount] = idx;
+            while (idx < sortedContent.length && textColumns[idx] == cellCount) {
+                idx++;
+            }
+            cellEnds[cellCount] = idx;
+            cellCount++;
+        }
+        if (idx < sortedContent.length) {
+            logger.warn("Row " + rowIdx + ": " + (sortedContent.length - idx) + " text(s) outside of all columns");
+        }
+        if (rowFilter != null
+                && !rowFilter.accept(new RowView(pageIdx, rowIdx, pageIndex, sortedContent, cellStarts, cellEnds))) {
+            return null;
+        }
+        TableRow retVal = new TableRow(rowIdx);
+        for (int columnIdx = 0; columnIdx < cellCount; columnIdx++) {
+            int position = columnPositions == null ? columnIdx : columnPositions[columnIdx];
+            if (position >= 0) {
+                TableCell cell = buildCell(position, pageIndex, sortedContent, cellStarts[columnIdx],
+                        cellEnds[columnIdx]);
+                retVal.getCells().add(cell);
+            }
+        }
+        // return
+        return retVal;
+    }
+
+    /**
+     * @param columnIdx
+     * @param pageIndex
+     * @param sortedContent texts of the row ordered by X ASC
+     * @param from first text of the cell
+     * @param to end of the cell texts, exclusive
+     * @return
+     */
+    private TableCell buildCell(int columnIdx, PageGlyphIndex pageIndex, int[] sortedContent, int from, int to) {
+        StringBuilder cellContentBuilder = new StringBuilder();
+        for (int idx = from; idx < to; idx++) {
+            pageIndex.appendUnicode(cellContentBuilder, sortedContent[idx]);
+        }
+        String cellContentString = cellContentBuilder.toString();
+        return new TableCell(columnIdx, cellContentString);
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stateless entry point of the extraction, meant to be created once per
+ * process and shared by all threads. Each call loads its own document and
+ * closes it before returning; the only state kept between calls is the
+ * shared font cache and the memory governor, which are thread safe.
+ */
+public class TableExtractionEngine {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    // null when fonts are parsed again for each document
+    private final SharedResourceCache resourceCache;
+    // null when memory isn't governed
+    private final MemoryGovernor memoryGovernor;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    public TableExtractionEngine() {
+        this(new SharedResourceCache());
+    }
+
+    /**
+     * @param resourceCache fonts shared by the extracted documents, null to
+     * parse the fonts of each document again
+     */
+    public TableExtractionEngine(SharedResourceCache resourceCache) {
+        this(resourceCache, null);
+    }
+
+    /**
+     * @param resourceCache fonts shared by the extracted documents, null to
+     * parse the fonts of each document again
+     * @param memoryGovernor budget shared by the extractions, null if memory
+     * isn't governed
+     */
+    public TableExtractionEngine(SharedResourceCache resourceCache, MemoryGovernor memoryGovernor) {
+        this.resourceCache = resourceCache;
+        this.memoryGovernor = memoryGovernor;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    public SharedResourceCache getResourceCache() {
+        return resourceCache;
+    }
+
+    public MemoryGovernor getMemoryGovernor() {
+        return memoryGovernor;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    public ExtractionResult extract(File file, ExtractionOptions options) {
+        return extract(file, null, options);
+    }
+
+    /**
+     * @param file
+     * @param password null if the document isn't encrypted
+     * @param options
+     * @return
+     */
+    public ExtractionResult extract(File file, String password, ExtractionOptions options) {
+        return extract(file, password, options, new AtomicBoolean(false));
+    }
+
+    /**
+     * The stream is read to its end but stays open, it belongs to the caller.
+     * Its size is unknown: the memory governor reserves the minimum document
+     * estimate.
+     *
+     * @param inputStream
+     * @param options
+     * @return
+     */
+    public ExtractionResult extract(InputStream inputStream, ExtractionOptions options) {
+        return extract(inputStream, null, options);
+    }
+
+    public ExtractionResult extract(InputStream inputStream, String password, ExtractionOptions options) {
+        return extract(inputStream, password, options, new AtomicBoolean(false));
+    }
+
+    ExtractionResult extract(File file, String password, ExtractionOptions options, AtomicBoolean cancelled) {
+        try (MemoryGovernor.Admission admission = admit(file.length());
+                ExtractionSession session = new ExtractionSession(file, password, resourceCache, admission)) {
+            return session.extract(options, cancelled);
+        } catch (IOException ex) {
+            throw new RuntimeException("Parse pdf file fail", ex);
+        }
+    }
+
+    ExtractionResult extract(InputStream inputStream, String password, ExtractionOptions options,
+            AtomicBoolean cancelled) {
+        try (MemoryGovernor.Admission admission = admit(0);
+                ExtractionSession session = new ExtractionSession(inputStream, password, resourceCache, admission)) {
+            return session.extract(options, cancelled);
+        } catch (IOException ex) {
+            throw new RuntimeException("Parse pdf file fail", ex);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    /**
+     * @param fileSize 0 if unknown
+     * @return null if memory isn't governed
+     */
+    private MemoryGovernor.Admission admit(long fileSize) {
+        return memoryGovernor != null ? memoryGovernor.admit(MemoryGovernor.estimateDocument(fileSize)) : null;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import com.google.common.collect.Range;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A page where a table was detected, reduced to what the table assembly
+ * needs: the row trap-ranges and the glyphs inside them. It can be written to
+ * a stream, so that pages detected in another process are assembled exactly
+ * as local ones.
+ */
+class TablePageModel {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private final int pageIdx;
+    // glyphs enclosed by the rows, ordered by Y ASC
+    private final PageGlyphIndex pageIndex;
+    // ordered by Y ASC, not overlapping
+    private final List<Range<Float>> rowRanges;
+    // true if the index has the glyphs of the rows only
+    private final boolean compact;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    TablePageModel(int pageIdx, PageGlyphIndex pageIndex, List<Range<Float>> rowRanges) {
+        this(pageIdx, pageIndex, rowRanges, false);
+    }
+
+    private TablePageModel(int pageIdx, PageGlyphIndex pageIndex, List<Range<Float>> rowRanges, boolean compact) {
+        this.pageIdx = pageIdx;
+        this.pageIndex = pageIndex;
+        this.rowRanges = rowRanges;
+        this.compact = compact;
+    }
+
+    static TablePageModel read(DataInput input) throws IOException {
+        int pageIdx = input.readInt();
+        int rowCount = input.readInt();
+        List<Range<Float>> rowRanges = new ArrayList<>(rowCount);
+        for (int idx = 0; idx < rowCount; idx++) {
+            rowRanges.add(readRange(input));
+        }
+        PageGlyphIndex pageIndex = PageGlyphIndex.read(input);
+        return new TablePageModel(pageIdx, pageIndex, rowRanges, true);
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    int getPageIdx() {
+        return pageIdx;
+    }
+
+    PageGlyphIndex getPageIndex() {
+        return pageIndex;
+    }
+
+    List<Range<Float>> getRowRanges() {
+        return rowRanges;
+    }
+
+    boolean isCompact() {
+        return compact;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * Keep only the glyphs of the rows. A glyph is enclosed by one row at
+     * most, so every band query of the assembly gets the same glyphs in the
+     * same order as on the whole page.
+     *
+     * @return
+     */
+    TablePageModel compact() {
+        return new TablePageModel(pageIdx, new PageGlyphIndex(pageIndex, pageIndex.inYBands(rowRanges)), rowRanges,
+                true);
+    }
+
+    void write(DataOutput output) throws IOException {
+        output.writeInt(pageIdx);
+        output.writeInt(rowRanges.size());
+        for (Range<Float> rowRange : rowRanges) {
+            writeRange(output, rowRange);
+        }
+        pageIndex.write(output);
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    static void writeRange(DataOutput output, Range<Float> range) throws IOException {
+        output.writeFloat(range.lowerEndpoint());
+        output.writeFloat(range.upperEndpoint());
+    }
+
+    static Range<Float> readRange(DataInput input) throws IOException {
+        float lower = input.readFloat();
+        float upper = input.readFloat();
+        return Range.closed(lower, upper);
+    }
+}
@@ -0,0 +1,440 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.contentstream.operator.OperatorProcessor;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDAttributeObject;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDMarkedContentReference;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureElement;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureTreeRoot;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.Revisions;
+import org.apache.pdfbox.pdmodel.documentinterchange.markedcontent.PDMarkedContent;
+import org.apache.pdfbox.pdmodel.documentinterchange.markedcontent.PDPropertyList;
+import org.apache.pdfbox.pdmodel.documentinterchange.taggedpdf.PDTableAttributeObject;
+import org.apache.pdfbox.pdmodel.documentinterchange.taggedpdf.StandardStructureTypes;
+import org.apache.pdfbox.text.PDFMarkedContentExtractor;
+import org.apache.pdfbox.text.TextPosition;
+
+/**
+ * Tables of a tagged document, read from its structure tree instead of the
+ * positions of its glyphs: each <code>Table</code> element gives its
+ * <code>TR</code> rows, possibly grouped in <code>THead</code>,
+ * <code>TBody</code> and <code>TFoot</code>, and each row its
+ * <code>TH</code>/<code>TD</code> cells. The text of a cell is the text of
+ * the marked content its descendants refer to, in the order of the tree.
+ * Column and row spans are taken from the <code>Table</code> attributes, a
+ * spanned position gets an empty cell.
+ * <p>
+ * A page is tagged if the structure tree refers to its content. The rows of a
+ * table spread on several pages make a table on each page.
+ */
+class TaggedTableReader {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private final PDDocument document;
+    // page idx -> tables starting on the page, in the order of the tree
+    private final Map<Integer, List<TaggedTable>> tables = new TreeMap<>();
+    // pages whose content the tree refers to
+    private final Set<Integer> taggedPages = new TreeSet<>();
+    private final Map<COSDictionary, Integer> pageIdxs = new IdentityHashMap<>();
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    private TaggedTableReader(PDDocument document) {
+        this.document = document;
+        int pageIdx = 0;
+        for (PDPage page : document.getPages()) {
+            pageIdxs.put(page.getCOSObject(), pageIdx++);
+        }
+    }
+
+    /**
+     * @param document
+     * @return null if the document has no structure tree with a table
+     */
+    static TaggedTableReader read(PDDocument document) {
+        PDStructureTreeRoot root = document.getDocumentCatalog().getStructureTreeRoot();
+        if (root == null) {
+            return null;
+        }
+        TaggedTableReader retVal = new TaggedTableReader(document);
+        for (Object kid : root.getKids()) {
+            if (kid instanceof PDStructureElement) {
+                retVal.readElement((PDStructureElement) kid, null);
+            }
+        }
+        return retVal.tables.isEmpty() ? null : retVal;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    /**
+     * @param pageIdx
+     * @return true if the tables of the page come from the structure tree
+     */
+    boolean isTagged(int pageIdx) {
+        return taggedPages.contains(pageIdx);
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * @param pageIdx a tagged page
+     * @return rows of each table of the page, each row has a text per column
+     * @throws IOException
+     */
+    List<List<String[]>> getTables(int pageIdx) throws IOException {
+        List<List<String[]>> retVal = new ArrayList<>();
+        List<TaggedTable> pageTables = tables.get(pageIdx);
+        if (pageTables == null) {
+            return retVal;
+        }
+        Map<Integer, Map<Integer, StringBuilder>> markedTexts = new HashMap<>();
+        for (TaggedTable table : pageTables) {
+            List<String[]> rows = new ArrayList<>();
+            for (List<ContentRef>[] row : table.rows) {
+                String[] texts = new String[row.length];
+                for (int columnIdx = 0; columnIdx < row.length; columnIdx++) {
+                    StringBuilder text = new StringBuilder();
+                    if (row[columnIdx] != null) {
+                        for (ContentRef ref : row[columnIdx]) {
+                            StringBuilder markedText = getMarkedTexts(ref.pageIdx, markedTexts).get(ref.mcid);
+                            if (markedText != null) {
+                                text.append(markedText);
+                            }
+                        }
+                    }
+                    texts[columnIdx] = text.toString().trim();
+                }
+                rows.add(texts);
+            }
+            retVal.add(rows);
+        }
+        return retVal;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    /**
+     * @param element
+     * @param pageIdx page of the closest ancestor with one, null if none
+     */
+    private void readElement(PDStructureElement element, Integer pageIdx) {
+        pageIdx = getPageIdx(element.getPage(), pageIdx);
+        if (StandardStructureTypes.TABLE.equals(element.getStandardStructureType())) {
+            readTable(element, pageIdx);
+            return;
+        }
+        for (Object kid : element.getKids()) {
+            if (kid instanceof PDStructureElement) {
+                readElement((PDStructureElement) kid, pageIdx);
+            } else {
+                // content outside of tables still makes a tagged page
+                addContent(kid, pageIdx, new ArrayList<ContentRef>());
+            }
+        }
+    }
+
+    private void readTable(PDStructureElement tableElement, Integer pageIdx) {
+        List<PDStructureElement> rowElements = new ArrayList<>();
+        collectRows(tableElement, rowElements);
+        TaggedTable table = null;
+        // row idx -> columns taken by the cells spanning several rows
+        List<boolean[]> takenColumns = new ArrayList<>();
+        for (int rowIdx = 0; rowIdx < rowElements.size(); rowIdx++) {
+            PDStructureElement rowElement = rowElements.get(rowIdx);
+            Integer rowPageIdx = getPageIdx(rowElement.getPage(), pageIdx);
+            List<List<ContentRef>> cells = new ArrayList<>();
+            List<int[]> spans = new ArrayList<>();
+            for (Object kid : rowElement.getKids()) {
+                if (kid instanceof PDStructureElement) {
+                    PDStructureElement cellElement = (PDStructureElement) kid;
+                    String type = cellElement.getStandardStructureType();
+                    if (StandardStructureTypes.TD.equals(type) || StandardStructureTypes.TH.equals(type)) {
+                        List<ContentRef> refs = new ArrayList<>();
+                        collectContent(cellElement, getPageIdx(cellElement.getPage(), rowPageIdx), refs);
+                        cells.add(refs);
+                        spans.add(getSpans(cellElement));
+                    }
+                }
+            }
+            Integer firstPageIdx = getFirstPageIdx(cells, rowPageIdx);
+            if (firstPageIdx == null) {
+                continue;
+            }
+            if (table == null || table.pageIdx != firstPageIdx) {
+                table = new TaggedTable(firstPageIdx);
+                if (!tables.containsKey(firstPageIdx)) {
+                    tables.put(firstPageIdx, new ArrayList<TaggedTable>());
+                }
+                tables.get(firstPageIdx).add(table);
+            }
+            table.rows.add(layoutRow(rowIdx, cells, spans, takenColumns));
+        }
+    }
+
+    private static void collectRows(PDStructureElement element, List<PDStructureElement> rowElements) {
+        for (Object kid : element.getKids()) {
+            if (!(kid instanceof PDStructureElement)) {
+                continue;
+            }
+            PDStructureElement kidElement = (PDStructureElement) kid;
+            String type = kidElement.getStandardStructureType();
+            if (StandardStructureTypes.TR.equals(type)) {
+                rowElements.add(kidElement);
+            } else if (StandardStructureTypes.T_HEAD.equals(type) || StandardStructureTypes.T_BODY.equals(type)
+                    || StandardStructureTypes.T_FOOT.equals(type)) {
+                collectRows(kidElement, rowElements);
+            }
+        }
+    }
+
+    /**
+     * Put the cells of a row in the columns left by the cells of the rows
+     * above
+     *
+     * @param rowIdx
+     * @param cells
+     * @param spans column and row span of each cell
+     * @param takenColumns columns taken in each row, updated with the spans
+     * of this row
+     * @return content of each column
+     */
+    @SuppressWarnings("unchecked")
+    private static List<ContentRef>[] layoutRow(int rowIdx, List<List<ContentRef>> cells, List<int[]> spans,
+            List<boolean[]> takenColumns) {
+        List<List<ContentRef>> retVal = new ArrayList<>();
+        boolean[] taken = rowIdx < takenColumns.size() ? takenColumns.get(rowIdx) : new boolean[0];
+        int columnIdx = 0;
+        for (int cellIdx = 0; cellIdx < cells.size(); cellIdx++) {
+            while (columnIdx < taken.length && taken[columnIdx]) {
+                retVal.add(null);
+                columnIdx++;
+            }
+            int colSpan = spans.get(cellIdx)[0];
+            int rowSpan = spans.get(cellIdx)[1];
+            retVal.add(cells.get(cellIdx));
+            for (int spannedIdx = 1; spannedIdx < colSpan; spannedIdx++) {
+                retVal.add(null);
+            }
+            for (int spannedRow = rowIdx + 1; spannedRow < rowIdx + rowSpan; spannedRow++) {
+                while (takenColumns.size() <= spannedRow) {
+                    takenColumns.add(new boolean[0]);
+                }
+                boolean[] spannedTaken = takenColumns.get(spannedRow);
+                if (spannedTaken.length < columnIdx + colSpan) {
+                    spannedTaken = Arrays.copyOf(spannedTaken, columnIdx + colSpan);
+                    takenColumns.set(spannedRow, spannedTaken);
+                }
+                for (int spannedIdx = columnIdx; spannedIdx < columnIdx + colSpan; spannedIdx++) {
+                    spannedTaken[spannedIdx] = true;
+                }
+            }
+            columnIdx += colSpan;
+        }
+        return retVal.toArray(new List[retVal.size()]);
+    }
+
+    /**
+     * @param cellElement
+     * @return column span and row span of the cell, 1 by default
+     */
+    private static int[] getSpans(PDStructureElement cellElement) {
+        int[] retVal = {1, 1};
+        Revisions<PDAttributeObject> attributes = cellElement.getAttributes();
+        for (int idx = 0; idx < attributes.size(); idx++) {
+            PDAttributeObject attribute = attributes.getObject(idx);
+            if (attribute instanceof PDTableAttributeObject) {
+                retVal[0] = Math.max(1, ((PDTableAttributeObject) attribute).getColSpan());
+                retVal[1] = Math.max(1, ((PDTableAttributeObject) attribute).getRowSpan());
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @param element
+     * @param pageIdx page of the element
+     * @param refs receives the marked content of the element and its
+     * descendants
+     */
+    private void collectContent(PDStructureElement element, Integer pageIdx, List<ContentRef> refs) {
+        for (Object kid : element.getKids()) {
+            if (kid instanceof PDStructureElement) {
+                PDStructureElement kidElement = (PDStructureElement) kid;
+                collectContent(kidElement, getPageIdx(kidElement.getPage(), pageIdx), refs);
+            } else {
+                addContent(kid, pageIdx, refs);
+            }
+        }
+    }
+
+    /**
+     * @param kid marked content id or reference, other kids are ignored
+     * @param pageIdx page of the parent element
+     * @param refs
+     */
+    private void addContent(Object kid, Integer pageIdx, List<ContentRef> refs) {
+        ContentRef ref = null;
+        if (kid instanceof Integer && pageIdx != null) {
+            ref = new ContentRef(pageIdx, (Integer) kid);
+        } else if (kid instanceof PDMarkedContentReference) {
+            PDMarkedContentReference reference = (PDMarkedContentReference) kid;
+            Integer refPageIdx = getPageIdx(reference.getPage(), pageIdx);
+            if (refPageIdx != null) {
+                ref = new ContentRef(refPageIdx, reference.getMCID());
+            }
+        }
+        if (ref != null) {
+            refs.add(ref);
+            taggedPages.add(ref.pageIdx);
+        }
+    }
+
+    private static Integer getFirstPageIdx(List<List<ContentRef>> cells, Integer defaultPageIdx) {
+        for (List<ContentRef> refs : cells) {
+            if (!refs.isEmpty()) {
+                return refs.get(0).pageIdx;
+            }
+        }
+        return defaultPageIdx;
+    }
+
+    /**
+     * @param page
+     * @param defaultPageIdx
+     * @return idx of the page, defaultPageIdx if there is no page or it isn't
+     * a page of the document
+     */
+    private Integer getPageIdx(PDPage page, Integer defaultPageIdx) {
+        Integer retVal = page == null ? null : pageIdxs.get(page.getCOSObject());
+        return retVal != null ? retVal : defaultPageIdx;
+    }
+
+    /**
+     * @param pageIdx
+     * @param markedTexts texts by marked content id of the pages read so far
+     * @return
+     * @throws IOException
+     */
+    private Map<Integer, StringBuilder> getMarkedTexts(int pageIdx,
+            Map<Integer, Map<Integer, StringBuilder>> markedTexts) throws IOException {
+        Map<Integer, StringBuilder> retVal = markedTexts.get(pageIdx);
+        if (retVal == null) {
+            retVal = new HashMap<>();
+            PDFMarkedContentExtractor extractor = new MarkedContentExtractor();
+            extractor.processPage(document.getPage(pageIdx));
+            for (PDMarkedContent markedContent : extractor.getMarkedContents()) {
+                addMarkedText(markedContent, retVal);
+            }
+            markedTexts.put(pageIdx, retVal);
+        }
+        return retVal;
+    }
+
+    private static void addMarkedText(PDMarkedContent markedContent, Map<Integer, StringBuilder> texts) {
+        if (markedContent.getMCID() >= 0) {
+            StringBuilder text = texts.get(markedContent.getMCID());
+            if (text == null) {
+                text = new StringBuilder();
+                texts.put(markedContent.getMCID(), text);
+            }
+            appendText(markedContent, text);
+        }
+        for (Object content : markedContent.getContents()) {
+            if (content instanceof PDMarkedContent) {
+                addMarkedText((PDMarkedContent) content, texts);
+            }
+        }
+    }
+
+    /**
+     * @param markedContent
+     * @param text receives the text of the content, nested content included
+     */
+    private static void appendText(PDMarkedContent markedContent, StringBuilder text) {
+        for (Object content : markedContent.getContents()) {
+            if (content instanceof TextPosition) {
+                text.append(((TextPosition) content).getUnicode());
+            } else if (content instanceof PDMarkedContent) {
+                appendText((PDMarkedContent) content, text);
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Inner class
+    /**
+     * Also reads the properties of marked content given by name, in the
+     * <code>Properties</code> of the resources
+     */
+    private static class MarkedContentExtractor extends PDFMarkedContentExtractor {
+
+        private MarkedContentExtractor() throws IOException {
+            addOperator(new OperatorProcessor() {
+                @Override
+                public void process(Operator operator, List<COSBase> operands) throws IOException {
+                    COSName tag = operands.size() > 0 && operands.get(0) instanceof COSName
+                            ? (COSName) operands.get(0)
+                            : null;
+                    COSDictionary properties = null;
+                    COSBase propertiesOperand = operands.size() > 1 ? operands.get(1) : null;
+                    if (propertiesOperand instanceof COSDictionary) {
+                        properties = (COSDictionary) propertiesOperand;
+                    } else if (propertiesOperand instanceof COSName && getResources() != null) {
+                        PDPropertyList propertyList = getResources().getProperties((COSName) propertiesOperand);
+                        properties = propertyList != null ? propertyList.getCOSObject() : null;
+                    }
+                    beginMarkedContentSequence(tag, properties);
+                }
+
+                @Override
+                public String getName() {
+                    return "BDC";
+                }
+            });
+        }
+    }
+
+    private static class ContentRef {
+
+        private final int pageIdx;
+        private final int mcid;
+
+        private ContentRef(int pageIdx, int mcid) {
+            this.pageIdx = pageIdx;
+            this.mcid = mcid;
+        }
+    }
+
+    private static class TaggedTable {
+
+        private final int pageIdx;
+        // content of each column of each row
+        private final List<List<ContentRef>[]> rows = new ArrayList<>();
+
+        private TaggedTable(int pageIdx) {
+            this.pageIdx = pageIdx;
+        }
+    }
+}
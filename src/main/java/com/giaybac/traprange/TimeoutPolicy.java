@@ -0,0 +1,23 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+/**
+ * What the extractor does when a page or the whole document runs out of its
+ * time budget
+ */
+public enum TimeoutPolicy {
+
+    /**
+     * Abort the extraction and throw {@link ExtractionTimeoutException}
+     */
+    FAIL_DOCUMENT,
+    /**
+     * Drop the page that ran out of time, report it in
+     * {@link ExtractionResult#getSkippedPages()} and continue with the next one
+     */
+    SKIP_PAGE
+}
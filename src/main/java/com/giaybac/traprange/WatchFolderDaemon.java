@@ -0,0 +1,454 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extract the PDF files dropped into a directory, for as long as it runs.
+ * <p>
+ * The directory is watched with a {@link WatchService}, and read once at
+ * start for the files dropped while it wasn't running. A file is taken once
+ * it is complete: when its size and modification time didn't change for
+ * {@link #setStableMillis(long)}, or when its marker file exists, see
+ * {@link #setMarkerSuffix(String)}. It's then extracted by a pool of worker
+ * threads started up front, sharing one {@link TableExtractionEngine} and
+ * its font cache. Tables go to the output directory as by
+ * {@link BatchRunner}; the input is moved to the done directory, or to the
+ * failed directory with a <code>.error</code> file holding the error. A file
+ * dropped again with the same name replaces the earlier one.
+ */
+public class WatchFolderDaemon implements Closeable {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    public static final long DEFAULT_STABLE_MILLIS = 1000;
+    public static final long DEFAULT_REPORT_INTERVAL_MILLIS = 60000;
+    private static final long TICK_MILLIS = 50;
+    private static final long THROUGHPUT_WINDOW_MILLIS = 60000;
+    private static final String ERROR_EXTENSION = ".error";
+
+    private final Logger logger = LoggerFactory.getLogger(WatchFolderDaemon.class);
+    private final TableExtractionEngine engine;
+    private final ExtractionOptions options;
+    private final File inputDir;
+    private final File outputDir;
+    private final File doneDir;
+    private final File failedDir;
+    private final int workerCount;
+    private long stableMillis = DEFAULT_STABLE_MILLIS;
+    // null when files are taken once stable
+    private String markerSuffix;
+    private long reportIntervalMillis = DEFAULT_REPORT_INTERVAL_MILLIS;
+
+    private WatchService watchService;
+    // watches the directory and checks the pending files
+    private ScheduledExecutorService scheduler;
+    private ThreadPoolExecutor workers;
+    // files seen, not complete yet -> last size and modification time
+    private final Map<Path, Observation> pendingFiles = new ConcurrentHashMap<>();
+    // files given to the workers, until they are moved
+    private final Set<Path> takenFiles = ConcurrentHashMap.newKeySet();
+    private final AtomicLong extractedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    // end time of the files of the throughput window, guarded by itself
+    private final ArrayDeque<Long> endTimes = new ArrayDeque<>();
+    private final CountDownLatch closedLatch = new CountDownLatch(1);
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    /**
+     * @param engine shared by the workers
+     * @param options
+     * @param inputDir watched directory
+     * @param outputDir receives the tables, one HTML file per input
+     * @param doneDir receives the extracted inputs
+     * @param failedDir receives the inputs which failed and their errors
+     * @param workerCount
+     */
+    public WatchFolderDaemon(TableExtractionEngine engine, ExtractionOptions options, File inputDir,
+            File outputDir, File doneDir, File failedDir, int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Invalid worker count: " + workerCount);
+        }
+        this.engine = engine;
+        this.options = options;
+        this.inputDir = inputDir;
+        this.outputDir = outputDir;
+        this.doneDir = doneDir;
+        this.failedDir = failedDir;
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Watch the directory and start the workers
+     *
+     * @throws IOException
+     */
+    public synchronized void start() throws IOException {
+        if (scheduler != null) {
+            throw new IllegalStateException("Watch folder daemon is already started");
+        }
+        for (File dir : new File[]{inputDir, outputDir, doneDir, failedDir}) {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Create directory fail: " + dir);
+            }
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        inputDir.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        workers.prestartAllCoreThreads();
+        scanInputDir();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        if (reportIntervalMillis > 0) {
+            scheduler.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    logger.info(getReport());
+                }
+            }, reportIntervalMillis, reportIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Watching " + inputDir + " with " + workerCount + " worker(s)");
+    }
+
+    /**
+     * Stop watching, the files being extracted are finished
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (scheduler == null || closedLatch.getCount() == 0) {
+            return;
+        }
+        scheduler.shutdownNow();
+        watchService.close();
+        try {
+            scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        } finally {
+            closedLatch.countDown();
+        }
+        logger.info(getReport());
+    }
+
+    /**
+     * Wait until the daemon is closed
+     *
+     * @throws InterruptedException
+     */
+    public void await() throws InterruptedException {
+        closedLatch.await();
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    /**
+     * @param stableMillis time a file keeps its size and modification time
+     * before it's taken, unused with a marker
+     * @return
+     */
+    public WatchFolderDaemon setStableMillis(long stableMillis) {
+        if (stableMillis < 0) {
+            throw new IllegalArgumentException("Invalid stable time: " + stableMillis);
+        }
+        this.stableMillis = stableMillis;
+        return this;
+    }
+
+    /**
+     * @param markerSuffix a file is taken once the file of its name followed
+     * by this suffix exists, e.g. <code>.ready</code> for
+     * <code>table.pdf.ready</code>; the marker is deleted with the input.
+     * Null to take files once stable.
+     * @return
+     */
+    public WatchFolderDaemon setMarkerSuffix(String markerSuffix) {
+        this.markerSuffix = markerSuffix;
+        return this;
+    }
+
+    /**
+     * @param reportIntervalMillis how often the queue depth and throughput
+     * are logged, 0 to not log them
+     * @return
+     */
+    public WatchFolderDaemon setReportIntervalMillis(long reportIntervalMillis) {
+        this.reportIntervalMillis = reportIntervalMillis;
+        return this;
+    }
+
+    /**
+     * @return files seen which aren't complete yet
+     */
+    public int getPendingCount() {
+        return pendingFiles.size();
+    }
+
+    /**
+     * @return complete files waiting for a worker
+     */
+    public int getQueueDepth() {
+        return workers == null ? 0 : workers.getQueue().size();
+    }
+
+    /**
+     * @return files being extracted
+     */
+    public int getActiveCount() {
+        return workers == null ? 0 : workers.getActiveCount();
+    }
+
+    public long getExtractedCount() {
+        return extractedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * @return files extracted or failed during the last minute
+     */
+    public int getFilesPerMinute() {
+        synchronized (endTimes) {
+            pruneEndTimes(System.nanoTime());
+            return endTimes.size();
+        }
+    }
+
+    /**
+     * @return mean time from a file being taken to its output being written,
+     * 0 if none was extracted
+     */
+    public long getAverageLatencyMillis() {
+        long count = extractedCount.get() + failedCount.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / count);
+    }
+
+    /**
+     * @return queue depth and throughput, in one line
+     */
+    public String getReport() {
+        return "Pending: " + getPendingCount() + ", queued: " + getQueueDepth() + ", active: " + getActiveCount()
+                + ", extracted: " + getExtractedCount() + ", failed: " + getFailedCount()
+                + ", " + getFilesPerMinute() + " file(s)/min, average latency: " + getAverageLatencyMillis() + " ms";
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private void tick() {
+        try {
+            WatchKey key;
+            while ((key = watchService.poll()) != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        scanInputDir();
+                    } else {
+                        see(inputDir.toPath().resolve((Path) event.context()));
+                    }
+                }
+                key.reset();
+            }
+            checkPendingFiles();
+        } catch (ClosedWatchServiceException ex) {
+            // closing
+        } catch (RuntimeException ex) {
+            // the scheduler would stop on an exception
+            logger.error("Watch " + inputDir + " fail", ex);
+        }
+    }
+
+    private void scanInputDir() {
+        File[] files = inputDir.listFiles();
+        if (files == null) {
+            logger.error("List watched directory fail: " + inputDir);
+            return;
+        }
+        for (File file : files) {
+            see(file.toPath());
+        }
+    }
+
+    /**
+     * @param path created or modified in the input directory
+     */
+    private void see(Path path) {
+        String name = path.getFileName().toString();
+        if (markerSuffix != null && name.endsWith(markerSuffix)) {
+            path = path.resolveSibling(name.substring(0, name.length() - markerSuffix.length()));
+            name = path.getFileName().toString();
+        }
+        if (!name.toLowerCase().endsWith(".pdf") || takenFiles.contains(path)) {
+            return;
+        }
+        if (!pendingFiles.containsKey(path)) {
+            pendingFiles.put(path, Observation.NONE);
+        }
+    }
+
+    private void checkPendingFiles() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, Observation>> iterator = pendingFiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Observation> entry = iterator.next();
+            File file = entry.getKey().toFile();
+            if (!file.isFile()) {
+                // gone, or its marker came first
+                if (markerSuffix == null || !new File(file.getPath() + markerSuffix).exists()) {
+                    iterator.remove();
+                }
+                continue;
+            }
+            boolean complete;
+            if (markerSuffix != null) {
+                complete = new File(file.getPath() + markerSuffix).exists();
+            } else {
+                Observation observation = new Observation(file.length(), file.lastModified(), now);
+                Observation last = entry.getValue();
+                if (last.isSame(observation)) {
+                    complete = now - last.sinceNanos >= TimeUnit.MILLISECONDS.toNanos(stableMillis);
+                } else {
+                    entry.setValue(observation);
+                    complete = false;
+                }
+            }
+            if (complete) {
+                iterator.remove();
+                take(entry.getKey());
+            }
+        }
+    }
+
+    private void take(final Path path) {
+        takenFiles.add(path);
+        final long takenNanos = System.nanoTime();
+        workers.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    extract(path.toFile());
+                } finally {
+                    takenFiles.remove(path);
+                    long endNanos = System.nanoTime();
+                    totalLatencyNanos.addAndGet(endNanos - takenNanos);
+                    synchronized (endTimes) {
+                        endTimes.addLast(endNanos);
+                        pruneEndTimes(endNanos);
+                    }
+                }
+            }
+        });
+    }
+
+    private void extract(File input) {
+        try {
+            try (ExtractionResult result = engine.extract(input, options)) {
+                BatchRunner.writeTables(result.getTables(), BatchRunner.getOutputFile(outputDir, input));
+            }
+            moveInput(input, doneDir);
+            extractedCount.incrementAndGet();
+            logger.debug("Extracted " + input);
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Extract " + input + " fail", ex);
+            try {
+                moveInput(input, failedDir);
+                StringWriter error = new StringWriter();
+                ex.printStackTrace(new PrintWriter(error));
+                Files.write(new File(failedDir, input.getName() + ERROR_EXTENSION).toPath(),
+                        error.toString().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException moveEx) {
+                logger.error("Move " + input + " to " + failedDir + " fail", moveEx);
+            }
+            failedCount.incrementAndGet();
+        }
+    }
+
+    private void moveInput(File input, File dir) throws IOException {
+        Files.move(input.toPath(), new File(dir, input.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        if (markerSuffix != null) {
+            new File(input.getPath() + markerSuffix).delete();
+        }
+    }
+
+    /**
+     * Drop the end times out of the throughput window, the lock being held
+     *
+     * @param now
+     */
+    private void pruneEndTimes(long now) {
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(THROUGHPUT_WINDOW_MILLIS);
+        while (!endTimes.isEmpty() && now - endTimes.peekFirst() > windowNanos) {
+            endTimes.removeFirst();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Inner class
+    /**
+     * Size and modification time of a pending file, since when they are the
+     * same
+     */
+    private static class Observation {
+
+        private static final Observation NONE = new Observation(-1, -1, 0);
+
+        private final long size;
+        private final long lastModified;
+        private final long sinceNanos;
+
+        private Observation(long size, long lastModified, long sinceNanos) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.sinceNanos = sinceNanos;
+        }
+
+        private boolean isSame(Observation other) {
+            return size == other.size && lastModified == other.lastModified;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/**
+* Copyright (C) 2015, GIAYBAC
+*
+* Released under the MIT license
+*/
+package com.giaybac.traprange.entity;
+
+/**
+ * How the values of a {@link TableColumn} are stored, inferred from its texts
+ */
+public enum ColumnType {
+
+    /**
+     * Every text is an integer, ex: 42 or -7. Stored as long.
+     */
+    LONG,
+    /**
+     * Every text is a decimal with the same digit count after the point, ex:
+     * 12.50 or -0.75. Stored as double.
+     */
+    DOUBLE,
+    /**
+     * Few distinct texts, ex: a currency or a status. Stored as codes of a
+     * dictionary.
+     */
+    DICTIONARY,
+    /**
+     * Any other column, stored as texts
+     */
+    STRING
+}
@@ -0,0 +1,107 @@
+/**
+* Copyright (C) 2015, GIAYBAC
+*
+* Released under the MIT license
+*/
+package com.giaybac.traprange.entity;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * A table stored by column: each {@link TableColumn} keeps numbers as
+ * primitives, repeated texts as dictionary codes and which rows have a cell.
+ * {@link #getRows()} is a read-only view which builds each row when it's
+ * read, with the same cells as the table it was created from.
+ */
+public class ColumnarTable extends Table {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    // idx of each row
+    private final int[] rowIdxs;
+    private final TableColumn[] columns;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    private ColumnarTable(int pageIdx, int columnsCount, int[] rowIdxs, TableColumn[] columns) {
+        super(pageIdx, columnsCount, new RowList(rowIdxs, columns));
+        this.rowIdxs = rowIdxs;
+        this.columns = columns;
+    }
+
+    /**
+     * @param table
+     * @return the rows of the table stored by column. The table can then be
+     * dropped.
+     */
+    public static ColumnarTable of(Table table) {
+        List<TableRow> rows = table.getRows();
+        int[] rowIdxs = new int[rows.size()];
+        String[][] texts = new String[table.getColumnsCount()][rows.size()];
+        for (int row = 0; row < rowIdxs.length; row++) {
+            TableRow tableRow = rows.get(row);
+            rowIdxs[row] = tableRow.getIdx();
+            for (TableCell cell : tableRow.getCells()) {
+                texts[cell.getIdx()][row] = cell.getContent();
+            }
+        }
+        TableColumn[] columns = new TableColumn[texts.length];
+        for (int columnIdx = 0; columnIdx < columns.length; columnIdx++) {
+            columns[columnIdx] = TableColumn.of(texts[columnIdx]);
+            texts[columnIdx] = null;
+        }
+        return new ColumnarTable(table.getPageIdx(), columns.length, rowIdxs, columns);
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    public int getRowCount() {
+        return rowIdxs.length;
+    }
+
+    /**
+     * @param row position of the row in the table
+     * @return idx of the row, see {@link TableRow#getIdx()}
+     */
+    public int getRowIdx(int row) {
+        return rowIdxs[row];
+    }
+
+    public TableColumn getColumn(int columnIdx) {
+        return columns[columnIdx];
+    }
+
+    //--------------------------------------------------------------------------
+    //  Inner class
+    /**
+     * Rows built from the columns when read
+     */
+    private static class RowList extends AbstractList<TableRow> {
+
+        private final int[] rowIdxs;
+        private final TableColumn[] columns;
+
+        private RowList(int[] rowIdxs, TableColumn[] columns) {
+            this.rowIdxs = rowIdxs;
+            this.columns = columns;
+        }
+
+        @Override
+        public TableRow get(int index) {
+            TableRow retVal = new TableRow(rowIdxs[index]);
+            for (int columnIdx = 0; columnIdx < columns.length; columnIdx++) {
+                String text = columns[columnIdx].getText(index);
+                if (text != null) {
+                    retVal.getCells().add(new TableCell(columnIdx, text));
+                }
+            }
+            return retVal;
+        }
+
+        @Override
+        public int size() {
+            return rowIdxs.length;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/**
+* Copyright (C) 2015, GIAYBAC
+*
+* Released under the MIT license
+*/
+package com.giaybac.traprange.entity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only temp file holding the rows spilled by the
+ * {@link SpilledRowList}s of an extraction, so that millions of cells don't
+ * stay on heap. A row is written as its byte length, its idx, its cell count
+ * and each cell idx and UTF-8 content. A row never crosses a segment of
+ * {@link #SEGMENT_SIZE} bytes, the end of a segment a row doesn't fit in is
+ * left as a hole. Rows are read back through a read-only memory mapping of the
+ * written part of their segment: a full segment is mapped once, the segment
+ * still being written is mapped again when a row past its mapping is read.
+ */
+public class RowSpillFile implements Closeable {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    // small enough for the segment being written to be remapped cheaply
+    static final int SEGMENT_SIZE = 1 << 22;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    // rows encoded but not written to the file yet
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(WRITE_BUFFER_SIZE);
+    private final DataOutputStream pendingOutput = new DataOutputStream(pending);
+    // length of the file including the pending bytes
+    private long length = 0;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private boolean closed = false;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    /**
+     * Create the file in the default temp directory
+     *
+     * @throws IOException
+     */
+    public RowSpillFile() throws IOException {
+        this.file = File.createTempFile("traprange-rows", ".bin");
+        file.deleteOnExit();
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.channel = randomAccessFile.getChannel();
+    }
+
+    /**
+     * Delete the file, rows of its lists can't be read anymore
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        segments.clear();
+        try {
+            randomAccessFile.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return bytes written, including the holes at the end of segments
+     */
+    public synchronized long length() {
+        return length;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * @param row
+     * @return offset of the row in the file
+     * @throws IOException
+     */
+    synchronized long write(TableRow row) throws IOException {
+        checkOpen();
+        byte[] bytes = encode(row);
+        if (bytes.length > SEGMENT_SIZE) {
+            throw new IOException("Row " + row.getIdx() + " is too large to spill: " + bytes.length + " byte(s)");
+        }
+        long segmentEnd = (length / SEGMENT_SIZE + 1) * SEGMENT_SIZE;
+        if (length + bytes.length > segmentEnd) {
+            // rows don't cross segments: rows are written at their offset,
+            // the end of the segment stays a hole
+            flush();
+            length = segmentEnd;
+        }
+        long retVal = length;
+        pendingOutput.write(bytes);
+        length += bytes.length;
+        if (pending.size() >= WRITE_BUFFER_SIZE) {
+            flush();
+        }
+        return retVal;
+    }
+
+    /**
+     * @param offset returned by {@link #write(TableRow)}
+     * @return a new copy of the row
+     * @throws IOException
+     */
+    synchronized TableRow read(long offset) throws IOException {
+        checkOpen();
+        flush();
+        int segmentIdx = (int) (offset / SEGMENT_SIZE);
+        int position = (int) (offset % SEGMENT_SIZE);
+        MappedByteBuffer segment = getSegment(segmentIdx, position + Integer.BYTES);
+        int rowEnd = position + Integer.BYTES + segment.getInt(position);
+        if (segment.limit() < rowEnd) {
+            segment = getSegment(segmentIdx, rowEnd);
+        }
+        ByteBuffer buffer = segment.duplicate();
+        buffer.position(position + Integer.BYTES);
+        return decode(buffer);
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private static TableRow decode(ByteBuffer buffer) {
+        TableRow retVal = new TableRow(buffer.getInt());
+        int cellCount = buffer.getInt();
+        for (int cellIdx = 0; cellIdx < cellCount; cellIdx++) {
+            int idx = buffer.getInt();
+            byte[] content = new byte[buffer.getInt()];
+            buffer.get(content);
+            retVal.getCells().add(new TableCell(idx, new String(content, StandardCharsets.UTF_8)));
+        }
+        return retVal;
+    }
+
+    private static byte[] encode(TableRow row) throws IOException {
+        ByteArrayOutputStream retVal = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(retVal);
+        // byte length, set below
+        output.writeInt(0);
+        output.writeInt(row.getIdx());
+        output.writeInt(row.getCells().size());
+        for (TableCell cell : row.getCells()) {
+            byte[] content = cell.getContent().getBytes(StandardCharsets.UTF_8);
+            output.writeInt(cell.getIdx());
+            output.writeInt(content.length);
+            output.write(content);
+        }
+        byte[] bytes = retVal.toByteArray();
+        ByteBuffer.wrap(bytes).putInt(bytes.length - Integer.BYTES);
+        return bytes;
+    }
+
+    private void flush() throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        long position = length - buffer.remaining();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        pending.reset();
+    }
+
+    /**
+     * @param segmentIdx
+     * @param minLimit bytes of the segment the mapping must hold
+     * @return mapping of the bytes of the segment written so far
+     * @throws IOException
+     */
+    private MappedByteBuffer getSegment(int segmentIdx, int minLimit) throws IOException {
+        while (segments.size() <= segmentIdx) {
+            segments.add(null);
+        }
+        MappedByteBuffer retVal = segments.get(segmentIdx);
+        if (retVal == null || retVal.limit() < minLimit) {
+            long start = (long) segmentIdx * SEGMENT_SIZE;
+            long size = Math.min(length - start, SEGMENT_SIZE);
+            if (size < minLimit) {
+                throw new IOException("Row spill file is truncated at " + (start + size));
+            }
+            retVal = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            segments.set(segmentIdx, retVal);
+        }
+        return retVal;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Row spill file is closed");
+        }
+    }
+}
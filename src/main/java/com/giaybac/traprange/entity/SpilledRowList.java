@@ -0,0 +1,168 @@
+/**
+* Copyright (C) 2015, GIAYBAC
+*
+* Released under the MIT license
+*/
+package com.giaybac.traprange.entity;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Rows of a table kept in a {@link RowSpillFile}, except the last rows added:
+ * at most a window of rows stays on heap, until {@link #spill()}. Rows can only
+ * be appended. Each read of a spilled row returns a new copy of the row, read
+ * from the file: changing it doesn't change the list.
+ */
+public class SpilledRowList extends AbstractList<TableRow> {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private final RowSpillFile spillFile;
+    private final int windowSize;
+    // offset of each spilled row in the file
+    private long[] offsets = new long[16];
+    private int spilledCount = 0;
+    // rows added after the spilled ones
+    private final ArrayDeque<TableRow> window = new ArrayDeque<>();
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    /**
+     * @param spillFile
+     * @param windowSize rows kept on heap at most
+     */
+    public SpilledRowList(RowSpillFile spillFile, int windowSize) {
+        if (windowSize < 0) {
+            throw new IllegalArgumentException("Invalid row window: " + windowSize);
+        }
+        this.spillFile = spillFile;
+        this.windowSize = windowSize;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    /**
+     * Write the rows of the window to the file
+     */
+    public void spill() {
+        if (!window.isEmpty()) {
+            // rows move from the window to the file under the iterators
+            modCount++;
+        }
+        while (!window.isEmpty()) {
+            spillFirst();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Implement N Override
+    @Override
+    public TableRow get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        if (index >= spilledCount) {
+            return getWindowRow(index - spilledCount);
+        }
+        try {
+            return spillFile.read(offsets[index]);
+        } catch (IOException ex) {
+            throw new RuntimeException("Read spilled row fail", ex);
+        }
+    }
+
+    /**
+     * Spilled rows, then the rows of the window without indexing it
+     *
+     * @return
+     */
+    @Override
+    public Iterator<TableRow> iterator() {
+        return new Iterator<TableRow>() {
+            private final int expectedModCount = modCount;
+            private int index = 0;
+            private Iterator<TableRow> windowIterator;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public TableRow next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (index < spilledCount) {
+                    return get(index++);
+                }
+                if (windowIterator == null) {
+                    windowIterator = window.iterator();
+                }
+                index++;
+                return windowIterator.next();
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return spilledCount + window.size();
+    }
+
+    @Override
+    public void add(int index, TableRow row) {
+        if (index != size()) {
+            throw new UnsupportedOperationException("Rows can only be appended");
+        }
+        window.add(row);
+        modCount++;
+        if (window.size() > windowSize) {
+            spillFirst();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private void spillFirst() {
+        if (spilledCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, spilledCount * 2);
+        }
+        try {
+            offsets[spilledCount] = spillFile.write(window.getFirst());
+        } catch (IOException ex) {
+            throw new RuntimeException("Spill row fail", ex);
+        }
+        spilledCount++;
+        window.removeFirst();
+    }
+
+    /**
+     * @param windowIdx
+     * @return row of the window, walked from its nearest end
+     */
+    private TableRow getWindowRow(int windowIdx) {
+        Iterator<TableRow> iterator;
+        int steps;
+        if (windowIdx < window.size() / 2) {
+            iterator = window.iterator();
+            steps = windowIdx;
+        } else {
+            iterator = window.descendingIterator();
+            steps = window.size() - 1 - windowIdx;
+        }
+        for (int step = 0; step < steps; step++) {
+            iterator.next();
+        }
+        return iterator.next();
+    }
+}
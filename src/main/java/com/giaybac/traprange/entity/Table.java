@@ -17,14 +17,24 @@ public class Table {
     //--------------------------------------------------------------------------
     //  Members
     private final int pageIdx;
-    private final List<TableRow> rows = new ArrayList<>();
+    private final List<TableRow> rows;
     private final int columnsCount;
 
     //--------------------------------------------------------------------------
     //  Initialization and releasation
     public Table(int idx, int columnsCount) {
+        this(idx, columnsCount, new ArrayList<TableRow>());
+    }
+
+    /**
+     * @param idx
+     * @param columnsCount
+     * @param rows empty list receiving the rows, ex: a {@link SpilledRowList}
+     */
+    public Table(int idx, int columnsCount, List<TableRow> rows) {
         this.pageIdx = idx;
         this.columnsCount = columnsCount;
+        this.rows = rows;
     }
 
     //--------------------------------------------------------------------------
@@ -33,10 +43,19 @@ public class Table {
         return pageIdx;
     }
 
+    /**
+     * @return rows of the table. Rows of a {@link SpilledRowList} are read
+     * back as copies once spilled: changing a row read from the list doesn't
+     * change the table.
+     */
     public List<TableRow> getRows() {
         return rows;
     }
 
+    public int getColumnsCount() {
+        return columnsCount;
+    }
+
     public String toHtml() {
         return toString(true);
     }
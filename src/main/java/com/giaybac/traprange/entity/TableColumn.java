@@ -0,0 +1,330 @@
+/**
+* Copyright (C) 2015, GIAYBAC
+*
+* Released under the MIT license
+*/
+package com.giaybac.traprange.entity;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Values of one column of a {@link ColumnarTable}, by row. A row has a cell
+ * in the column if it's present; a present cell is valid if its text isn't
+ * empty. Only valid cells have a value.
+ */
+public class TableColumn {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    // a column with more distinct texts than valid cells / this isn't encoded
+    private static final int MIN_REPEAT_PER_TEXT = 2;
+    // significant digits a double keeps exactly
+    private static final int MAX_DOUBLE_DIGITS = 15;
+    // Long.MAX_VALUE has 19 digits
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final ColumnType type;
+    private final int rowCount;
+    private final BitSet present;
+    private final BitSet valid;
+    // one of them, depending on the type
+    private long[] longs;
+    private double[] doubles;
+    // digits after the point of the DOUBLE texts
+    private int scale;
+    private int[] codes;
+    private List<String> dictionary;
+    private String[] strings;
+
+    //--------------------------------------------------------------------------
+    //  Initialization and releasation
+    private TableColumn(ColumnType type, int rowCount, BitSet present, BitSet valid) {
+        this.type = type;
+        this.rowCount = rowCount;
+        this.present = present;
+        this.valid = valid;
+    }
+
+    /**
+     * Infer the type of a column and encode its texts
+     *
+     * @param texts text of each row, null if the row has no cell in the column
+     * @return
+     */
+    static TableColumn of(String[] texts) {
+        BitSet present = new BitSet(texts.length);
+        BitSet valid = new BitSet(texts.length);
+        for (int row = 0; row < texts.length; row++) {
+            if (texts[row] != null) {
+                present.set(row);
+                if (!texts[row].isEmpty()) {
+                    valid.set(row);
+                }
+            }
+        }
+        TableColumn retVal = toLongs(texts, present, valid);
+        if (retVal == null) {
+            retVal = toDoubles(texts, present, valid);
+        }
+        if (retVal == null) {
+            retVal = toCodes(texts, present, valid);
+        }
+        if (retVal == null) {
+            retVal = new TableColumn(ColumnType.STRING, texts.length, present, valid);
+            retVal.strings = new String[texts.length];
+            for (int row = valid.nextSetBit(0); row >= 0; row = valid.nextSetBit(row + 1)) {
+                retVal.strings[row] = texts[row];
+            }
+        }
+        return retVal;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    public ColumnType getType() {
+        return type;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @param row
+     * @return true if the row has a cell in this column
+     */
+    public boolean isPresent(int row) {
+        return present.get(row);
+    }
+
+    /**
+     * @param row
+     * @return true if the row has a non empty cell in this column
+     */
+    public boolean isValid(int row) {
+        return valid.get(row);
+    }
+
+    /**
+     * @return rows with a non empty cell, a copy
+     */
+    public BitSet getValidity() {
+        return (BitSet) valid.clone();
+    }
+
+    /**
+     * @param row
+     * @return value of a valid cell of a {@link ColumnType#LONG} column, 0 if
+     * the cell isn't valid
+     */
+    public long getLong(int row) {
+        checkType(ColumnType.LONG);
+        return longs[row];
+    }
+
+    /**
+     * @param row
+     * @return value of a valid cell of a {@link ColumnType#LONG} or
+     * {@link ColumnType#DOUBLE} column, 0 if the cell isn't valid
+     */
+    public double getDouble(int row) {
+        if (type == ColumnType.LONG) {
+            return longs[row];
+        }
+        checkType(ColumnType.DOUBLE);
+        return doubles[row];
+    }
+
+    /**
+     * @param row
+     * @return position of the text in the dictionary of a
+     * {@link ColumnType#DICTIONARY} column, -1 if the cell isn't valid
+     */
+    public int getCode(int row) {
+        checkType(ColumnType.DICTIONARY);
+        return codes[row];
+    }
+
+    /**
+     * @return distinct texts of a {@link ColumnType#DICTIONARY} column, in
+     * order of appearance
+     */
+    public List<String> getDictionary() {
+        checkType(ColumnType.DICTIONARY);
+        return Collections.unmodifiableList(dictionary);
+    }
+
+    /**
+     * @param row
+     * @return text of the cell as extracted, whatever the type. Null if the
+     * row has no cell in this column
+     */
+    public String getText(int row) {
+        if (!present.get(row)) {
+            return null;
+        }
+        if (!valid.get(row)) {
+            return "";
+        }
+        switch (type) {
+            case LONG:
+                return Long.toString(longs[row]);
+            case DOUBLE:
+                return formatDouble(doubles[row], scale);
+            case DICTIONARY:
+                return dictionary.get(codes[row]);
+            default:
+                return strings[row];
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private void checkType(ColumnType expectedType) {
+        if (type != expectedType) {
+            throw new IllegalStateException("Column of type " + type + " isn't " + expectedType);
+        }
+    }
+
+    /**
+     * @param texts
+     * @param present
+     * @param valid
+     * @return null if a valid text isn't an integer written as
+     * {@link Long#toString(long)} writes it
+     */
+    private static TableColumn toLongs(String[] texts, BitSet present, BitSet valid) {
+        long[] values = new long[texts.length];
+        for (int row = valid.nextSetBit(0); row >= 0; row = valid.nextSetBit(row + 1)) {
+            String text = texts[row];
+            if (getFractionDigits(text) != 0 || countDigits(text) > MAX_LONG_DIGITS) {
+                return null;
+            }
+            values[row] = Long.parseLong(text);
+            if (!Long.toString(values[row]).equals(text)) {
+                // leading zeros or -0
+                return null;
+            }
+        }
+        TableColumn retVal = new TableColumn(ColumnType.LONG, texts.length, present, valid);
+        retVal.longs = values;
+        return retVal;
+    }
+
+    /**
+     * @param texts
+     * @param present
+     * @param valid
+     * @return null if a valid text isn't a decimal written back the same with
+     * the scale of the column
+     */
+    private static TableColumn toDoubles(String[] texts, BitSet present, BitSet valid) {
+        double[] values = new double[texts.length];
+        int scale = -1;
+        for (int row = valid.nextSetBit(0); row >= 0; row = valid.nextSetBit(row + 1)) {
+            String text = texts[row];
+            int fractionDigits = getFractionDigits(text);
+            if (fractionDigits <= 0 || (scale >= 0 && fractionDigits != scale)
+                    || countDigits(text) > MAX_DOUBLE_DIGITS) {
+                return null;
+            }
+            scale = fractionDigits;
+            values[row] = Double.parseDouble(text);
+            if (!formatDouble(values[row], scale).equals(text)) {
+                return null;
+            }
+        }
+        if (scale < 0) {
+            return null;
+        }
+        TableColumn retVal = new TableColumn(ColumnType.DOUBLE, texts.length, present, valid);
+        retVal.doubles = values;
+        retVal.scale = scale;
+        return retVal;
+    }
+
+    /**
+     * @param texts
+     * @param present
+     * @param valid
+     * @return null if the column has too many distinct texts
+     */
+    private static TableColumn toCodes(String[] texts, BitSet present, BitSet valid) {
+        int maxDictionarySize = valid.cardinality() / MIN_REPEAT_PER_TEXT;
+        Map<String, Integer> textCodes = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        int[] codes = new int[texts.length];
+        for (int row = 0; row < texts.length; row++) {
+            if (!valid.get(row)) {
+                codes[row] = -1;
+                continue;
+            }
+            Integer code = textCodes.get(texts[row]);
+            if (code == null) {
+                if (dictionary.size() == maxDictionarySize) {
+                    return null;
+                }
+                code = dictionary.size();
+                textCodes.put(texts[row], code);
+                dictionary.add(texts[row]);
+            }
+            codes[row] = code;
+        }
+        TableColumn retVal = new TableColumn(ColumnType.DICTIONARY, texts.length, present, valid);
+        retVal.codes = codes;
+        retVal.dictionary = dictionary;
+        return retVal;
+    }
+
+    /**
+     * @param text
+     * @return digits after the point, 0 for an integer, -1 if the text isn't
+     * a number: an optional minus, digits, then an optional point and digits
+     */
+    private static int getFractionDigits(String text) {
+        int idx = text.startsWith("-") ? 1 : 0;
+        int integerStart = idx;
+        while (idx < text.length() && isDigit(text.charAt(idx))) {
+            idx++;
+        }
+        if (idx == integerStart) {
+            return -1;
+        }
+        if (idx == text.length()) {
+            return 0;
+        }
+        if (text.charAt(idx) != '.') {
+            return -1;
+        }
+        int fractionStart = ++idx;
+        while (idx < text.length() && isDigit(text.charAt(idx))) {
+            idx++;
+        }
+        return idx == text.length() && idx > fractionStart ? idx - fractionStart : -1;
+    }
+
+    private static int countDigits(String text) {
+        int retVal = 0;
+        for (int idx = 0; idx < text.length(); idx++) {
+            if (isDigit(text.charAt(idx))) {
+                retVal++;
+            }
+        }
+        return retVal;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static String formatDouble(double value, int scale) {
+        return BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP).toPlainString();
+    }
+}
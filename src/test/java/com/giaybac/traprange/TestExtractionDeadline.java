@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that each thread counts its own calls. In the extractor package as
+ * the deadline isn't public.
+ */
+public class TestExtractionDeadline {
+
+    // ExtractionDeadline.CLOCK_CHECK_INTERVAL
+    private static final int CLOCK_CHECK_INTERVAL = 64;
+    private static final int THREAD_COUNT = 8;
+
+    @Test
+    public void testConcurrentChecks() throws Exception {
+        final ExtractionDeadline deadline = new ExtractionDeadline(1, 0, new AtomicBoolean());
+        Thread.sleep(1);
+        // calls of the test thread don't count for the workers
+        for (int checkCount = 1; checkCount < CLOCK_CHECK_INTERVAL / 2; checkCount++) {
+            deadline.check();
+        }
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            List<Future<Integer>> checkCounts = new ArrayList<>();
+            for (int threadIdx = 0; threadIdx < THREAD_COUNT; threadIdx++) {
+                checkCounts.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws InterruptedException {
+                        start.await();
+                        for (int checkCount = 1; checkCount <= CLOCK_CHECK_INTERVAL; checkCount++) {
+                            try {
+                                deadline.check();
+                            } catch (ExtractionTimeoutException ex) {
+                                return checkCount;
+                            }
+                        }
+                        return -1;
+                    }
+                }));
+            }
+            start.countDown();
+            // each thread reads the clock after its own calls, whatever the others do
+            for (Future<Integer> checkCount : checkCounts) {
+                Assert.assertEquals(CLOCK_CHECK_INTERVAL, (int) checkCount.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
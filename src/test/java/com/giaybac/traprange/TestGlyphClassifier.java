@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the classifier of this JVM, the vector one when the
+ * jdk.incubator.vector module is added, against the scalar one. In the
+ * classifier package as classifiers aren't public.
+ */
+public class TestGlyphClassifier {
+
+    private static final float[] SPECIAL_VALUES = {Float.NaN, 0f, -0f, Float.NEGATIVE_INFINITY,
+        Float.POSITIVE_INFINITY};
+
+    @Test
+    public void testVectorModule() {
+        boolean hasModule = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        boolean forcedScalar = "false".equals(System.getProperty("traprange.vector"));
+        Assert.assertEquals(hasModule && !forcedScalar && isVectorCompiled(),
+                GlyphClassifier.get() != GlyphClassifier.scalar());
+    }
+
+    @Test
+    public void testOrderedGlyphs() {
+        Random random = new Random(39);
+        for (int round = 0; round < 200; round++) {
+            float[][] bands = randomBands(random, 1 + random.nextInt(40), -10 + random.nextFloat() * 20);
+            int glyphCount = random.nextInt(300);
+            float[] mins = new float[glyphCount];
+            float[] maxs = new float[glyphCount];
+            float min = -20;
+            for (int glyphId = 0; glyphId < glyphCount; glyphId++) {
+                min += random.nextFloat() * 3;
+                mins[glyphId] = min;
+                maxs[glyphId] = min + random.nextFloat() * 8;
+            }
+            assertSameBands(mins, maxs, bands[0], bands[1]);
+        }
+    }
+
+    @Test
+    public void testUnorderedGlyphs() {
+        Random random = new Random(40);
+        for (int round = 0; round < 200; round++) {
+            float[][] bands = randomBands(random, 1 + random.nextInt(40), -10 + random.nextFloat() * 20);
+            int glyphCount = random.nextInt(300);
+            float[] mins = new float[glyphCount];
+            float[] maxs = new float[glyphCount];
+            for (int glyphId = 0; glyphId < glyphCount; glyphId++) {
+                mins[glyphId] = -20 + random.nextFloat() * 440;
+                maxs[glyphId] = mins[glyphId] + random.nextFloat() * 8;
+            }
+            // ordered blocks between a few jumps back
+            for (int glyphId = 1; glyphId < glyphCount; glyphId++) {
+                if (random.nextInt(10) > 0 && mins[glyphId] < mins[glyphId - 1]) {
+                    float width = maxs[glyphId] - mins[glyphId];
+                    mins[glyphId] = mins[glyphId - 1];
+                    maxs[glyphId] = mins[glyphId] + width;
+                }
+            }
+            assertSameBands(mins, maxs, bands[0], bands[1]);
+        }
+    }
+
+    @Test
+    public void testSpecialValues() {
+        Random random = new Random(41);
+        for (int round = 0; round < 200; round++) {
+            // signed zeros as band endpoints
+            float firstLower = random.nextBoolean() ? -10 + random.nextFloat() * 20
+                    : random.nextBoolean() ? 0f : -0f;
+            float[][] bands = randomBands(random, 1 + random.nextInt(10), firstLower);
+            int glyphCount = random.nextInt(100);
+            float[] mins = new float[glyphCount];
+            float[] maxs = new float[glyphCount];
+            for (int glyphId = 0; glyphId < glyphCount; glyphId++) {
+                mins[glyphId] = random.nextInt(4) == 0
+                        ? SPECIAL_VALUES[random.nextInt(SPECIAL_VALUES.length)]
+                        : -20 + random.nextFloat() * 440;
+                maxs[glyphId] = random.nextInt(4) == 0
+                        ? SPECIAL_VALUES[random.nextInt(SPECIAL_VALUES.length)]
+                        : mins[glyphId] + random.nextFloat() * 8;
+            }
+            Arrays.sort(mins);
+            assertSameBands(mins, maxs, bands[0], bands[1]);
+        }
+        // all glyphs at a signed zero, in a band starting at one
+        float[] zeros = new float[64];
+        Arrays.fill(zeros, 32, 64, -0f);
+        assertSameBands(zeros, zeros.clone(), new float[]{0f}, new float[]{10f});
+        assertSameBands(zeros, zeros.clone(), new float[]{-0f}, new float[]{10f});
+    }
+
+    private static void assertSameBands(float[] mins, float[] maxs, float[] lowers, float[] uppers) {
+        int[] expected = GlyphClassifier.scalar().classifyAll(mins, maxs, lowers, uppers);
+        Assert.assertArrayEquals(Arrays.toString(mins) + " in " + Arrays.toString(lowers),
+                expected, GlyphClassifier.get().classifyAll(mins, maxs, lowers, uppers));
+        int[] glyphIds = new int[mins.length];
+        for (int idx = 0; idx < glyphIds.length; idx++) {
+            glyphIds[idx] = idx;
+        }
+        Assert.assertArrayEquals(expected, GlyphClassifier.get().classify(mins, maxs, glyphIds, lowers, uppers));
+    }
+
+    /**
+     * @param random
+     * @param bandCount
+     * @param firstLower
+     * @return lower and upper endpoints of sorted, disjoint bands
+     */
+    private static float[][] randomBands(Random random, int bandCount, float firstLower) {
+        float[] lowers = new float[bandCount];
+        float[] uppers = new float[bandCount];
+        float endpoint = firstLower;
+        for (int idx = 0; idx < bandCount; idx++) {
+            lowers[idx] = endpoint;
+            uppers[idx] = endpoint + random.nextFloat() * 15;
+            endpoint = uppers[idx] + 0.5f + random.nextFloat() * 5;
+        }
+        return new float[][]{lowers, uppers};
+    }
+
+    private static boolean isVectorCompiled() {
+        try {
+            Class.forName("com.giaybac.traprange.VectorGlyphClassifier", false,
+                    TestGlyphClassifier.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+/**
+ * JUnit category of the long, timing sensitive tests, run by the "scaling"
+ * profile only: mvn test -Pscaling
+ */
+public interface SlowTests {
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+/**
+ * Writes documents made of one table per page, with a configurable size and
+ * the usual clutter of real documents: ruling lines, headers, footers and
+ * stray texts, fake bold. The page grows with the table, so rows and columns can be
+ * scaled independently from the page count. The same settings always give
+ * the same document.
+ */
+public class SyntheticPdfGenerator {
+
+    //--------------------------------------------------------------------------
+    //  Members
+    private static final PDFont FONT = PDType1Font.HELVETICA;
+    private static final float FONT_SIZE = 8;
+    private static final float ROW_HEIGHT = 14;
+    private static final float GLYPH_WIDTH = 6;
+    private static final float COLUMN_GAP = 24;
+    private static final float MARGIN = 40;
+    // between the copies of a fake bold text
+    private static final float OVERPRINT_OFFSET = 0.3f;
+    private static final String GLYPHS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    private int pages = 1;
+    private int rows = 20;
+    private int columns = 5;
+    // glyphs per cell
+    private int density = 8;
+    private boolean rulingLines = false;
+    private boolean header = false;
+    private boolean footer = false;
+    // stray texts per page
+    private int noise = 0;
+    // copies of each cell text, more than 1 fakes bold
+    private int overprint = 1;
+    private long seed = 0;
+
+    //--------------------------------------------------------------------------
+    //  Getter N Setter
+    public SyntheticPdfGenerator setPages(int pages) {
+        this.pages = pages;
+        return this;
+    }
+
+    public SyntheticPdfGenerator setRows(int rows) {
+        this.rows = rows;
+        return this;
+    }
+
+    public SyntheticPdfGenerator setColumns(int columns) {
+        this.columns = columns;
+        return this;
+    }
+
+    public SyntheticPdfGenerator setDensity(int density) {
+        this.density = density;
+        return this;
+    }
+
+    public SyntheticPdfGenerator setRulingLines(boolean rulingLines) {
+        this.rulingLines = rulingLines;
+        return this;
+    }
+
+    public SyntheticPdfGenerator setHeader(boolean header) {
+        this.header = header;
+        return this;
+    }
+
+    public SyntheticPdfGenerator setFooter(boolean footer) {
+        this.footer = footer;
+        return this;
+    }
+
+    public SyntheticPdfGenerator setNoise(int noise) {
+        this.noise = noise;
+        return this;
+    }
+
+    public SyntheticPdfGenerator setOverprint(int overprint) {
+        this.overprint = overprint;
+        return this;
+    }
+
+    public SyntheticPdfGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Method binding
+    public void generate(File file) throws IOException {
+        try (PDDocument document = generate()) {
+            document.save(file);
+        }
+    }
+
+    public void generate(OutputStream outputStream) throws IOException {
+        try (PDDocument document = generate()) {
+            document.save(outputStream);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private PDDocument generate() throws IOException {
+        Random random = new Random(seed);
+        float columnWidth = density * GLYPH_WIDTH + COLUMN_GAP;
+        float width = 2 * MARGIN + columns * columnWidth;
+        // header and footer take a row each
+        float height = 2 * MARGIN + (rows + 2) * ROW_HEIGHT;
+        PDDocument retVal = new PDDocument();
+        for (int pageIdx = 0; pageIdx < pages; pageIdx++) {
+            PDPage page = new PDPage(new PDRectangle(width, height));
+            retVal.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(retVal, page)) {
+                float top = height - MARGIN - ROW_HEIGHT;
+                if (header) {
+                    showText(content, MARGIN, height - MARGIN, "Synthetic report - confidential");
+                }
+                for (int rowIdx = 0; rowIdx < rows; rowIdx++) {
+                    float y = top - rowIdx * ROW_HEIGHT;
+                    for (int columnIdx = 0; columnIdx < columns; columnIdx++) {
+                        String text = getCellText(random);
+                        for (int copyIdx = 0; copyIdx < overprint; copyIdx++) {
+                            showText(content, MARGIN + columnIdx * columnWidth + copyIdx * OVERPRINT_OFFSET, y, text);
+                        }
+                    }
+                    if (rulingLines) {
+                        content.moveTo(MARGIN, y - 3);
+                        content.lineTo(width - MARGIN, y - 3);
+                        content.stroke();
+                    }
+                }
+                for (int noiseIdx = 0; noiseIdx < noise; noiseIdx++) {
+                    showText(content, MARGIN + random.nextFloat() * (width - 2 * MARGIN - GLYPH_WIDTH),
+                            MARGIN + random.nextFloat() * (height - 2 * MARGIN), getText(random, 1));
+                }
+                if (footer) {
+                    showText(content, width / 2, MARGIN - ROW_HEIGHT, "Page " + (pageIdx + 1) + " of " + pages);
+                }
+            }
+        }
+        return retVal;
+    }
+
+    private String getCellText(Random random) {
+        // empty and short cells as in real tables
+        int length = random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(density);
+        return getText(random, length);
+    }
+
+    private String getText(Random random, int length) {
+        StringBuilder retVal = new StringBuilder(length);
+        for (int idx = 0; idx < length; idx++) {
+            retVal.append(GLYPHS.charAt(random.nextInt(GLYPHS.length())));
+        }
+        return retVal.toString();
+    }
+
+    private void showText(PDPageContentStream content, float x, float y, String text) throws IOException {
+        if (text.isEmpty()) {
+            return;
+        }
+        content.beginText();
+        content.setFont(FONT, FONT_SIZE);
+        content.newLineAtOffset(x, y);
+        content.showText(text);
+        content.endText();
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.BatchRunner;
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.LayoutSpec;
+import com.giaybac.traprange.RowFilter;
+import com.giaybac.traprange.RowView;
+import com.giaybac.traprange.TableExtractionEngine;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestBatchRunner {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testResume() throws IOException {
+        File inDir = folder.newFolder("in");
+        File first = copySample("sample-1.pdf", new File(inDir, "first.pdf"));
+        File second = copySample("sample-5.pdf", new File(inDir, "second.pdf"));
+        File broken = new File(inDir, "broken.pdf");
+        Files.write(broken.toPath(), "not a pdf".getBytes(StandardCharsets.UTF_8));
+        List<File> inputs = Arrays.asList(broken, first, second);
+        File outDir = new File(folder.getRoot(), "out");
+        File journal = new File(outDir, "traprange.journal");
+        ExtractionOptions options = ExtractionOptions.builder().build();
+        TableExtractionEngine engine = new TableExtractionEngine();
+
+        BatchRunner runner = new BatchRunner(engine, options, outDir, journal);
+        runner.run(inputs);
+        Assert.assertEquals(2, runner.getExtractedCount());
+        Assert.assertEquals(0, runner.getSkippedCount());
+        Assert.assertEquals(1, runner.getFailures().size());
+        Assert.assertTrue(runner.getFailures().containsKey(broken));
+        File firstOutput = runner.getOutputFile(first);
+        String firstTables = new String(Files.readAllBytes(firstOutput.toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(firstTables.startsWith("Page: 1\n"));
+        Assert.assertFalse(new File(outDir, "first.html.tmp").exists());
+
+        // done inputs are skipped, the failed one is tried again
+        runner = new BatchRunner(engine, options, outDir, journal);
+        runner.run(inputs);
+        Assert.assertEquals(0, runner.getExtractedCount());
+        Assert.assertEquals(2, runner.getSkippedCount());
+        Assert.assertEquals(1, runner.getFailures().size());
+
+        // a changed input, a missing output and a line cut by a crash
+        copySample("sample-2.pdf", first);
+        Files.delete(runner.getOutputFile(second).toPath());
+        try (FileOutputStream output = new FileOutputStream(journal, true)) {
+            output.write("DONE\t1\t12".getBytes(StandardCharsets.UTF_8));
+        }
+        runner.run(inputs);
+        Assert.assertEquals(2, runner.getExtractedCount());
+        Assert.assertEquals(0, runner.getSkippedCount());
+        Assert.assertNotEquals(firstTables,
+                new String(Files.readAllBytes(firstOutput.toPath()), StandardCharsets.UTF_8));
+
+        // a touched input is hashed, not extracted again
+        Assert.assertTrue(second.setLastModified(second.lastModified() - 60000));
+        runner.run(inputs);
+        Assert.assertEquals(0, runner.getExtractedCount());
+        Assert.assertEquals(2, runner.getSkippedCount());
+
+        // other options extract all inputs again
+        runner = new BatchRunner(engine, options.toBuilder().exceptLine(new int[]{0}).build(), outDir, journal);
+        runner.run(inputs);
+        Assert.assertEquals(2, runner.getExtractedCount());
+    }
+
+    @Test
+    public void testStoppedRun() throws IOException {
+        File input = copySample("sample-5.pdf", folder.newFile("sample.pdf"));
+        File outDir = folder.newFolder("out");
+        File journal = new File(outDir, "traprange.journal");
+        // the run stopped twice during the input
+        String record = "STARTED\t%d\t" + input.length() + "\t" + input.lastModified() + "\thash\tkey\t"
+                + input.getAbsolutePath() + "\t" + new File(outDir, "sample.html").getAbsolutePath() + "\t\n";
+        Files.write(journal.toPath(), (String.format(record, 1) + String.format(record, 2))
+                .getBytes(StandardCharsets.UTF_8));
+
+        BatchRunner runner = new BatchRunner(new TableExtractionEngine(), ExtractionOptions.builder().build(),
+                outDir, journal);
+        runner.run(Arrays.asList(input));
+        Assert.assertEquals(0, runner.getExtractedCount());
+        Assert.assertEquals("Run stopped during 2 attempt(s)", runner.getFailures().get(input));
+
+        // failed inputs are tried again
+        runner.run(Arrays.asList(input));
+        Assert.assertEquals(1, runner.getExtractedCount());
+    }
+
+    @Test
+    public void testLayoutOptions() throws IOException {
+        File input = copySample("sample-5.pdf", folder.newFile("sample.pdf"));
+        File outDir = folder.newFolder("out");
+        File journal = new File(outDir, "traprange.journal");
+        TableExtractionEngine engine = new TableExtractionEngine();
+        LayoutSpec.Builder layout = LayoutSpec.builder().setColumnBoundaries(0, 300, 600);
+
+        BatchRunner runner = new BatchRunner(engine, ExtractionOptions.builder().setLayout(layout.build()).build(),
+                outDir, journal);
+        runner.run(Arrays.asList(input));
+        Assert.assertEquals(1, runner.getExtractedCount());
+        runner.run(Arrays.asList(input));
+        Assert.assertEquals(1, runner.getSkippedCount());
+
+        // an edited layout extracts the input again
+        runner = new BatchRunner(engine, ExtractionOptions.builder()
+                .setLayout(layout.splitRowsByHeight(20).build()).build(), outDir, journal);
+        runner.run(Arrays.asList(input));
+        Assert.assertEquals(1, runner.getExtractedCount());
+
+        try {
+            new BatchRunner(engine, ExtractionOptions.builder().setRowFilter(new RowFilter() {
+                @Override
+                public boolean accept(RowView row) {
+                    return true;
+                }
+            }).build(), outDir, journal);
+            Assert.fail("Row filter accepted");
+        } catch (IllegalArgumentException ex) {
+            Assert.assertTrue(ex.getMessage().startsWith("A row filter"));
+        }
+    }
+
+    private static File copySample(String sampleName, File target) throws IOException {
+        Files.copy(Paths.get(System.getProperty("user.dir"), "_Docs", sampleName), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        return target;
+    }
+}
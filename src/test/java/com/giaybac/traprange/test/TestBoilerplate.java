@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.ExtractionSession;
+import com.giaybac.traprange.entity.Table;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestBoilerplate {
+
+    private static final int PAGE_COUNT = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testHeaderAndFooter() throws IOException {
+        File file = folder.newFile("statement.pdf");
+        generate(file, false);
+        try (ExtractionSession session = new ExtractionSession(file)) {
+            List<Table> all = session.extract(ExtractionOptions.builder().build()).getTables();
+            List<Table> excepted = session.extract(ExtractionOptions.builder()
+                    .exceptLine(new int[]{0, -1}).build()).getTables();
+            List<Table> auto = session.extract(ExtractionOptions.builder()
+                    .exceptBoilerplate(ExtractionOptions.DEFAULT_BOILERPLATE_RATIO).build()).getTables();
+            Assert.assertEquals(PAGE_COUNT, auto.size());
+            Assert.assertEquals(toStrings(excepted), toStrings(auto));
+            Assert.assertNotEquals(toStrings(all), toStrings(auto));
+            Assert.assertFalse(auto.get(0).toString().contains("ACME"));
+            Assert.assertFalse(auto.get(3).toString().contains("Page"));
+            // the row found on a single page stays
+            Assert.assertTrue(auto.get(2).toString().contains("Late fee"));
+        }
+
+        try {
+            ExtractionOptions.builder().exceptBoilerplate(1.5f);
+            Assert.fail("Invalid boilerplate ratio accepted");
+        } catch (IllegalArgumentException ex) {
+            Assert.assertTrue(ex.getMessage().startsWith("Invalid boilerplate ratio"));
+        }
+    }
+
+    @Test
+    public void testNumericRows() throws IOException {
+        // rows at a fixed pitch, only their digits differ between pages
+        File file = folder.newFile("ledger.pdf");
+        generate(file, true);
+        try (ExtractionSession session = new ExtractionSession(file)) {
+            List<Table> excepted = session.extract(ExtractionOptions.builder()
+                    .exceptLine(new int[]{0, -1}).build()).getTables();
+            List<Table> auto = session.extract(ExtractionOptions.builder()
+                    .exceptBoilerplate(ExtractionOptions.DEFAULT_BOILERPLATE_RATIO).build()).getTables();
+            Assert.assertEquals(toStrings(excepted), toStrings(auto));
+            int rowCount = 0;
+            for (Table table : auto) {
+                rowCount += table.getRows().size();
+            }
+            Assert.assertEquals(15, rowCount);
+            Assert.assertTrue(auto.get(3).toString().contains("2024-04-13"));
+        }
+    }
+
+    private static List<String> toStrings(List<Table> tables) {
+        List<String> retVal = new ArrayList<>();
+        for (Table table : tables) {
+            retVal.add(table.toString());
+        }
+        return retVal;
+    }
+
+    private static void generate(File file, boolean numericRows) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (int pageIdx = 0; pageIdx < PAGE_COUNT; pageIdx++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    showText(content, 50, 750, "ACME Corp statement");
+                    // pages don't have the same number of rows
+                    int rowCount = 3 + pageIdx % 2;
+                    for (int rowIdx = 0; rowIdx < rowCount; rowIdx++) {
+                        float y = 700 - rowIdx * 20;
+                        if (numericRows) {
+                            showText(content, 50, y, "2024-0" + (pageIdx + 1) + "-1" + rowIdx);
+                            showText(content, 200, y, "Payment");
+                            showText(content, 350, y, (pageIdx + 1) + "" + rowIdx + "5.00");
+                        } else {
+                            showText(content, 50, y, "Item " + (char) ('A' + pageIdx) + (char) ('a' + rowIdx));
+                            showText(content, 350, y, (pageIdx * 100 + rowIdx * 7) + ".00");
+                        }
+                    }
+                    if (pageIdx == 2) {
+                        showText(content, 50, 600, "Late fee");
+                        showText(content, 350, 600, "15.00");
+                    }
+                    showText(content, 250, 50, "Page " + (pageIdx + 1) + " of " + PAGE_COUNT);
+                }
+            }
+            document.save(file);
+        }
+    }
+
+    private static void showText(PDPageContentStream content, float x, float y, String text) throws IOException {
+        content.beginText();
+        content.setFont(PDType1Font.HELVETICA, 10);
+        content.newLineAtOffset(x, y);
+        content.showText(text);
+        content.endText();
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.ExtractionResult;
+import com.giaybac.traprange.TableExtractionEngine;
+import com.giaybac.traprange.entity.ColumnType;
+import com.giaybac.traprange.entity.ColumnarTable;
+import com.giaybac.traprange.entity.Table;
+import com.giaybac.traprange.entity.TableCell;
+import com.giaybac.traprange.entity.TableColumn;
+import com.giaybac.traprange.entity.TableRow;
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestColumnarTable {
+
+    @Test
+    public void testTypes() {
+        Table table = new Table(0, 5);
+        addRow(table, 0, "1", "12.50", "USD", "Paid", "a");
+        addRow(table, 1, "-20", "-0.75", "USD", "", "b");
+        addRow(table, 3, "", "3.00", "EUR", "Paid", "c");
+        addRow(table, 4, "400", "", "USD");
+        ColumnarTable columnarTable = ColumnarTable.of(table);
+
+        Assert.assertEquals(4, columnarTable.getRowCount());
+        Assert.assertEquals(3, columnarTable.getRowIdx(2));
+        TableColumn amounts = columnarTable.getColumn(0);
+        Assert.assertEquals(ColumnType.LONG, amounts.getType());
+        Assert.assertEquals(-20, amounts.getLong(1));
+        Assert.assertFalse(amounts.isValid(2));
+        Assert.assertTrue(amounts.isPresent(2));
+        TableColumn prices = columnarTable.getColumn(1);
+        Assert.assertEquals(ColumnType.DOUBLE, prices.getType());
+        Assert.assertEquals(12.5, prices.getDouble(0), 0);
+        Assert.assertEquals("3.00", prices.getText(2));
+        TableColumn currencies = columnarTable.getColumn(2);
+        Assert.assertEquals(ColumnType.DICTIONARY, currencies.getType());
+        Assert.assertEquals(Arrays.asList("USD", "EUR"), currencies.getDictionary());
+        Assert.assertEquals(1, currencies.getCode(2));
+        TableColumn statuses = columnarTable.getColumn(3);
+        Assert.assertEquals(ColumnType.DICTIONARY, statuses.getType());
+        Assert.assertFalse(statuses.isPresent(3));
+        Assert.assertNull(statuses.getText(3));
+        Assert.assertEquals(ColumnType.STRING, columnarTable.getColumn(4).getType());
+
+        assertSameRows(table, columnarTable);
+    }
+
+    @Test
+    public void testNotNumbers() {
+        Table table = new Table(0, 3);
+        addRow(table, 0, "007", "1.5", "1,200");
+        addRow(table, 1, "7", "1.50", "1,300");
+        ColumnarTable columnarTable = ColumnarTable.of(table);
+
+        // leading zeros, scales or separators that wouldn't be written back
+        for (int columnIdx = 0; columnIdx < 3; columnIdx++) {
+            Assert.assertEquals(ColumnType.STRING, columnarTable.getColumn(columnIdx).getType());
+        }
+        assertSameRows(table, columnarTable);
+    }
+
+    @Test
+    public void testSamples() {
+        TableExtractionEngine engine = new TableExtractionEngine(null);
+        for (int idx = 1; idx <= 5; idx++) {
+            File file = Paths.get(System.getProperty("user.dir"), "_Docs", "sample-" + idx + ".pdf").toFile();
+            ExtractionOptions options = ExtractionOptions.builder().exceptLine(new int[]{0}).build();
+            ExtractionResult expected = engine.extract(file, options);
+            ExtractionResult result = engine.extract(file, options.toBuilder().setColumnar(true).build());
+
+            Assert.assertEquals(expected.getTables().size(), result.getTables().size());
+            for (int tableIdx = 0; tableIdx < result.getTables().size(); tableIdx++) {
+                Assert.assertTrue(result.getTables().get(tableIdx) instanceof ColumnarTable);
+                assertSameRows(expected.getTables().get(tableIdx), result.getTables().get(tableIdx));
+            }
+        }
+    }
+
+    private static void addRow(Table table, int rowIdx, String... texts) {
+        TableRow row = new TableRow(rowIdx);
+        for (int columnIdx = 0; columnIdx < texts.length; columnIdx++) {
+            row.getCells().add(new TableCell(columnIdx, texts[columnIdx]));
+        }
+        table.getRows().add(row);
+    }
+
+    private static void assertSameRows(Table expected, Table table) {
+        Assert.assertEquals(expected.toHtml(), table.toHtml());
+        Assert.assertEquals(expected.getRows().size(), table.getRows().size());
+        for (int row = 0; row < expected.getRows().size(); row++) {
+            TableRow expectedRow = expected.getRows().get(row);
+            TableRow tableRow = table.getRows().get(row);
+            Assert.assertEquals(expectedRow.getIdx(), tableRow.getIdx());
+            Assert.assertEquals(expectedRow.getCells().size(), tableRow.getCells().size());
+            for (int cellIdx = 0; cellIdx < expectedRow.getCells().size(); cellIdx++) {
+                Assert.assertEquals(expectedRow.getCells().get(cellIdx).getIdx(),
+                        tableRow.getCells().get(cellIdx).getIdx());
+                Assert.assertEquals(expectedRow.getCells().get(cellIdx).getContent(),
+                        tableRow.getCells().get(cellIdx).getContent());
+            }
+        }
+    }
+}
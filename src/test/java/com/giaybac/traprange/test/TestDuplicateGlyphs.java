@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.ExtractionResult;
+import com.giaybac.traprange.ExtractionSession;
+import com.giaybac.traprange.TableExtractionEngine;
+import java.io.File;
+import java.io.IOException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestDuplicateGlyphs {
+
+    private static final int COPIES = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final TableExtractionEngine engine = new TableExtractionEngine(null);
+
+    @Test
+    public void testFakeBold() throws IOException {
+        File plain = generate("plain.pdf", 1);
+        File fakeBold = generate("fake-bold.pdf", COPIES);
+        ExtractionResult expected = engine.extract(plain, ExtractionOptions.builder().build());
+        ExtractionResult result = engine.extract(fakeBold, ExtractionOptions.builder().build());
+
+        Assert.assertEquals(expected.getTables().toString(), result.getTables().toString());
+        Assert.assertEquals(0, expected.getDuplicateGlyphCount());
+        Assert.assertEquals((COPIES - 1) * getGlyphCount(plain), result.getDuplicateGlyphCount());
+    }
+
+    @Test
+    public void testNoTolerance() throws IOException {
+        File plain = generate("plain.pdf", 1);
+        File fakeBold = generate("fake-bold.pdf", COPIES);
+        ExtractionOptions options = ExtractionOptions.builder().setDuplicateTolerance(0).build();
+        ExtractionResult expected = engine.extract(plain, options);
+        ExtractionResult result = engine.extract(fakeBold, options);
+
+        Assert.assertEquals(0, result.getDuplicateGlyphCount());
+        Assert.assertNotEquals(expected.getTables().toString(), result.getTables().toString());
+    }
+
+    @Test
+    public void testSessionTolerance() throws IOException {
+        File fakeBold = generate("fake-bold.pdf", COPIES);
+        try (ExtractionSession session = new ExtractionSession(fakeBold)) {
+            ExtractionResult filtered = session.extract(ExtractionOptions.builder().build());
+            // the pages are parsed again with the new tolerance
+            ExtractionResult unfiltered = session.extract(ExtractionOptions.builder().setDuplicateTolerance(0).build());
+            Assert.assertTrue(filtered.getDuplicateGlyphCount() > 0);
+            Assert.assertEquals(0, unfiltered.getDuplicateGlyphCount());
+            Assert.assertNotEquals(filtered.getTables().toString(), unfiltered.getTables().toString());
+        }
+    }
+
+    @Test
+    public void testGlyphSizes() throws IOException {
+        File file = folder.newFile("sizes.pdf");
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                // a footnote mark next to a number of the same unicode
+                showText(content, 10, 100, 700, "1");
+                showText(content, 6, 100.5f, 700, "1");
+                // a tiny glyph, then a large one drawn 3 times
+                showText(content, 2, 300, 700, ".");
+                for (int copy = 0; copy < COPIES; copy++) {
+                    showText(content, 72, 300 + copy * 0.5f, 600, ".");
+                }
+            }
+            document.save(file);
+        }
+        try (ExtractionSession session = new ExtractionSession(file)) {
+            Assert.assertEquals(COPIES - 1, session.extract(ExtractionOptions.builder().build())
+                    .getDuplicateGlyphCount());
+            Assert.assertEquals(4, session.getPageIndex(0).size());
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private File generate(String name, int overprint) throws IOException {
+        File retVal = folder.newFile(name);
+        new SyntheticPdfGenerator().setPages(2).setRows(30).setOverprint(overprint).generate(retVal);
+        return retVal;
+    }
+
+    private static void showText(PDPageContentStream content, float fontSize, float x, float y, String text)
+            throws IOException {
+        content.beginText();
+        content.setFont(PDType1Font.HELVETICA, fontSize);
+        content.newLineAtOffset(x, y);
+        content.showText(text);
+        content.endText();
+    }
+
+    private int getGlyphCount(File file) throws IOException {
+        int retVal = 0;
+        try (ExtractionSession session = new ExtractionSession(file)) {
+            for (int pageIdx = 0; pageIdx < session.getNumberOfPages(); pageIdx++) {
+                retVal += session.getPageIndex(pageIdx).size();
+            }
+        }
+        return retVal;
+    }
+}
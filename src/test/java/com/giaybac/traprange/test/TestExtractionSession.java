@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.ExtractionSession;
+import com.giaybac.traprange.PDFTableExtractor;
+import com.giaybac.traprange.entity.Table;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestExtractionSession {
+
+    @Test
+    public void test() throws IOException {
+        String filePath = Paths.get(System.getProperty("user.dir"), "_Docs", "sample-2.pdf").toString();
+        List<Table> expectedAll = (new PDFTableExtractor()).setSource(filePath).extract();
+        List<Table> expectedExcepted = (new PDFTableExtractor()).setSource(filePath)
+                .exceptLine(new int[]{0, 1}).extract();
+
+        try (ExtractionSession session = new ExtractionSession(new File(filePath))) {
+            assertTables(expectedAll, session.extract(ExtractionOptions.builder().build()).getTables());
+            long memoryFootprint = session.getMemoryFootprint();
+            Assert.assertTrue(memoryFootprint > 0);
+            // pages are not parsed again
+            assertTables(expectedExcepted, session.extract(ExtractionOptions.builder()
+                    .exceptLine(new int[]{0, 1}).build()).getTables());
+            Assert.assertEquals(memoryFootprint, session.getMemoryFootprint());
+        }
+    }
+
+    private void assertTables(List<Table> expected, List<Table> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int idx = 0; idx < expected.size(); idx++) {
+            Assert.assertEquals(expected.get(idx).toString(), actual.get(idx).toString());
+        }
+    }
+}
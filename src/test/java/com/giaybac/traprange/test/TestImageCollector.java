@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ImageCollector;
+import com.giaybac.traprange.ImageHandle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestImageCollector {
+
+    private static final COSName LOGO = COSName.getPDFName("Logo");
+    private static final COSName BROKEN = COSName.getPDFName("Broken");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSharedImage() throws IOException {
+        try (PDDocument document = PDDocument.load(generate())) {
+            ImageCollector collector = new ImageCollector(document);
+            List<ImageHandle> firstImages = collector.collect(0);
+            List<ImageHandle> formImages = collector.collect(1);
+            List<ImageHandle> lastImages = collector.collect(2);
+
+            // one handle for the image of the three pages
+            Assert.assertEquals(1, firstImages.size());
+            ImageHandle logo = firstImages.get(0);
+            Assert.assertTrue(formImages.contains(logo));
+            Assert.assertSame(logo, lastImages.get(0));
+            Assert.assertEquals(Arrays.asList(0, 1, 2), Arrays.asList(logo.getPageIdxs().toArray()));
+            Assert.assertEquals(2, collector.getImages().size());
+            // pages collected again don't add images
+            collector.collect(0);
+            Assert.assertEquals(2, collector.getImages().size());
+        }
+    }
+
+    @Test
+    public void testFormCycle() throws IOException {
+        try (PDDocument document = PDDocument.load(generate())) {
+            // the form of page 1 draws itself, it is walked once
+            List<ImageHandle> images = new ImageCollector(document).collect(1);
+            Assert.assertEquals(2, images.size());
+            Assert.assertEquals(LOGO.getName(), images.get(0).getName());
+            Assert.assertEquals(BROKEN.getName(), images.get(1).getName());
+        }
+    }
+
+    @Test
+    public void testLazyDecode() throws IOException {
+        try (PDDocument document = PDDocument.load(generate())) {
+            List<ImageHandle> images = new ImageCollector(document).collect(1);
+            // metadata of an image which can't be decoded
+            ImageHandle broken = images.get(1);
+            Assert.assertEquals(40, broken.getWidth());
+            Assert.assertEquals(30, broken.getHeight());
+            Assert.assertEquals(8, broken.getBitsPerComponent());
+            Assert.assertEquals(Arrays.asList("DCTDecode"), broken.getFilters());
+            try (InputStream rawStream = broken.openRawStream()) {
+                Assert.assertEquals(broken.getEncodedLength(), readAll(rawStream));
+            }
+            try {
+                broken.getImage();
+                Assert.fail("Broken image decoded");
+            } catch (IOException ex) {
+                // only decoding fails
+            }
+
+            BufferedImage logo = images.get(0).getImage();
+            Assert.assertEquals(16, logo.getWidth());
+            Assert.assertEquals(0xff0000, logo.getRGB(3, 3) & 0xffffff);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    /**
+     * Page 0 and 2 draw the logo, page 1 draws a form holding the logo, an
+     * image which can't be decoded and the form itself
+     */
+    private File generate() throws IOException {
+        File retVal = folder.newFile("images.pdf");
+        try (PDDocument document = new PDDocument()) {
+            BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+            for (int x = 0; x < 16; x++) {
+                for (int y = 0; y < 16; y++) {
+                    image.setRGB(x, y, 0xff0000);
+                }
+            }
+            PDImageXObject logo = LosslessFactory.createFromImage(document, image);
+
+            PDFormXObject form = new PDFormXObject(document);
+            PDResources formResources = new PDResources();
+            formResources.put(LOGO, logo);
+            setXObject(formResources, BROKEN, createBrokenImage(document));
+            formResources.put(COSName.getPDFName("Self"), form);
+            form.setResources(formResources);
+
+            for (int pageIdx = 0; pageIdx < 3; pageIdx++) {
+                PDPage page = new PDPage();
+                PDResources resources = new PDResources();
+                if (pageIdx == 1) {
+                    resources.put(COSName.getPDFName("Frame"), form);
+                } else {
+                    resources.put(LOGO, logo);
+                }
+                page.setResources(resources);
+                document.addPage(page);
+            }
+            document.save(retVal);
+        }
+        return retVal;
+    }
+
+    private static COSStream createBrokenImage(PDDocument document) throws IOException {
+        COSStream retVal = document.getDocument().createCOSStream();
+        retVal.setItem(COSName.TYPE, COSName.XOBJECT);
+        retVal.setItem(COSName.SUBTYPE, COSName.IMAGE);
+        retVal.setInt(COSName.WIDTH, 40);
+        retVal.setInt(COSName.HEIGHT, 30);
+        retVal.setInt(COSName.BITS_PER_COMPONENT, 8);
+        retVal.setItem(COSName.COLORSPACE, COSName.DEVICERGB);
+        retVal.setItem(COSName.FILTER, COSName.DCT_DECODE);
+        try (OutputStream output = retVal.createRawOutputStream()) {
+            output.write("not a jpeg".getBytes("US-ASCII"));
+        }
+        return retVal;
+    }
+
+    private static void setXObject(PDResources resources, COSName name, COSStream stream) {
+        COSDictionary xObjects = (COSDictionary) resources.getCOSObject().getDictionaryObject(COSName.XOBJECT);
+        xObjects.setItem(name, stream);
+    }
+
+    private static long readAll(InputStream input) throws IOException {
+        long retVal = 0;
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = input.read(buffer)) > 0) {
+            retVal += count;
+        }
+        return retVal;
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.ExtractionSession;
+import com.giaybac.traprange.IncrementalExtractor;
+import com.giaybac.traprange.LayoutSpec;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestIncrementalExtractor {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAppendedPage() throws IOException {
+        File file = folder.newFile("statement.pdf");
+        File manifest = new File(folder.getRoot(), "statement.manifest");
+        new SyntheticPdfGenerator().setPages(6).setRows(20).generate(file);
+        ExtractionOptions options = ExtractionOptions.builder().build();
+
+        IncrementalExtractor extractor = new IncrementalExtractor(file, options, manifest);
+        Assert.assertEquals(extract(file, options), extractor.extract().getTables().toString());
+        Assert.assertEquals(6, extractor.getProcessedPageCount());
+        Assert.assertTrue(manifest.isFile());
+
+        // nothing changed
+        Assert.assertEquals(extract(file, options), extractor.extract().getTables().toString());
+        Assert.assertEquals(0, extractor.getProcessedPageCount());
+        Assert.assertEquals(6, extractor.getReusedPageCount());
+        Assert.assertTrue(extractor.isColumnsReused());
+
+        // the document is regenerated with one more page
+        File page = folder.newFile("page.pdf");
+        new SyntheticPdfGenerator().setRows(20).setSeed(1).generate(page);
+        try (PDDocument document = PDDocument.load(file); PDDocument pageDocument = PDDocument.load(page)) {
+            new PDFMergerUtility().appendDocument(document, pageDocument);
+            document.save(file);
+        }
+        Assert.assertEquals(extract(file, options), extractor.extract().getTables().toString());
+        Assert.assertEquals(1, extractor.getProcessedPageCount());
+        Assert.assertEquals(6, extractor.getReusedPageCount());
+        Assert.assertFalse(extractor.isColumnsReused());
+    }
+
+    @Test
+    public void testOtherOptions() throws IOException {
+        File file = folder.newFile("statement.pdf");
+        File manifest = new File(folder.getRoot(), "statement.manifest");
+        new SyntheticPdfGenerator().setPages(2).generate(file);
+        new IncrementalExtractor(file, ExtractionOptions.builder().build(), manifest).extract();
+
+        ExtractionOptions options = ExtractionOptions.builder().exceptLine(new int[]{0}).build();
+        IncrementalExtractor extractor = new IncrementalExtractor(file, options, manifest);
+        Assert.assertEquals(extract(file, options), extractor.extract().getTables().toString());
+        Assert.assertEquals(2, extractor.getProcessedPageCount());
+    }
+
+    @Test
+    public void testChangedBackReference() throws IOException {
+        File file = folder.newFile("fonts.pdf");
+        File manifest = new File(folder.getRoot(), "fonts.manifest");
+        generateFonts(file);
+        ExtractionOptions options = ExtractionOptions.builder().build();
+        IncrementalExtractor extractor = new IncrementalExtractor(file, options, manifest);
+        extractor.extract();
+
+        // the third font now points to the object of the second one
+        try (PDDocument document = PDDocument.load(file)) {
+            COSDictionary fonts = (COSDictionary) document.getPage(0).getResources().getCOSObject()
+                    .getDictionaryObject(COSName.FONT);
+            fonts.setItem(COSName.getPDFName("F3"), fonts.getItem(COSName.getPDFName("F2")));
+            document.save(file);
+        }
+        Assert.assertEquals(extract(file, options), extractor.extract().getTables().toString());
+        Assert.assertEquals(1, extractor.getProcessedPageCount());
+        Assert.assertEquals(0, extractor.getReusedPageCount());
+    }
+
+    private static String extract(File file, ExtractionOptions options) throws IOException {
+        try (ExtractionSession session = new ExtractionSession(file)) {
+            return session.extract(options).getTables().toString();
+        }
+    }
+
+    @Test
+    public void testWholeDocumentOptions() {
+        File file = Paths.get(System.getProperty("user.dir"), "_Docs", "sample-5.pdf").toFile();
+        assertRejected(file, ExtractionOptions.builder().setTagged(true).build());
+        assertRejected(file, ExtractionOptions.builder()
+                .setLayout(LayoutSpec.builder().setColumnBoundaries(0, 300, 600).build()).build());
+        assertRejected(file, ExtractionOptions.builder()
+                .exceptBoilerplate(ExtractionOptions.DEFAULT_BOILERPLATE_RATIO).build());
+    }
+
+    /**
+     * One page whose rows are drawn with fonts F1, F2 and F3, F3 pointing to
+     * the object of F1
+     */
+    private static void generateFonts(File file) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            PDResources resources = new PDResources();
+            COSName[] fontNames = {COSName.getPDFName("F1"), COSName.getPDFName("F2"), COSName.getPDFName("F3")};
+            resources.put(fontNames[0], PDType1Font.HELVETICA);
+            resources.put(fontNames[1], PDType1Font.COURIER);
+            resources.put(fontNames[2], PDType1Font.HELVETICA);
+            page.setResources(resources);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                for (int rowIdx = 0; rowIdx < 12; rowIdx++) {
+                    content.beginText();
+                    content.setFont(resources.getFont(fontNames[rowIdx % fontNames.length]), 10);
+                    content.newLineAtOffset(72, 700 - rowIdx * 14);
+                    content.showText("Item " + rowIdx);
+                    content.newLineAtOffset(80, 0);
+                    content.showText("WWWWWWWW " + rowIdx);
+                    content.newLineAtOffset(140, 0);
+                    content.showText(String.valueOf(rowIdx * 100));
+                    content.endText();
+                }
+            }
+            document.save(file);
+        }
+    }
+
+    private void assertRejected(File file, ExtractionOptions options) {
+        try {
+            new IncrementalExtractor(file, options, new File(folder.getRoot(), "statement.manifest"));
+            Assert.fail("Options accepted");
+        } catch (IllegalArgumentException ex) {
+            Assert.assertTrue(ex.getMessage().endsWith("extraction"));
+        }
+    }
+}
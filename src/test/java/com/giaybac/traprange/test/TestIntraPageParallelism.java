@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ColumnMode;
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.TableExtractionEngine;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestIntraPageParallelism {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final TableExtractionEngine engine = new TableExtractionEngine(null);
+
+    @Test
+    public void testDensePage() throws IOException {
+        File file = folder.newFile("dense.pdf");
+        new SyntheticPdfGenerator().setRows(800).setColumns(12).setHeader(true).setFooter(true)
+                .setNoise(20).setRulingLines(true).generate(file);
+        for (ColumnMode columnMode : ColumnMode.values()) {
+            ExtractionOptions sequential = ExtractionOptions.builder().setColumnMode(columnMode)
+                    .setParallelGlyphThreshold(Integer.MAX_VALUE).build();
+            ExtractionOptions parallel = sequential.toBuilder().setParallelGlyphThreshold(0).build();
+            String expected = engine.extract(file, sequential).getTables().toString();
+            Assert.assertFalse(expected.isEmpty());
+            // the same whatever the scheduling
+            for (int idx = 0; idx < 2; idx++) {
+                Assert.assertEquals(expected, engine.extract(file, parallel).getTables().toString());
+            }
+        }
+    }
+
+    @Test
+    public void testSample() {
+        File file = Paths.get(System.getProperty("user.dir"), "_Docs", "sample-1.pdf").toFile();
+        ExtractionOptions sequential = ExtractionOptions.builder().exceptLine(new int[]{0, 1, -1})
+                .setParallelGlyphThreshold(Integer.MAX_VALUE).build();
+        ExtractionOptions parallel = sequential.toBuilder().setParallelGlyphThreshold(0).build();
+        Assert.assertEquals(engine.extract(file, sequential).getTables().toString(),
+                engine.extract(file, parallel).getTables().toString());
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.ExtractionResult;
+import com.giaybac.traprange.ExtractionSession;
+import com.giaybac.traprange.LayoutSpec;
+import com.google.common.collect.Range;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestLayoutSpec {
+
+    // x, y of the first page and text of each line, the second page is 100 lower
+    private static final Object[][] LINES = {
+        {50f, 750f, "Monthly statement"},
+        {50f, 700f, "Item"}, {200f, 700f, "Terms"}, {350f, 700f, "Amount"},
+        {50f, 680f, "Rent"}, {200f, 680f, "Net 30"}, {350f, 680f, "1200.00"},
+        {200f, 668f, "days"},
+        {50f, 648f, "Parking"}, {200f, 648f, "Monthly"}, {350f, 648f, "45.00"},
+        {50f, 500f, "Page footer"}
+    };
+    private static final String TABLE = "Item;Terms;Amount\nRent;Net 30 days;1200.00\nParking;Monthly;45.00";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAnchorRows() throws IOException {
+        File file = folder.newFile("layout.pdf");
+        generate(file);
+        LayoutSpec layout = LayoutSpec.builder().setColumnBoundaries(40, 190, 340, 500)
+                .setBand(Range.closed(80f, 200f)).setBand(1, 1, Range.closed(180f, 300f))
+                .splitRowsByAnchor(0).build();
+        try (ExtractionSession session = new ExtractionSession(file)) {
+            ExtractionResult result = session.extract(ExtractionOptions.builder().setLayout(layout).build());
+            Assert.assertEquals(2, result.getTables().size());
+            Assert.assertEquals(TABLE, result.getTables().get(0).toString());
+            Assert.assertEquals(1, result.getTables().get(1).getPageIdx());
+            Assert.assertEquals(TABLE, result.getTables().get(1).toString());
+
+            // one row per line
+            ExtractionOptions lines = ExtractionOptions.builder().addPage(0)
+                    .setLayout(LayoutSpec.builder().setColumnBoundaries(40, 190, 340, 500)
+                            .setBand(Range.closed(80f, 200f)).build()).build();
+            Assert.assertEquals("Item;Terms;Amount\nRent;Net 30;1200.00\n;days;\nParking;Monthly;45.00",
+                    session.extract(lines).getTables().get(0).toString());
+
+            // rows of a fixed height, projected
+            ExtractionOptions fixed = ExtractionOptions.builder().addPage(0).setColumnProjection(0, 2)
+                    .setLayout(LayoutSpec.builder().setColumnBoundaries(40, 190, 340, 500)
+                            .setBand(Range.closed(80f, 200f)).splitRowsByHeight(40).build()).build();
+            Assert.assertEquals("Item Rent;Amount 1200.00\nParking;45.00",
+                    session.extract(fixed).getTables().get(0).toString());
+        }
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        File file = folder.newFile("layout.pdf");
+        generate(file);
+        File layoutFile = folder.newFile("table.layout");
+        Files.write(layoutFile.toPath(), Arrays.asList(
+                "# statement layout",
+                "columns 40, 190, 340, 500",
+                "band 80 200",
+                "band 1-1 180 300 # page 2 starts lower",
+                "rows anchor 0"), StandardCharsets.UTF_8);
+        LayoutSpec layout = LayoutSpec.read(layoutFile);
+        Assert.assertEquals(3, layout.getColumnCount());
+        Assert.assertEquals(Range.closed(180f, 300f), layout.getBand(1));
+        Assert.assertEquals(Range.closed(80f, 200f), layout.getBand(2));
+        try (ExtractionSession session = new ExtractionSession(file)) {
+            ExtractionResult result = session.extract(ExtractionOptions.builder().setLayout(layout).build());
+            Assert.assertEquals(TABLE + "\n" + TABLE, result.getTables().get(0) + "\n" + result.getTables().get(1));
+        }
+
+        // written back in the same format
+        StringWriter writer = new StringWriter();
+        layout.write(writer);
+        Assert.assertEquals("columns 40.0 190.0 340.0 500.0\nband 80.0 200.0\nband 1-1 180.0 300.0\nrows anchor 0\n",
+                writer.toString());
+        Assert.assertEquals(Range.closed(180f, 300f), LayoutSpec.read(new StringReader(writer.toString())).getBand(1));
+
+        try {
+            LayoutSpec.read(new StringReader("columns 40 190\nrows anchor"));
+            Assert.fail("Invalid layout read");
+        } catch (IOException ex) {
+            Assert.assertTrue(ex.getMessage().startsWith("Invalid layout line 2"));
+        }
+    }
+
+    private static void generate(File file) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (int pageIdx = 0; pageIdx < 2; pageIdx++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    for (Object[] line : LINES) {
+                        content.beginText();
+                        content.setFont(PDType1Font.HELVETICA, 10);
+                        content.newLineAtOffset((Float) line[0], (Float) line[1] - pageIdx * 100);
+                        content.showText((String) line[2]);
+                        content.endText();
+                    }
+                }
+            }
+            document.save(file);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.MemoryBudgetExceededException;
+import com.giaybac.traprange.MemoryGovernor;
+import com.giaybac.traprange.TableExtractionEngine;
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestMemoryGovernor {
+
+    private static final long MEGABYTE = 1024 * 1024;
+
+    @Test
+    public void testReject() {
+        MemoryGovernor governor = new MemoryGovernor(10 * MEGABYTE, 0, TimeUnit.SECONDS);
+        MemoryGovernor.Admission admission = governor.admit(8 * MEGABYTE);
+        try {
+            governor.admit(8 * MEGABYTE);
+            Assert.fail("Admitted over the budget");
+        } catch (MemoryBudgetExceededException ex) {
+            Assert.assertEquals(8 * MEGABYTE, ex.getRequestedBytes());
+        }
+        admission.close();
+        governor.admit(8 * MEGABYTE).close();
+
+        Assert.assertEquals(2, governor.getAdmittedCount());
+        Assert.assertEquals(1, governor.getRejectedCount());
+        Assert.assertEquals(0, governor.getUsedBytes());
+    }
+
+    @Test
+    public void testQueue() throws Exception {
+        final MemoryGovernor governor = new MemoryGovernor(10 * MEGABYTE, 1, TimeUnit.MINUTES);
+        MemoryGovernor.Admission admission = governor.admit(8 * MEGABYTE);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> queued = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    governor.admit(8 * MEGABYTE).close();
+                }
+            });
+            while (governor.getQueuedCount() == 0) {
+                Thread.sleep(10);
+            }
+            Assert.assertFalse(queued.isDone());
+            admission.close();
+            queued.get(1, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(0, governor.getQueuedCount());
+        Assert.assertEquals(2, governor.getAdmittedCount());
+        Assert.assertEquals(0, governor.getRejectedCount());
+    }
+
+    @Test
+    public void testLowMemory() {
+        File file = Paths.get(System.getProperty("user.dir"), "_Docs", "sample-5.pdf").toFile();
+        ExtractionOptions options = ExtractionOptions.builder().exceptLine(new int[]{0}).build();
+        String expected = new TableExtractionEngine(null).extract(file, options).getTables().toString();
+        // the document fits, not its pages
+        MemoryGovernor governor = new MemoryGovernor(MemoryGovernor.estimate(file.length(), 0));
+        String tables = new TableExtractionEngine(null, governor).extract(file, options).getTables().toString();
+
+        Assert.assertEquals(expected, tables);
+        Assert.assertEquals(1, governor.getLowMemoryCount());
+        Assert.assertEquals(0, governor.getUsedBytes());
+
+        // over the whole budget, loaded with a temp file
+        governor = new MemoryGovernor(MEGABYTE / 2);
+        tables = new TableExtractionEngine(null, governor).extract(file, options).getTables().toString();
+        Assert.assertEquals(expected, tables);
+        Assert.assertEquals(1, governor.getLowMemoryCount());
+    }
+}
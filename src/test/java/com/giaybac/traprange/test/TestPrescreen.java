@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.ExtractionResult;
+import com.giaybac.traprange.SkipReason;
+import com.giaybac.traprange.TableExtractionEngine;
+import java.io.File;
+import java.io.IOException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestPrescreen {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final TableExtractionEngine engine = new TableExtractionEngine(null);
+
+    @Test
+    public void testBlankPages() throws IOException {
+        File file = folder.newFile("blank.pdf");
+        new SyntheticPdfGenerator().setPages(3).setRows(0).generate(file);
+        ExtractionResult result = engine.extract(file, ExtractionOptions.builder().build());
+        Assert.assertTrue(result.getTables().isEmpty());
+        Assert.assertEquals(3, result.getSkippedPageCount(SkipReason.NO_TEXT));
+    }
+
+    @Test
+    public void testSingleLinePages() throws IOException {
+        File file = folder.newFile("single-line.pdf");
+        new SyntheticPdfGenerator().setPages(2).setRows(1).setColumns(1).setSeed(1).generate(file);
+        ExtractionResult result = engine.extract(file, ExtractionOptions.builder().build());
+        Assert.assertTrue(result.getTables().isEmpty());
+        Assert.assertEquals(2, result.getSkippedPageCount(SkipReason.TOO_FEW_LINES));
+    }
+
+    @Test
+    public void testTablePages() throws IOException {
+        File file = folder.newFile("table.pdf");
+        new SyntheticPdfGenerator().setPages(2).setHeader(true).setFooter(true).generate(file);
+        ExtractionResult result = engine.extract(file, ExtractionOptions.builder().build());
+        ExtractionResult expected = engine.extract(file, ExtractionOptions.builder().setPrescreen(false).build());
+        Assert.assertTrue(result.getSkippedPages().isEmpty());
+        Assert.assertEquals(expected.getTables().toString(), result.getTables().toString());
+    }
+}
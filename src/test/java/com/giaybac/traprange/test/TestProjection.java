@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.RowFilter;
+import com.giaybac.traprange.RowView;
+import com.giaybac.traprange.TableExtractionEngine;
+import com.giaybac.traprange.entity.Table;
+import com.giaybac.traprange.entity.TableCell;
+import com.giaybac.traprange.entity.TableRow;
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestProjection {
+
+    private static final String MAKER = "トヨタ";
+
+    private final File file = Paths.get(System.getProperty("user.dir"), "_Docs", "sample-1.pdf").toFile();
+    private final ExtractionOptions options = ExtractionOptions.builder().exceptLine(new int[]{0, 1, -1}).build();
+    private final TableExtractionEngine engine = new TableExtractionEngine(null);
+
+    @Test
+    public void testColumnProjection() {
+        List<Table> expected = engine.extract(file, options).getTables();
+        List<Table> tables = engine.extract(file, options.toBuilder().setColumnProjection(5, 0, 2).build())
+                .getTables();
+
+        Assert.assertEquals(expected.size(), tables.size());
+        for (int tableIdx = 0; tableIdx < expected.size(); tableIdx++) {
+            List<TableRow> expectedRows = expected.get(tableIdx).getRows();
+            List<TableRow> rows = tables.get(tableIdx).getRows();
+            Assert.assertEquals(expectedRows.size(), rows.size());
+            for (int rowIdx = 0; rowIdx < rows.size(); rowIdx++) {
+                List<String> expectedCells = new ArrayList<>();
+                for (TableCell cell : expectedRows.get(rowIdx).getCells()) {
+                    if (cell.getIdx() == 0 || cell.getIdx() == 2 || cell.getIdx() == 5) {
+                        expectedCells.add(cell.getContent());
+                    }
+                }
+                List<String> cells = new ArrayList<>();
+                for (TableCell cell : rows.get(rowIdx).getCells()) {
+                    // renumbered in the column order
+                    Assert.assertEquals(cells.size(), cell.getIdx());
+                    cells.add(cell.getContent());
+                }
+                Assert.assertEquals(expectedCells, cells);
+            }
+        }
+    }
+
+    @Test
+    public void testRowFilter() {
+        final Pattern pattern = Pattern.compile(MAKER);
+        RowFilter rowFilter = new RowFilter() {
+            @Override
+            public boolean accept(RowView row) {
+                return row.getColumnCount() > 1 && pattern.matcher(row.getCell(1)).matches();
+            }
+        };
+        List<Table> expected = engine.extract(file, options).getTables();
+        List<Table> tables = engine.extract(file, options.toBuilder().setRowFilter(rowFilter).build()).getTables();
+
+        int rowCount = 0;
+        for (int tableIdx = 0; tableIdx < expected.size(); tableIdx++) {
+            List<String> expectedRows = new ArrayList<>();
+            for (TableRow row : expected.get(tableIdx).getRows()) {
+                if (row.getCells().size() > 1 && row.getCells().get(1).getContent().equals(MAKER)) {
+                    expectedRows.add(row.toString());
+                }
+            }
+            List<String> rows = new ArrayList<>();
+            for (TableRow row : tables.get(tableIdx).getRows()) {
+                rows.add(row.toString());
+            }
+            Assert.assertEquals(expectedRows, rows);
+            rowCount += rows.size();
+        }
+        Assert.assertTrue(rowCount > 0);
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.ExtractionResult;
+import com.giaybac.traprange.ShardedExtractor;
+import com.giaybac.traprange.TableExtractionEngine;
+import com.giaybac.traprange.entity.RowSpillFile;
+import com.giaybac.traprange.entity.SpilledRowList;
+import com.giaybac.traprange.entity.Table;
+import com.giaybac.traprange.entity.TableCell;
+import com.giaybac.traprange.entity.TableRow;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestRowSpill {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final TableExtractionEngine engine = new TableExtractionEngine(null);
+
+    @Test
+    public void testSample() throws IOException {
+        File file = Paths.get(System.getProperty("user.dir"), "_Docs", "sample-5.pdf").toFile();
+        ExtractionOptions options = ExtractionOptions.builder().exceptLine(new int[]{0}).build();
+        String expected = engine.extract(file, options).getTables().toString();
+        File spillFile;
+        try (ExtractionResult result = engine.extract(file, options.toBuilder().setRowWindow(4).build())) {
+            spillFile = result.getRowSpillFile().getFile();
+            Assert.assertTrue(spillFile.exists());
+            Assert.assertTrue(result.getRowSpillFile().length() > 0);
+            Assert.assertEquals(expected, result.getTables().toString());
+        }
+        Assert.assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void testRandomAccess() throws IOException {
+        File file = folder.newFile("rows.pdf");
+        new SyntheticPdfGenerator().setPages(5).setRows(40).generate(file);
+        ExtractionOptions options = ExtractionOptions.builder().build();
+        List<Table> expected = engine.extract(file, options).getTables();
+        ExtractionOptions spilled = options.toBuilder().setRowWindow(1).build();
+        try (ExtractionResult result = engine.extract(file, spilled)) {
+            Assert.assertEquals(expected.size(), result.getTables().size());
+            for (int tableIdx = expected.size() - 1; tableIdx >= 0; tableIdx--) {
+                List<TableRow> expectedRows = expected.get(tableIdx).getRows();
+                List<TableRow> rows = result.getTables().get(tableIdx).getRows();
+                Assert.assertEquals(expectedRows.size(), rows.size());
+                for (int rowIdx = rows.size() - 1; rowIdx >= 0; rowIdx -= 3) {
+                    Assert.assertEquals(expectedRows.get(rowIdx).toString(), rows.get(rowIdx).toString());
+                }
+            }
+        }
+        try (ExtractionResult result = new ShardedExtractor(file, spilled, 2).extract()) {
+            Assert.assertEquals(expected.toString(), result.getTables().toString());
+        }
+    }
+
+    @Test
+    public void testInterleavedReads() throws IOException {
+        try (RowSpillFile spillFile = new RowSpillFile()) {
+            SpilledRowList rows = new SpilledRowList(spillFile, 3);
+            List<String> expected = new ArrayList<>();
+            for (int rowIdx = 0; rowIdx < 200; rowIdx++) {
+                TableRow row = new TableRow(rowIdx);
+                row.getCells().add(new TableCell(0, "row " + rowIdx));
+                row.getCells().add(new TableCell(1, rowIdx % 7 == 0 ? "" : "\u00e9t\u00e9 " + rowIdx));
+                rows.add(row);
+                expected.add(row.toString());
+                // each read follows an append
+                Assert.assertEquals(expected.get(rowIdx / 2), rows.get(rowIdx / 2).toString());
+            }
+            List<String> actual = new ArrayList<>();
+            for (TableRow row : rows) {
+                actual.add(row.toString());
+            }
+            Assert.assertEquals(expected, actual);
+
+            // spilled rows are copies
+            rows.get(0).getCells().add(new TableCell(2, "lost"));
+            Assert.assertEquals(expected.get(0), rows.get(0).toString());
+        }
+    }
+
+    @Test
+    public void testSegments() throws IOException {
+        try (RowSpillFile spillFile = new RowSpillFile()) {
+            SpilledRowList rows = new SpilledRowList(spillFile, 1);
+            List<String> expected = new ArrayList<>();
+            StringBuilder content = new StringBuilder();
+            for (int rowIdx = 0; rowIdx < 300; rowIdx++) {
+                // rows of 30 to 70KB: a few don't fit at the end of a segment
+                content.setLength(0);
+                for (int charIdx = 0; charIdx < 30000 + rowIdx * 7919 % 40000; charIdx++) {
+                    content.append((char) ('a' + (rowIdx + charIdx) % 26));
+                }
+                TableRow row = new TableRow(rowIdx);
+                row.getCells().add(new TableCell(0, content.toString()));
+                rows.add(row);
+                expected.add(row.toString());
+                if (rowIdx > 0) {
+                    // the mapping of the segment being written grows
+                    Assert.assertEquals(expected.get(rowIdx - 1), rows.get(rowIdx - 1).toString());
+                }
+            }
+            Assert.assertTrue(spillFile.length() > 3 * (1 << 22));
+            Assert.assertEquals(spillFile.length(), spillFile.getFile().length());
+            for (int rowIdx = expected.size() - 1; rowIdx >= 0; rowIdx--) {
+                Assert.assertEquals(expected.get(rowIdx), rows.get(rowIdx).toString());
+            }
+        }
+    }
+
+    @Test
+    public void testHeap() {
+        File file = Paths.get(System.getProperty("user.dir"), "_Docs", "sample-5.pdf").toFile();
+        ExtractionResult result = engine.extract(file, ExtractionOptions.builder().build());
+        Assert.assertNull(result.getRowSpillFile());
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ColumnMode;
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.ExtractionResult;
+import com.giaybac.traprange.ShardedExtractor;
+import com.giaybac.traprange.TableExtractionEngine;
+import com.giaybac.traprange.entity.Table;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestSampledColumns {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final TableExtractionEngine engine = new TableExtractionEngine(null);
+
+    @Test
+    public void testHomogeneous() throws IOException {
+        File file = folder.newFile("homogeneous.pdf");
+        new SyntheticPdfGenerator().setPages(12).setRows(30).generate(file);
+        ExtractionOptions global = ExtractionOptions.builder().build();
+        ExtractionOptions sampled = global.toBuilder().setColumnMode(ColumnMode.SAMPLED).setColumnSampleSize(3).build();
+        ExtractionResult expected = engine.extract(file, global);
+        ExtractionResult result = engine.extract(file, sampled);
+
+        Assert.assertEquals(12, result.getTables().size());
+        Assert.assertEquals(expected.getTables().toString(), result.getTables().toString());
+    }
+
+    @Test
+    public void testDrift() throws IOException {
+        File file = folder.newFile("drift.pdf");
+        File first = folder.newFile("first.pdf");
+        File last = folder.newFile("last.pdf");
+        new SyntheticPdfGenerator().setPages(3).setColumns(4).generate(first);
+        // another layout on the last page
+        new SyntheticPdfGenerator().setColumns(6).setDensity(4).setSeed(1).generate(last);
+        try (PDDocument document = PDDocument.load(first); PDDocument lastDocument = PDDocument.load(last)) {
+            new PDFMergerUtility().appendDocument(document, lastDocument);
+            document.save(file);
+        }
+        ExtractionOptions perPage = ExtractionOptions.builder().setColumnMode(ColumnMode.PER_PAGE).build();
+        ExtractionOptions sampled = perPage.toBuilder().setColumnMode(ColumnMode.SAMPLED).setColumnSampleSize(1).build();
+        List<Table> expected = engine.extract(file, perPage).getTables();
+        ExtractionResult result = engine.extract(file, sampled);
+
+        // no page is lost, the drifted one has its own columns
+        Assert.assertEquals(4, result.getTables().size());
+        Assert.assertTrue(result.getDriftedPages().contains(3));
+        Assert.assertFalse(result.getDriftedPages().contains(0));
+        Assert.assertEquals(expected.get(3).toString(), result.getTables().get(3).toString());
+
+        ExtractionResult shardedResult = new ShardedExtractor(file, sampled, 2).extract();
+        Assert.assertEquals(result.getTables().toString(), shardedResult.getTables().toString());
+        Assert.assertEquals(result.getDriftedPages(), shardedResult.getDriftedPages());
+    }
+}
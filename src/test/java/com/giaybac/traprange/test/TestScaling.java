@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.ExtractionResult;
+import com.giaybac.traprange.ExtractionSession;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Guard against superlinear stages: documents of growing size are generated
+ * and extracted, and the growth of time and live heap must stay close to the
+ * growth of the input. With a size ratio of 4, a linear stage grows about 4
+ * times, a quadratic one 16 times. The smaller inputs are large enough for
+ * the fixed costs not to hide the growth.
+ * <p>
+ * Timings depend on the machine load: the test is a {@link SlowTests}, run
+ * with mvn test -Pscaling.
+ */
+@Category(SlowTests.class)
+public class TestScaling {
+
+    private final Logger logger = LoggerFactory.getLogger(TestScaling.class);
+
+    // growth exponent of a stage, 1 is linear and 2 quadratic. Small inputs
+    // are dominated by fixed costs and timer noise, hence the margin
+    private static final double MAX_EXPONENT = 1.6;
+    private static final int SIZE_RATIO = 4;
+    private static final int REPETITIONS = 5;
+    private static final int MAX_COLLECTIONS = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ExtractionOptions options = ExtractionOptions.builder().build();
+
+    @Test
+    public void testPages() throws IOException {
+        File small = generate("pages-small", newGenerator().setRows(40).setRulingLines(true).setPages(12));
+        File large = generate("pages-large", newGenerator().setRows(40).setRulingLines(true).setPages(12 * SIZE_RATIO));
+        assertLinear("pages", small, large);
+    }
+
+    @Test
+    public void testRows() throws IOException {
+        File small = generate("rows-small", newGenerator().setRows(200));
+        File large = generate("rows-large", newGenerator().setRows(200 * SIZE_RATIO));
+        assertLinear("rows", small, large);
+    }
+
+    @Test
+    public void testColumns() throws IOException {
+        File small = generate("columns-small", newGenerator().setRows(60).setDensity(4).setColumns(8));
+        File large = generate("columns-large", newGenerator().setRows(60).setDensity(4).setColumns(8 * SIZE_RATIO));
+        assertLinear("columns", small, large);
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    private SyntheticPdfGenerator newGenerator() {
+        return new SyntheticPdfGenerator().setPages(2).setColumns(6).setHeader(true).setFooter(true).setNoise(2);
+    }
+
+    private File generate(String name, SyntheticPdfGenerator generator) throws IOException {
+        File retVal = folder.newFile(name + ".pdf");
+        generator.generate(retVal);
+        return retVal;
+    }
+
+    private void assertLinear(String dimension, File small, File large) throws IOException {
+        // warm up the JIT
+        measure(large);
+        Measure smallMeasure = measure(small);
+        Measure largeMeasure = measure(large);
+        logger.info(dimension + ": " + smallMeasure.parseNanos / 1000 + "us/" + largeMeasure.parseNanos / 1000 + "us, "
+                + smallMeasure.assemblyNanos / 1000 + "us/" + largeMeasure.assemblyNanos / 1000 + "us, "
+                + smallMeasure.liveHeap / 1024 + "KB/" + largeMeasure.liveHeap / 1024 + "KB");
+
+        assertExponent(dimension + ", parsing time", smallMeasure.parseNanos, largeMeasure.parseNanos);
+        assertExponent(dimension + ", assembly time", smallMeasure.assemblyNanos, largeMeasure.assemblyNanos);
+        assertExponent(dimension + ", live heap", smallMeasure.liveHeap, largeMeasure.liveHeap);
+    }
+
+    private void assertExponent(String stage, long small, long large) {
+        double exponent = Math.log((double) Math.max(large, 1) / Math.max(small, 1)) / Math.log(SIZE_RATIO);
+        Assert.assertTrue(stage + " grows as size^" + String.format("%.2f", exponent)
+                + " (" + small + " -> " + large + ")", exponent < MAX_EXPONENT);
+    }
+
+    /**
+     * Best of a few runs
+     */
+    private Measure measure(File file) throws IOException {
+        Measure retVal = new Measure();
+        for (int idx = 0; idx < REPETITIONS; idx++) {
+            long liveHeap = run(file, retVal);
+            // the session is unreachable once its frame is gone, the heap
+            // left by the earlier runs is the same
+            retVal.liveHeap = Math.min(retVal.liveHeap, liveHeap - getLiveHeap());
+        }
+        return retVal;
+    }
+
+    /**
+     * The first extraction of a session parses the pages, the next ones only
+     * run the detection and the assembly
+     *
+     * @param file
+     * @param measure receives the best times
+     * @return heap in use while the session and its tables are kept
+     * @throws IOException
+     */
+    private long run(File file, Measure measure) throws IOException {
+        try (ExtractionSession session = new ExtractionSession(file)) {
+            long start = System.nanoTime();
+            ExtractionResult result = session.extract(options);
+            long firstNanos = System.nanoTime() - start;
+            long assemblyNanos = Long.MAX_VALUE;
+            for (int assemblyIdx = 0; assemblyIdx < REPETITIONS; assemblyIdx++) {
+                start = System.nanoTime();
+                session.extract(options);
+                assemblyNanos = Math.min(assemblyNanos, System.nanoTime() - start);
+            }
+            measure.assemblyNanos = Math.min(measure.assemblyNanos, assemblyNanos);
+            measure.parseNanos = Math.min(measure.parseNanos, Math.max(0, firstNanos - assemblyNanos));
+            long retVal = getLiveHeap();
+            Assert.assertFalse(result.getTables().isEmpty());
+            return retVal;
+        }
+    }
+
+    /**
+     * @return heap in use after a few collections: objects waiting for
+     * finalization, like documents, are only freed by a later one
+     */
+    private long getLiveHeap() {
+        long retVal = Long.MAX_VALUE;
+        for (int idx = 0; idx < MAX_COLLECTIONS; idx++) {
+            System.gc();
+            System.runFinalization();
+            long used = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    used += pool.getUsage().getUsed();
+                }
+            }
+            retVal = Math.min(retVal, used);
+        }
+        return retVal;
+    }
+
+    //--------------------------------------------------------------------------
+    //  Inner class
+    private static class Measure {
+
+        private long parseNanos = Long.MAX_VALUE;
+        private long assemblyNanos = Long.MAX_VALUE;
+        private long liveHeap = Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.ExtractionSession;
+import com.giaybac.traprange.LayoutSpec;
+import com.giaybac.traprange.ShardedExtractor;
+import com.giaybac.traprange.entity.Table;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestShardedExtractor {
+
+    @Test
+    public void test() throws IOException {
+        File file = Paths.get(System.getProperty("user.dir"), "_Docs", "sample-5.pdf").toFile();
+        ExtractionOptions options = ExtractionOptions.builder().exceptLine(new int[]{0}).build();
+        List<Table> expected;
+        try (ExtractionSession session = new ExtractionSession(file)) {
+            expected = session.extract(options).getTables();
+        }
+        // one page per worker
+        List<Table> tables = new ShardedExtractor(file, options, 2).setShardSize(1).extract().getTables();
+
+        Assert.assertEquals(expected.size(), tables.size());
+        for (int idx = 0; idx < expected.size(); idx++) {
+            Assert.assertEquals(expected.get(idx).getPageIdx(), tables.get(idx).getPageIdx());
+            Assert.assertEquals(expected.get(idx).toString(), tables.get(idx).toString());
+        }
+    }
+
+    @Test
+    public void testWholeDocumentOptions() {
+        File file = Paths.get(System.getProperty("user.dir"), "_Docs", "sample-5.pdf").toFile();
+        assertRejected(file, ExtractionOptions.builder().setTagged(true).build());
+        assertRejected(file, ExtractionOptions.builder()
+                .setLayout(LayoutSpec.builder().setColumnBoundaries(0, 300, 600).build()).build());
+        assertRejected(file, ExtractionOptions.builder()
+                .exceptBoilerplate(ExtractionOptions.DEFAULT_BOILERPLATE_RATIO).build());
+    }
+
+    private static void assertRejected(File file, ExtractionOptions options) {
+        try {
+            new ShardedExtractor(file, options, 2);
+            Assert.fail("Options accepted");
+        } catch (IllegalArgumentException ex) {
+            Assert.assertTrue(ex.getMessage().endsWith("extraction"));
+        }
+    }
+}
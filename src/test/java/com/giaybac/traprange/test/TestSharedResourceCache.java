@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.PDFTableExtractor;
+import com.giaybac.traprange.SharedResourceCache;
+import com.giaybac.traprange.entity.Table;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSharedResourceCache {
+
+    @Test
+    public void test() {
+        String filePath = Paths.get(System.getProperty("user.dir"), "_Docs", "sample-2.pdf").toString();
+        SharedResourceCache cache = new SharedResourceCache();
+
+        List<Table> expected = (new PDFTableExtractor()).setSource(filePath).exceptLine(new int[]{0, 1}).extract();
+        List<Table> first = (new PDFTableExtractor()).setSource(filePath).exceptLine(new int[]{0, 1})
+                .setResourceCache(cache).extract();
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertTrue(cache.size() > 0);
+        List<Table> second = (new PDFTableExtractor()).setSource(filePath).exceptLine(new int[]{0, 1})
+                .setResourceCache(cache).extract();
+        Assert.assertTrue(cache.getHitCount() > 0);
+
+        Assert.assertEquals(expected.size(), first.size());
+        Assert.assertEquals(expected.size(), second.size());
+        for (int idx = 0; idx < expected.size(); idx++) {
+            Assert.assertEquals(expected.get(idx).toString(), first.get(idx).toString());
+            Assert.assertEquals(expected.get(idx).toString(), second.get(idx).toString());
+        }
+    }
+
+    @Test
+    public void testSharedSubObjects() throws IOException {
+        SharedResourceCache cache = new SharedResourceCache();
+        COSDictionary first = createFont();
+        SharedResourceCache.DocumentCache firstDocument = cache.newDocumentCache();
+        firstDocument.put(new COSObject(first), new PDType1Font(first));
+        firstDocument.close();
+        Assert.assertEquals(1, cache.size());
+
+        // same objects, only the one a key points to differs
+        COSDictionary second = createFont();
+        second.setItem(COSName.getPDFName("Third"), second.getItem(COSName.getPDFName("Second")));
+        SharedResourceCache.DocumentCache secondDocument = cache.newDocumentCache();
+        Assert.assertNull(secondDocument.getFont(new COSObject(second)));
+        secondDocument.close();
+        Assert.assertEquals(0, cache.getHitCount());
+
+        SharedResourceCache.DocumentCache thirdDocument = cache.newDocumentCache();
+        Assert.assertNotNull(thirdDocument.getFont(new COSObject(createFont())));
+        thirdDocument.close();
+        Assert.assertEquals(1, cache.getHitCount());
+    }
+
+    //--------------------------------------------------------------------------
+    //  Utils
+    /**
+     * @return font whose third key points to the object of its first key
+     */
+    private static COSDictionary createFont() {
+        COSDictionary retVal = new COSDictionary();
+        retVal.setItem(COSName.TYPE, COSName.FONT);
+        retVal.setItem(COSName.SUBTYPE, COSName.TYPE1);
+        retVal.setName(COSName.BASE_FONT, "Helvetica");
+        COSBase firstArray = createArray();
+        retVal.setItem(COSName.getPDFName("First"), firstArray);
+        retVal.setItem(COSName.getPDFName("Second"), createArray());
+        retVal.setItem(COSName.getPDFName("Third"), firstArray);
+        return retVal;
+    }
+
+    private static COSArray createArray() {
+        COSArray retVal = new COSArray();
+        retVal.add(COSInteger.ONE);
+        return retVal;
+    }
+}
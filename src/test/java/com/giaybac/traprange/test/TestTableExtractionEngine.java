@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.TableExtractionEngine;
+import com.giaybac.traprange.entity.Table;
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestTableExtractionEngine {
+
+    @Test
+    public void test() throws Exception {
+        final TableExtractionEngine engine = new TableExtractionEngine();
+        final File[] files = new File[]{
+            Paths.get(System.getProperty("user.dir"), "_Docs", "sample-1.pdf").toFile(),
+            Paths.get(System.getProperty("user.dir"), "_Docs", "sample-2.pdf").toFile()
+        };
+        final ExtractionOptions options = ExtractionOptions.builder().exceptLine(new int[]{0, 1}).build();
+        List<List<Table>> expected = new ArrayList<>();
+        for (File file : files) {
+            expected.add(new TableExtractionEngine(null).extract(file, options).getTables());
+        }
+
+        // the same engine and options shared by all threads
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Table>>> futures = new ArrayList<>();
+            for (int idx = 0; idx < 16; idx++) {
+                final File file = files[idx % files.length];
+                futures.add(executor.submit(new Callable<List<Table>>() {
+                    @Override
+                    public List<Table> call() throws Exception {
+                        return engine.extract(file, options).getTables();
+                    }
+                }));
+            }
+            for (int idx = 0; idx < futures.size(); idx++) {
+                List<Table> expectedTables = expected.get(idx % files.length);
+                List<Table> tables = futures.get(idx).get();
+                Assert.assertEquals(expectedTables.size(), tables.size());
+                for (int tableIdx = 0; tableIdx < tables.size(); tableIdx++) {
+                    Assert.assertEquals(expectedTables.get(tableIdx).toString(), tables.get(tableIdx).toString());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertTrue(engine.getResourceCache().getHitCount() > 0);
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.ExtractionResult;
+import com.giaybac.traprange.ExtractionSession;
+import com.giaybac.traprange.entity.Table;
+import java.io.File;
+import java.io.IOException;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDMarkInfo;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureElement;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureTreeRoot;
+import org.apache.pdfbox.pdmodel.documentinterchange.markedcontent.PDMarkedContent;
+import org.apache.pdfbox.pdmodel.documentinterchange.markedcontent.PDPropertyList;
+import org.apache.pdfbox.pdmodel.documentinterchange.taggedpdf.PDTableAttributeObject;
+import org.apache.pdfbox.pdmodel.documentinterchange.taggedpdf.StandardStructureTypes;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestTaggedTables {
+
+    private static final String[][] CELLS = {
+        {"Item", "Terms", "Amount"},
+        {"Rent", "Net 30 days", "1200.00"},
+        {"Total due this month", null, "1200.00"}
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testTaggedPage() throws IOException {
+        File file = folder.newFile("tagged.pdf");
+        generate(file);
+        ExtractionOptions geometric = ExtractionOptions.builder().build();
+        ExtractionOptions tagged = geometric.toBuilder().setTagged(true).build();
+        try (ExtractionSession session = new ExtractionSession(file)) {
+            ExtractionResult result = session.extract(tagged);
+            Assert.assertEquals(2, result.getTables().size());
+            Table table = result.getTables().get(0);
+            Assert.assertEquals(0, table.getPageIdx());
+            Assert.assertEquals("Item;Terms;Amount\nRent;Net 30 days;1200.00\nTotal due this month;;1200.00",
+                    table.toString());
+
+            // the untagged page takes the geometric path
+            ExtractionResult geometricResult = session.extract(geometric.toBuilder().addPage(1).build());
+            Assert.assertEquals(1, result.getTables().get(1).getPageIdx());
+            Assert.assertEquals(geometricResult.getTables().get(0).toString(), result.getTables().get(1).toString());
+
+            // projection applies to tagged tables too
+            ExtractionResult projected = session.extract(tagged.toBuilder().addPage(0).setColumnProjection(2).build());
+            Assert.assertEquals("Amount\n1200.00\n1200.00", projected.getTables().get(0).toString());
+        }
+    }
+
+    @Test
+    public void testUntaggedDocument() throws IOException {
+        File file = folder.newFile("untagged.pdf");
+        new SyntheticPdfGenerator().setPages(2).generate(file);
+        try (ExtractionSession session = new ExtractionSession(file)) {
+            ExtractionOptions options = ExtractionOptions.builder().build();
+            Assert.assertEquals(session.extract(options).getTables().toString(),
+                    session.extract(options.toBuilder().setTagged(true).build()).getTables().toString());
+        }
+    }
+
+    /**
+     * A tagged table on the first page, untagged rows on the second one
+     *
+     * @param file
+     * @throws IOException
+     */
+    private static void generate(File file) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDStructureTreeRoot root = new PDStructureTreeRoot();
+            document.getDocumentCatalog().setStructureTreeRoot(root);
+            PDMarkInfo markInfo = new PDMarkInfo();
+            markInfo.setMarked(true);
+            document.getDocumentCatalog().setMarkInfo(markInfo);
+            PDStructureElement documentElement = new PDStructureElement(StandardStructureTypes.DOCUMENT, root);
+            root.appendKid(documentElement);
+
+            PDPage taggedPage = new PDPage();
+            document.addPage(taggedPage);
+            PDStructureElement tableElement = new PDStructureElement(StandardStructureTypes.TABLE, documentElement);
+            tableElement.setPage(taggedPage);
+            documentElement.appendKid(tableElement);
+            int mcid = 0;
+            try (PDPageContentStream content = new PDPageContentStream(document, taggedPage)) {
+                for (int rowIdx = 0; rowIdx < CELLS.length; rowIdx++) {
+                    PDStructureElement rowElement = new PDStructureElement(StandardStructureTypes.TR, tableElement);
+                    tableElement.appendKid(rowElement);
+                    for (int columnIdx = 0; columnIdx < CELLS[rowIdx].length; columnIdx++) {
+                        if (CELLS[rowIdx][columnIdx] == null) {
+                            continue;
+                        }
+                        PDStructureElement cellElement = new PDStructureElement(
+                                rowIdx == 0 ? StandardStructureTypes.TH : StandardStructureTypes.TD, rowElement);
+                        rowElement.appendKid(cellElement);
+                        if (columnIdx + 1 < CELLS[rowIdx].length && CELLS[rowIdx][columnIdx + 1] == null) {
+                            PDTableAttributeObject attribute = new PDTableAttributeObject();
+                            attribute.setColSpan(2);
+                            cellElement.addAttribute(attribute);
+                        }
+                        COSDictionary properties = new COSDictionary();
+                        properties.setInt(COSName.MCID, mcid++);
+                        content.beginMarkedContent(COSName.getPDFName(cellElement.getStructureType()),
+                                PDPropertyList.create(properties));
+                        showText(content, 50 + columnIdx * 150, 700 - rowIdx * 20, CELLS[rowIdx][columnIdx]);
+                        content.endMarkedContent();
+                        cellElement.appendKid(PDMarkedContent.create(COSName.getPDFName(cellElement.getStructureType()),
+                                properties));
+                    }
+                }
+            }
+
+            PDPage untaggedPage = new PDPage();
+            document.addPage(untaggedPage);
+            try (PDPageContentStream content = new PDPageContentStream(document, untaggedPage)) {
+                for (int rowIdx = 0; rowIdx < 4; rowIdx++) {
+                    for (int columnIdx = 0; columnIdx < 3; columnIdx++) {
+                        showText(content, 50 + columnIdx * 150, 700 - rowIdx * 20, "R" + rowIdx + "C" + columnIdx);
+                    }
+                }
+            }
+            document.save(file);
+        }
+    }
+
+    private static void showText(PDPageContentStream content, float x, float y, String text) throws IOException {
+        content.beginText();
+        content.setFont(PDType1Font.HELVETICA, 10);
+        content.newLineAtOffset(x, y);
+        content.showText(text);
+        content.endText();
+    }
+}
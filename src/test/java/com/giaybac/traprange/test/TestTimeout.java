@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ExtractionResult;
+import com.giaybac.traprange.ExtractionTimeoutException;
+import com.giaybac.traprange.PDFTableExtractor;
+import com.giaybac.traprange.SkipReason;
+import com.giaybac.traprange.TimeoutPolicy;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestTimeout {
+
+    private final String samplePath = Paths.get(System.getProperty("user.dir"), "_Docs", "sample-2.pdf").toString();
+
+    @Test
+    public void testSkipPage() {
+        ExtractionResult result = (new PDFTableExtractor())
+                .setSource(samplePath)
+                .setPageTimeout(1, TimeUnit.NANOSECONDS)
+                .setTimeoutPolicy(TimeoutPolicy.SKIP_PAGE)
+                .extractResult();
+        Assert.assertTrue(result.getTables().isEmpty());
+        Assert.assertFalse(result.getSkippedPages().isEmpty());
+        for (SkipReason reason : result.getSkippedPages().values()) {
+            Assert.assertEquals(SkipReason.PAGE_TIMEOUT, reason);
+        }
+    }
+
+    @Test(expected = ExtractionTimeoutException.class)
+    public void testFailDocument() {
+        (new PDFTableExtractor())
+                .setSource(samplePath)
+                .setDocumentTimeout(1, TimeUnit.NANOSECONDS)
+                .extract();
+    }
+
+    @Test
+    public void testCancel() throws IOException {
+        final PDFTableExtractor extractor = new PDFTableExtractor();
+        // cancelled while the document is read
+        try (InputStream input = new FilterInputStream(new FileInputStream(samplePath)) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                extractor.cancel();
+                return super.read(buffer, offset, length);
+            }
+        }) {
+            extractor.setSource(input).extract();
+            Assert.fail("Extraction not cancelled");
+        } catch (CancellationException ex) {
+            // expected
+        }
+        // the next extraction runs
+        Assert.assertFalse(extractor.setSource(samplePath).extract().isEmpty());
+        // no extraction is running
+        extractor.cancel();
+        Assert.assertFalse(extractor.extract().isEmpty());
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2015, GIAYBAC
+ *
+ * Released under the MIT license
+ */
+package com.giaybac.traprange.test;
+
+import com.giaybac.traprange.ExtractionOptions;
+import com.giaybac.traprange.TableExtractionEngine;
+import com.giaybac.traprange.WatchFolderDaemon;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestWatchFolderDaemon {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStableFiles() throws Exception {
+        File inDir = folder.newFolder("in");
+        File outDir = new File(folder.getRoot(), "out");
+        // dropped before the start
+        copySample(new File(inDir, "first.pdf"));
+        try (WatchFolderDaemon daemon = newDaemon(inDir, outDir).setStableMillis(200)) {
+            daemon.start();
+            copySample(new File(inDir, "second.pdf"));
+            Files.write(new File(inDir, "broken.pdf").toPath(), "not a pdf".getBytes(StandardCharsets.UTF_8));
+            waitFor(daemon, 3);
+
+            Assert.assertEquals(2, daemon.getExtractedCount());
+            Assert.assertEquals(1, daemon.getFailedCount());
+            Assert.assertEquals(0, daemon.getQueueDepth());
+            Assert.assertEquals(3, daemon.getFilesPerMinute());
+            Assert.assertEquals(0, inDir.list().length);
+            Assert.assertTrue(new File(outDir, "first.html").isFile());
+            Assert.assertTrue(new File(outDir, "second.html").isFile());
+            Assert.assertTrue(new File(outDir, "done/second.pdf").isFile());
+            Assert.assertTrue(new File(outDir, "failed/broken.pdf").isFile());
+            Assert.assertTrue(new File(outDir, "failed/broken.pdf.error").isFile());
+        }
+    }
+
+    @Test
+    public void testMarker() throws Exception {
+        File inDir = folder.newFolder("in");
+        File outDir = new File(folder.getRoot(), "out");
+        try (WatchFolderDaemon daemon = newDaemon(inDir, outDir).setMarkerSuffix(".ready")) {
+            daemon.start();
+            File input = copySample(new File(inDir, "sample.pdf"));
+            Thread.sleep(500);
+            Assert.assertTrue(input.isFile());
+            Assert.assertEquals(1, daemon.getPendingCount());
+
+            Files.write(new File(inDir, "sample.pdf.ready").toPath(), new byte[0]);
+            waitFor(daemon, 1);
+            Assert.assertEquals(1, daemon.getExtractedCount());
+            Assert.assertEquals(0, inDir.list().length);
+            Assert.assertTrue(new File(outDir, "sample.html").isFile());
+        }
+    }
+
+    private static WatchFolderDaemon newDaemon(File inDir, File outDir) {
+        return new WatchFolderDaemon(new TableExtractionEngine(), ExtractionOptions.builder().build(), inDir, outDir,
+                new File(outDir, "done"), new File(outDir, "failed"), 2).setReportIntervalMillis(0);
+    }
+
+    private static File copySample(File target) throws IOException {
+        Files.copy(Paths.get(System.getProperty("user.dir"), "_Docs", "sample-5.pdf"), target.toPath());
+        return target;
+    }
+
+    private static void waitFor(WatchFolderDaemon daemon, int fileCount) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        while (daemon.getExtractedCount() + daemon.getFailedCount() < fileCount) {
+            Assert.assertTrue("Files not extracted in time", System.nanoTime() < deadline);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+#!/bin/bash
+# Compares the time of a command line run on each sample: plain "java -jar"
+# against traprange.sh, both with the same logging level.
+# Usage: ./startup-benchmark.sh [runs per sample, default 5] [log level, default off]
+home=$(cd "$(dirname "$0")" && pwd)
+jar=${TRAPRANGE_JAR:-$home/target/traprange-1.0-SNAPSHOT-jar-with-dependencies.jar}
+runs=${1:-5}
+log=${2:-off}
+out=$(mktemp)
+trap 'rm -f "$out"' EXIT
+
+# average milliseconds of a command
+measure() {
+    local total=0
+    for ((run = 0; run < runs; run++)); do
+        local start=$(date +%s%N)
+        "$@" > /dev/null 2>&1
+        total=$((total + $(date +%s%N) - start))
+    done
+    echo $((total / runs / 1000000))
+}
+
+printf "%-12s %10s %10s\n" sample "java -jar" traprange.sh
+for idx in 1 2 3 4 5; do
+    pdf=$home/_Docs/sample-$idx.pdf
+    plain=$(measure java -jar "$jar" -in "$pdf" -out "$out" -log "$log")
+    lean=$(measure "$home/traprange.sh" -in "$pdf" -out "$out" -log "$log")
+    printf "%-12s %8sms %8sms\n" sample-$idx $plain $lean
+done
@@ -0,0 +1,14 @@
+#!/bin/bash
+# Runs the command line with a JVM set up for short runs: classes come from
+# the archive of build-cds.sh when it exists, and only the quick JIT compiler
+# is used. Long documents run faster with plain "java -jar".
+# Ex: ./traprange.sh -in table.pdf -out table.html -log off
+home=$(cd "$(dirname "$0")" && pwd)
+jar=${TRAPRANGE_JAR:-$home/target/traprange-1.0-SNAPSHOT-jar-with-dependencies.jar}
+archive=${jar%.jar}.jsa
+
+options="-XX:TieredStopAtLevel=1"
+if [ -f "$archive" ]; then
+    options="$options -XX:SharedArchiveFile=$archive"
+fi
+exec java $options $TRAPRANGE_JAVA_OPTS -jar "$jar" "$@"